@@ -0,0 +1,385 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * BKTree 类是按 Levenshtein 编辑距离组织的度量树（BK 树），由 {@link EditDistanceIndex} 使用。
+ * <p>
+ * 每个节点保存一个不同的值和具有该值的行的 id；子节点按与父节点的距离分组，距离为 d 的子树中的值与父节点的距离都是 d。
+ * 编辑距离满足三角不等式，查找与关键字距离不超过 k 的值时，在距离关键字为 d 的节点下只需进入边的距离在
+ * [d - k, d + k] 之间的子树，其余子树不必计算距离。
+ * <p>
+ * 值在比较前统一写法（见 {@link Levenshtein#normalize}，与 {@link FuzzySearch#similarity} 相同），
+ * 距离由 {@link Levenshtein.Pattern} 计算，每次加入或查找只编译一次关键字。
+ * 节点用数组按“第一个子节点 / 下一个兄弟节点”保存，不为每个节点创建对象；已有的值再次加入时由散列表直接找到节点。
+ * 移除一行时只从节点中去掉它的 id；没有 id 的节点仍留在树中引导查找，但不出现在结果中。
+ * 所有方法都是同步的。
+ */
+public class BKTree {
+    private static final int FORMAT_VERSION = 2; // 序列化格式的版本
+    private static final long[] NO_IDS = new long[0];
+
+    private String[] values = new String[16]; // 节点的值（已统一小写）
+    private int[] edges = new int[16]; // 节点与父节点的距离
+    private int[] firstChild = new int[16]; // 第一个子节点，没有时为 -1
+    private int[] nextSibling = new int[16]; // 下一个兄弟节点，没有时为 -1
+    private long[][] ids = new long[16][]; // 具有该值的行的 id
+    private int[] idCounts = new int[16];
+    private final Map<String, Integer> nodes = new HashMap<>(); // 值所在的节点，已有的值加入时不必沿树查找
+    private int size = 0; // 节点数（不同值的个数）
+    private long idCount = 0; // 行数
+    private long distanceCount = 0; // 累计计算距离的次数
+
+    /**
+     * 查找到的一个值。
+     */
+    public static final class Match {
+        private final String value;
+        private final int distance;
+        private final long[] ids;
+
+        Match(String value, int distance, long[] ids) {
+            this.value = value;
+            this.distance = distance;
+            this.ids = ids;
+        }
+
+        /**
+         * 值（已统一小写并去除前后空白）。
+         */
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * 与关键字的编辑距离。
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * 具有该值的行的 id，按加入的顺序排列。
+         */
+        public long[] getIds() {
+            return ids;
+        }
+
+        @Override
+        public String toString() {
+            return value + " (" + distance + ", " + ids.length + " 行)";
+        }
+    }
+
+    /**
+     * 编译后的关键字与一个节点的值之间的编辑距离。
+     */
+    private int distance(Levenshtein.Pattern key, int node) {
+        distanceCount++;
+        return key.distance(values[node]);
+    }
+
+    /**
+     * 加入一行的值。
+     *
+     * @param value 值，为 null 时不加入。
+     * @param id    行的 id。
+     */
+    public synchronized void add(String value, long id) {
+        if (value == null) {
+            return;
+        }
+        String key = Levenshtein.normalize(value);
+        Integer existing = nodes.get(key);
+        if (existing != null) {
+            addId(existing, id);
+            return;
+        }
+        if (size == 0) {
+            addNode(key, 0, id);
+            return;
+        }
+        Levenshtein.Pattern pattern = Levenshtein.Pattern.compile(key);
+        int node = 0;
+        while (true) {
+            int d = distance(pattern, node);
+            if (d == 0) {
+                addId(node, id);
+                return;
+            }
+            int child = child(node, d);
+            if (child < 0) {
+                int added = addNode(key, d, id);
+                nextSibling[added] = firstChild[node];
+                firstChild[node] = added;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * 移除一行的值（行被删除或值被修改）。树中没有这一行时不做任何事。
+     *
+     * @param value 加入时的值，为 null 时不做任何事。
+     * @param id    行的 id。
+     */
+    public synchronized void remove(String value, long id) {
+        if (value == null) {
+            return;
+        }
+        Integer node = nodes.get(Levenshtein.normalize(value));
+        if (node == null) {
+            return;
+        }
+        long[] nodeIds = ids[node];
+        int count = idCounts[node];
+        for (int i = 0; i < count; i++) {
+            if (nodeIds[i] == id) {
+                System.arraycopy(nodeIds, i + 1, nodeIds, i, count - i - 1);
+                idCounts[node] = count - 1;
+                idCount--;
+                return;
+            }
+        }
+    }
+
+    private int child(int node, int edge) {
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            if (edges[child] == edge) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    private int addNode(String key, int edge, long id) {
+        if (size == values.length) {
+            int capacity = size * 2;
+            values = Arrays.copyOf(values, capacity);
+            edges = Arrays.copyOf(edges, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            idCounts = Arrays.copyOf(idCounts, capacity);
+        }
+        int node = size++;
+        values[node] = key;
+        nodes.put(key, node);
+        edges[node] = edge;
+        firstChild[node] = -1;
+        nextSibling[node] = -1;
+        ids[node] = NO_IDS;
+        idCounts[node] = 0;
+        addId(node, id);
+        return node;
+    }
+
+    private void addId(int node, long id) {
+        long[] nodeIds = ids[node];
+        int count = idCounts[node];
+        if (count == nodeIds.length) {
+            nodeIds = Arrays.copyOf(nodeIds, Math.max(1, count * 2));
+            ids[node] = nodeIds;
+        }
+        nodeIds[count] = id;
+        idCounts[node] = count + 1;
+        idCount++;
+    }
+
+    private Match match(int node, int distance) {
+        return new Match(values[node], distance, Arrays.copyOf(ids[node], idCounts[node]));
+    }
+
+    /**
+     * 查找与关键字的编辑距离不超过 radius 的所有值。
+     *
+     * @param query  关键字。
+     * @param radius 编辑距离的上限。
+     * @return 查找到的值，按距离从小到大排列。
+     */
+    public synchronized List<Match> radius(String query, int radius) {
+        List<Match> matches = new ArrayList<>();
+        if (size == 0 || radius < 0) {
+            return matches;
+        }
+        Levenshtein.Pattern key = Levenshtein.Pattern.compile(query);
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int d = distance(key, node);
+            if (d <= radius && idCounts[node] > 0) {
+                matches.add(match(node, d));
+            }
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (Math.abs(edges[child] - d) <= radius) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = child;
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::getDistance));
+        return matches;
+    }
+
+    /**
+     * 查找与关键字编辑距离最小的 n 个值，距离相同时取先加入的值。
+     * <p>
+     * 按距离下界从小到大访问子树（子树中的值与关键字的距离不小于 |边的距离 - 父节点与关键字的距离|），
+     * 已找到 n 个值后，下界大于其中最大距离的子树不再访问。
+     *
+     * @param query 关键字。
+     * @param n     值的个数。
+     * @return 查找到的值，按距离从小到大排列。
+     */
+    public synchronized List<Match> nearest(String query, int n) {
+        List<Match> matches = new ArrayList<>();
+        if (size == 0 || n <= 0) {
+            return matches;
+        }
+        Levenshtein.Pattern key = Levenshtein.Pattern.compile(query);
+        // 待访问的节点：高 32 位为距离下界，低 32 位为节点号
+        PriorityQueue<Long> pending = new PriorityQueue<>();
+        // 已找到的值：高 32 位为距离，低 32 位为节点号，队首是最远的
+        PriorityQueue<Long> best = new PriorityQueue<>(Comparator.reverseOrder());
+        pending.add(0L);
+        while (!pending.isEmpty()) {
+            long next = pending.poll();
+            int bound = (int) (next >>> 32);
+            if (best.size() == n && bound > (int) (best.peek() >>> 32)) {
+                break;
+            }
+            int node = (int) next;
+            int d = distance(key, node);
+            long entry = ((long) d << 32) | node;
+            if (idCounts[node] > 0) { // 所有行都已移除的节点只用来引导查找
+                if (best.size() < n) {
+                    best.add(entry);
+                } else if (entry < best.peek()) {
+                    best.poll();
+                    best.add(entry);
+                }
+            }
+            int limit = best.size() == n ? (int) (best.peek() >>> 32) : Integer.MAX_VALUE;
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                int lower = Math.abs(edges[child] - d);
+                if (lower <= limit) {
+                    pending.add(((long) lower << 32) | child);
+                }
+            }
+        }
+        Long[] entries = best.toArray(new Long[0]);
+        Arrays.sort(entries);
+        for (long entry : entries) {
+            matches.add(match((int) entry, (int) (entry >>> 32)));
+        }
+        return matches;
+    }
+
+    /**
+     * 节点数（加入过的不同值的个数，包括所有行都已移除的值）。
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 加入的行数。
+     */
+    public synchronized long getIdCount() {
+        return idCount;
+    }
+
+    /**
+     * 累计计算编辑距离的次数（包括加入值时的计算），用于观察每次查找访问了多少节点。
+     */
+    public synchronized long getDistanceCount() {
+        return distanceCount;
+    }
+
+    /**
+     * 把树序列化为字节数组。
+     */
+    synchronized byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+            for (int node = 0; node < size; node++) {
+                byte[] value = values[node].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(value.length);
+                out.write(value);
+                out.writeInt(edges[node]);
+                out.writeInt(firstChild[node]);
+                out.writeInt(nextSibling[node]);
+                out.writeInt(idCounts[node]);
+                for (int i = 0; i < idCounts[node]; i++) {
+                    out.writeLong(ids[node][i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 写入内存不会失败
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果恢复树。
+     *
+     * @param data 序列化的数据。
+     * @return 恢复的树。
+     * @throws IOException 如果数据不完整或版本不符。
+     */
+    static BKTree fromBytes(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("不支持的 BK 树格式版本: " + version);
+            }
+            int count = in.readInt();
+            BKTree tree = new BKTree();
+            int capacity = Math.max(16, count);
+            tree.values = new String[capacity];
+            tree.edges = new int[capacity];
+            tree.firstChild = new int[capacity];
+            tree.nextSibling = new int[capacity];
+            tree.ids = new long[capacity][];
+            tree.idCounts = new int[capacity];
+            for (int node = 0; node < count; node++) {
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                tree.values[node] = new String(value, StandardCharsets.UTF_8);
+                tree.nodes.put(tree.values[node], node);
+                tree.edges[node] = in.readInt();
+                tree.firstChild[node] = in.readInt();
+                tree.nextSibling[node] = in.readInt();
+                int idCount = in.readInt();
+                long[] nodeIds = new long[idCount];
+                for (int i = 0; i < idCount; i++) {
+                    nodeIds[i] = in.readLong();
+                }
+                tree.ids[node] = nodeIds;
+                tree.idCounts[node] = idCount;
+                tree.idCount += idCount;
+            }
+            tree.size = count;
+            return tree;
+        }
+    }
+}
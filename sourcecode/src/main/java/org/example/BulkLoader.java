@@ -0,0 +1,411 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BulkLoader 类表示一次批量导入会话，由 {@link DOperator#beginBulkLoad} 创建。
+ * <p>
+ * 会话在整个导入期间独占写连接，并为导入调整 PRAGMA：增大页缓存、临时数据放在内存中。
+ * 数据库使用 WAL 日志模式（见 {@link ConnectionManager}）时保持 WAL 和 synchronous = NORMAL（只在检查点时 fsync），
+ * 其他连接在导入期间可以继续读取已提交的数据；否则改用 TRUNCATE 日志、独占文件锁，并关闭每次提交的 fsync
+ * （synchronous = OFF）。结束时恢复原来的设置。
+ * <p>
+ * 数据先写入临时的导入表，按行数或时间间隔提交，避免每个小批次一次 fsync，同时限制回滚日志的大小。
+ * 只有在 {@link #commit()} 时才在一个事务中把导入表改名为目标表（目标表已存在时追加到目标表），
+ * 因此导入失败或进程中途退出都不会留下只有一半数据的目标表；残留的导入表在下次导入同一张表时删除。
+ * <p>
+ * 启用检查点（{@link #enableCheckpoints}）时，每次提交都在同一个事务中记录 {@link ImportCheckpoint}，
+ * 导入失败时保留已提交的导入表和检查点，之后可以用 {@link DOperator#resumeBulkLoad} 从检查点继续；
+ * 以其他方式开始导入同一张表时，残留的导入表和检查点会被删除。
+ * <p>
+ * WAL 模式下程序崩溃、操作系统崩溃或断电都不会损坏数据库，断电时最多丢失最近几次提交，
+ * 检查点与数据在同一个事务中提交，继续导入时从最后一次保留下来的提交开始。
+ * 不使用 WAL 时（synchronous = OFF），程序崩溃不会损坏数据库，但操作系统崩溃或断电可能会损坏整个数据库。
+ * 不使用 WAL 时，会话期间其他连接的读取会等待，超过 busy_timeout 后失败。
+ */
+public class BulkLoader implements AutoCloseable {
+    public static final int DEFAULT_COMMIT_ROWS = 100000; // 每提交一次的最大行数
+    public static final long DEFAULT_COMMIT_MILLIS = 2000; // 两次提交之间的最长时间
+    static final String STAGING_SUFFIX = "__importing"; // 导入表名的后缀
+    private static final int BULK_CACHE_SIZE_KB = 200000; // 导入期间的页缓存大小（KB）
+
+    private final DOperator operator;
+    private final ConnectionManager.Lease lease;
+    private final Connection conn;
+    private final String tableName;
+    private final String stagingName;
+    private final boolean appendToExisting;
+    private final List<DOperator.ColumnInfo> columns;
+    private final String savedJournalMode;
+    private final boolean wal; // 是否保持 WAL 日志模式
+    private final int savedSynchronous;
+    private final int savedCacheSize;
+    private final int commitRows;
+    private final long commitMillis;
+    private final long startTime = System.nanoTime();
+    private InsertPlan insertPlan;
+    private ImportCheckpoint checkpoint; // 为 null 时不记录检查点
+    private boolean checkpointCommitted = false; // 是否已有检查点随数据提交
+    private long offset = 0; // 已写入数据在文件中的结束位置
+    private long sourcePosition = 0;
+    private int rowsSinceCommit = 0;
+    private long lastCommitTime = System.nanoTime();
+    private long rows = 0;
+    private long resumedRows = 0; // 继续导入时检查点中已有的行数
+    private int commits = 0;
+    private boolean committed = false;
+    private boolean closed = false;
+
+    /**
+     * 构造方法：调整 PRAGMA，创建导入表（或沿用检查点对应的导入表）并开始事务。
+     *
+     * @param operator     数据库操作对象。
+     * @param lease        写连接租约，会话关闭时归还。
+     * @param tableName    目标表名。
+     * @param keys         表头数组（目标表不存在时使用）。
+     * @param types        数据类型数组（目标表不存在时使用）。
+     * @param commitRows   每提交一次的最大行数。
+     * @param commitMillis 两次提交之间的最长时间（毫秒）。
+     * @param resumeFrom   要继续的检查点；为 null 时开始新的导入。
+     * @throws SQLException 如果执行数据库操作时发生错误，或导入表与检查点不一致。
+     */
+    BulkLoader(DOperator operator, ConnectionManager.Lease lease, String tableName, String[] keys, String[] types,
+               int commitRows, long commitMillis, ImportCheckpoint resumeFrom) throws SQLException {
+        this.operator = operator;
+        this.lease = lease;
+        this.conn = lease.connection();
+        this.tableName = tableName;
+        this.stagingName = tableName + STAGING_SUFFIX;
+        this.commitRows = Math.max(1, commitRows);
+        this.commitMillis = Math.max(0, commitMillis);
+
+        try (Statement stmt = conn.createStatement()) {
+            savedJournalMode = queryPragma(stmt, "journal_mode");
+            savedSynchronous = Integer.parseInt(queryPragma(stmt, "synchronous"));
+            savedCacheSize = Integer.parseInt(queryPragma(stmt, "cache_size"));
+            wal = "wal".equalsIgnoreCase(savedJournalMode);
+        } catch (SQLException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            if (!wal) {
+                // journal_mode 不能在事务中修改
+                stmt.execute("PRAGMA journal_mode = TRUNCATE;");
+            }
+            // WAL 模式下 NORMAL 只在检查点时 fsync，代价很小且断电不会损坏数据库；回滚日志模式下 NORMAL 每次提交 fsync 两次
+            stmt.execute(wal ? "PRAGMA synchronous = NORMAL;" : "PRAGMA synchronous = OFF;");
+            stmt.execute("PRAGMA cache_size = -" + BULK_CACHE_SIZE_KB + ";");
+            stmt.execute("PRAGMA temp_store = MEMORY;");
+            if (!wal) {
+                stmt.execute("PRAGMA locking_mode = EXCLUSIVE;");
+            }
+
+            if (resumeFrom == null) {
+                // 删除上次失败的导入留下的导入表和检查点
+                stmt.execute("DROP TABLE IF EXISTS " + operator.escapeColumnName(stagingName) + ";");
+                ImportCheckpoint.delete(conn, tableName);
+            }
+
+            List<DOperator.ColumnInfo> existing = operator.readColumns(conn, tableName);
+            appendToExisting = !existing.isEmpty();
+            if (appendToExisting) {
+                // 目标表已存在时按目标表的列建导入表，提交时追加到目标表
+                keys = new String[existing.size()];
+                types = new String[existing.size()];
+                for (int i = 0; i < existing.size(); i++) {
+                    keys[i] = existing.get(i).getName();
+                    types[i] = existing.get(i).getType();
+                }
+            }
+            conn.setAutoCommit(false);
+            if (resumeFrom == null) {
+                stmt.execute(operator.buildCreateTableSql(stagingName, keys, types));
+                columns = operator.readColumns(conn, stagingName);
+            } else {
+                columns = operator.readColumns(conn, stagingName);
+                verifyResumable(stmt, resumeFrom);
+                checkpoint = resumeFrom;
+                checkpointCommitted = true;
+                offset = resumeFrom.getOffset();
+                sourcePosition = resumeFrom.getSourcePosition();
+                rows = resumeFrom.getRows();
+                resumedRows = rows;
+            }
+        } catch (SQLException | RuntimeException e) {
+            restoreSettings();
+            lease.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 检查导入表与检查点一致：结构相同，且表中正好是检查点记录的行数（id 从 1 开始连续）。
+     */
+    private void verifyResumable(Statement stmt, ImportCheckpoint resumeFrom) throws SQLException {
+        if (columns.isEmpty()) {
+            throw new SQLException("导入表 '" + stagingName + "' 不存在，无法继续导入。");
+        }
+        if (!resumeFrom.matchesSchema(columns)) {
+            throw new SQLException("导入表 '" + stagingName + "' 的结构与检查点不一致，无法继续导入。");
+        }
+        try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM "
+                + operator.escapeColumnName(stagingName) + ";")) {
+            long maxId = rs.next() ? rs.getLong(1) : 0;
+            if (maxId != resumeFrom.getRows()) {
+                throw new SQLException("导入表 '" + stagingName + "' 有 " + maxId + " 行，与检查点记录的 "
+                        + resumeFrom.getRows() + " 行不一致，无法继续导入。");
+            }
+        }
+    }
+
+    /**
+     * 开始在每次提交时记录检查点。必须在写入数据之前调用，之后只能通过 {@link #insert(ImportPipeline.Batch)}
+     * 按文件中的顺序写入。
+     *
+     * @param checkpoint 由 {@link ImportCheckpoint#forFile} 创建的初始检查点。
+     * @throws SQLException 如果已经写入了数据。
+     */
+    public void enableCheckpoints(ImportCheckpoint checkpoint) throws SQLException {
+        ensureActive();
+        if (rows > 0 && this.checkpoint == null) {
+            throw new SQLException("必须在写入数据之前启用检查点。");
+        }
+        if (this.checkpoint == null) {
+            this.checkpoint = checkpoint;
+        }
+    }
+
+    /**
+     * 获取继续导入时的检查点。
+     *
+     * @return 开始时的检查点；新的导入返回 null。
+     */
+    public ImportCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * 获取导入表的列信息（不含自动增量的id列），与目标表的列一致。
+     *
+     * @return 列信息列表。
+     */
+    public List<DOperator.ColumnInfo> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 写入一批已按列类型转换好的数据行（见 {@link DOperator#convertRow}），达到提交间隔时提交。
+     *
+     * @param batch 数据行。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void insert(List<Object[]> batch) throws SQLException {
+        if (checkpoint != null) {
+            throw new SQLException("启用检查点后必须通过 insert(Batch) 写入，以记录文件位置。");
+        }
+        insertRows(batch);
+    }
+
+    /**
+     * 写入导入流水线解析出的一个批次，并记录批次在文件中的结束位置。启用检查点时，批次必须按文件中的顺序写入。
+     *
+     * @param batch 数据批次。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void insert(ImportPipeline.Batch batch) throws SQLException {
+        offset = batch.getEndOffset();
+        sourcePosition = batch.getSourcePosition();
+        insertRows(batch.getRows());
+    }
+
+    private void insertRows(List<Object[]> batch) throws SQLException {
+        ensureActive();
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        if (insertPlan == null) {
+            insertPlan = new InsertPlan(operator, stagingName, columns, 0);
+        }
+        insertPlan.execute(conn, batch, operator.getInsertStrategy());
+        rows += batch.size();
+        rowsSinceCommit += batch.size();
+
+        if (rowsSinceCommit >= commitRows
+                || System.nanoTime() - lastCommitTime >= commitMillis * 1_000_000L) {
+            if (checkpoint != null) {
+                checkpoint = checkpoint.at(offset, sourcePosition, rows);
+                checkpoint.write(conn);
+            }
+            conn.commit();
+            commits++;
+            checkpointCommitted |= checkpoint != null;
+            rowsSinceCommit = 0;
+            lastCommitTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * 完成导入：在一个事务中把导入表改名为目标表（或追加到已存在的目标表）并提交。
+     *
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void commit() throws SQLException {
+        commit(Collections.emptyList());
+    }
+
+    /**
+     * 完成导入：在一个事务中把导入表改名为目标表（或追加到已存在的目标表），
+     * 在数据全部写入后为指定列建索引并运行 ANALYZE，然后提交。
+     *
+     * @param indexColumns 要建索引的列名；为空时不建索引。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void commit(List<String> indexColumns) throws SQLException {
+        commit(indexColumns, Collections.emptyMap());
+    }
+
+    /**
+     * 完成导入：在一个事务中把导入表改名为目标表（或追加到已存在的目标表），
+     * 在数据全部写入后建索引和全文索引（全文索引一次性建立，比逐行由触发器维护快），然后提交。
+     *
+     * @param indexColumns       要建索引的列名；为空时不建索引。
+     * @param searchIndexColumns 按索引类型给出要建全文索引的列名；为空时不建全文索引。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void commit(List<String> indexColumns, Map<SearchIndex.Type, List<String>> searchIndexColumns)
+            throws SQLException {
+        ensureActive();
+        String staging = operator.escapeColumnName(stagingName);
+        String target = operator.escapeColumnName(tableName);
+        try (Statement stmt = conn.createStatement()) {
+            if (appendToExisting) {
+                StringBuilder names = new StringBuilder();
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) {
+                        names.append(", ");
+                    }
+                    names.append(operator.escapeColumnName(columns.get(i).getName()));
+                }
+                stmt.execute("INSERT INTO " + target + " (" + names + ") SELECT " + names
+                        + " FROM " + staging + " ORDER BY id;");
+                stmt.execute("DROP TABLE " + staging + ";");
+                operator.getRowCounter().added(conn, tableName, rows);
+            } else {
+                stmt.execute("ALTER TABLE " + staging + " RENAME TO " + target + ";");
+                operator.getRowCounter().track(conn, tableName, rows); // 新表的记录数即导入的行数，不必再计数
+            }
+        }
+        if (!indexColumns.isEmpty()) {
+            operator.createIndexes(conn, tableName, indexColumns);
+        }
+        for (Map.Entry<SearchIndex.Type, List<String>> entry : searchIndexColumns.entrySet()) {
+            for (String column : entry.getValue()) {
+                SearchIndex.create(operator, conn, tableName, column, entry.getKey());
+            }
+        }
+        ImportCheckpoint.delete(conn, tableName);
+        conn.commit();
+        commits++;
+        committed = true;
+        System.out.println(String.format("批量导入完成：%d 行写入表 '%s'，提交 %d 次，%.0f 行/秒。",
+                rows, tableName, commits, getRowsPerSecond()));
+    }
+
+    /**
+     * 已写入的行数（继续导入时包含检查点中已有的行）。
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 从会话开始到现在的平均写入速度（行/秒），不含继续导入之前已有的行。
+     */
+    public double getRowsPerSecond() {
+        long elapsed = System.nanoTime() - startTime;
+        return elapsed == 0 ? 0 : (rows - resumedRows) * 1e9 / elapsed;
+    }
+
+    /**
+     * 结束会话。如果没有调用 {@link #commit()}，回滚未提交的数据；没有已提交的检查点时删除导入表，
+     * 否则保留导入表和检查点以便继续导入。
+     * 然后恢复原来的 PRAGMA 设置并归还写连接。
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (insertPlan != null) {
+                insertPlan.close();
+            }
+            if (!committed && checkpointCommitted) {
+                conn.rollback();
+                System.err.println("导入未完成，已提交的 " + checkpoint.getRows() + " 行保留在导入表 '" + stagingName
+                        + "' 中，可以从检查点继续导入。");
+            } else if (!committed) {
+                conn.rollback();
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DROP TABLE IF EXISTS " + operator.escapeColumnName(stagingName) + ";");
+                }
+                conn.commit();
+                System.err.println("导入未完成，已删除导入表 '" + stagingName + "'。");
+            }
+        } catch (SQLException e) {
+            System.err.println("清理导入表时出错: " + e.getMessage());
+        } finally {
+            restoreSettings();
+            lease.close();
+        }
+    }
+
+    /**
+     * 恢复导入前的 PRAGMA 设置，不使用 WAL 时释放独占文件锁。
+     */
+    private void restoreSettings() {
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                if (!wal) {
+                    stmt.execute("PRAGMA locking_mode = NORMAL;");
+                    stmt.execute("PRAGMA journal_mode = " + savedJournalMode + ";");
+                }
+                stmt.execute("PRAGMA synchronous = " + savedSynchronous + ";");
+                stmt.execute("PRAGMA cache_size = " + savedCacheSize + ";");
+                if (!wal) {
+                    // 切换回 NORMAL 后，下一次访问数据库时才会释放独占锁
+                    try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master;")) {
+                        rs.next();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("恢复数据库设置时出错: " + e.getMessage());
+        }
+    }
+
+    private void ensureActive() throws SQLException {
+        if (closed || committed) {
+            throw new SQLException("批量导入会话已结束。");
+        }
+    }
+
+    private static String queryPragma(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + name + ";")) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
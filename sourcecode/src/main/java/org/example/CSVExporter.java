@@ -3,7 +3,9 @@ package org.example;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.Vector;
+import java.util.function.LongConsumer;
 
 public class CSVExporter {
 
@@ -38,6 +40,42 @@ public class CSVExporter {
         }
     }
 
+    /**
+     * 将游标中的所有行逐行写入 CSV 文件，不把数据全部读入内存。写完后关闭游标。
+     *
+     * @param filePath 要导出的文件路径。
+     * @param cursor   数据来源，列名取自游标。
+     * @param progress 每写入一行后以已写入的行数调用；为 null 时不报告进度。
+     * @return 写入的数据行数。
+     * @throws IOException  如果写入文件时发生错误。
+     * @throws SQLException 如果读取数据时发生错误。
+     */
+    public long exportToCSV(String filePath, RowCursor cursor, LongConsumer progress) throws IOException, SQLException {
+        try (RowCursor rows = cursor;
+             BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
+            writer.write(escapeVectorToCSV(rows.getColumnNames()));
+            writer.newLine();
+
+            StringBuilder rowString = new StringBuilder();
+            while (rows.next()) {
+                Object[] row = rows.getRow();
+                rowString.setLength(0);
+                for (int i = 0; i < row.length; i++) {
+                    rowString.append(escapeCSV(row[i] != null ? row[i].toString() : ""));
+                    if (i < row.length - 1) {
+                        rowString.append(",");
+                    }
+                }
+                writer.write(rowString.toString());
+                writer.newLine();
+                if (progress != null) {
+                    progress.accept(rows.getRowCount());
+                }
+            }
+            return rows.getRowCount();
+        }
+    }
+
     /**
      * 将 Vector<String> 转换为逗号分隔的 CSV 字符串，并转义每个元素。
      *
@@ -0,0 +1,62 @@
+package org.example;
+
+/**
+ * 列的值类型，由列的声明类型解析得到，用于在导入和插入时避免对每个单元格重复比较类型字符串。
+ */
+public enum ColumnKind {
+    INTEGER,
+    REAL,
+    BOOLEAN,
+    TEXT,
+    /**
+     * annotations 字段，按文本存储并移除其中的大括号和单引号。
+     */
+    ANNOTATIONS;
+
+    /**
+     * 根据列信息解析值类型，规则与 {@link DOperator#convertRow} 一致。
+     *
+     * @param column 列信息。
+     * @return 值类型。
+     */
+    public static ColumnKind of(DOperator.ColumnInfo column) {
+        switch (column.getType().toUpperCase()) {
+            case "INTEGER":
+            case "INT":
+                return INTEGER;
+            case "REAL":
+            case "FLOAT":
+            case "DOUBLE":
+                return REAL;
+            case "BOOLEAN":
+                return BOOLEAN;
+            case "TEXT":
+            default:
+                return column.getName().equalsIgnoreCase("annotations") ? ANNOTATIONS : TEXT;
+        }
+    }
+
+    /**
+     * 将去除首尾空白后的非空文本转换为该类型的值。
+     *
+     * @param value 文本值。
+     * @return 转换后的值。
+     * @throws NumberFormatException 如果数值转换失败。
+     */
+    public Object convert(String value) {
+        switch (this) {
+            case INTEGER:
+                return Integer.parseInt(value);
+            case REAL:
+                return Double.parseDouble(value);
+            case BOOLEAN:
+                return Boolean.parseBoolean(value);
+            case ANNOTATIONS:
+                // 移除大括号和单引号
+                return value.replaceAll("[{}']", "");
+            case TEXT:
+            default:
+                return value;
+        }
+    }
+}
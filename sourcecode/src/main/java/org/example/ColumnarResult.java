@@ -0,0 +1,551 @@
+package org.example;
+
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Vector;
+
+/**
+ * ColumnarResult 类按列保存查询结果，比 {@link SelectResult}（每个值装箱、每行一个 Vector）占用的内存少得多，
+ * 顺序扫描一列时也更快。
+ * <p>
+ * 整数列保存在 long 数组中，实数列保存在 double 数组中，空值用位图标记；文本列的所有字符串依次存放在一个共享的
+ * char 数组中，用偏移数组定位。SQLite 的列可以混合存放不同类型的值，一列中出现与已有类型不符的值时，
+ * 该列改为逐个保存对象。SQLite 没有布尔类型（保存为整数），因此不单独处理。
+ * <p>
+ * 结果建立后不可修改，可以在线程之间共享。{@link #toTableModel()} 返回直接读取各列的只读表格模型。
+ */
+public class ColumnarResult {
+    private final String[] columnNames;
+    private final Column[] columns;
+    private final int rowCount;
+
+    private ColumnarResult(String[] columnNames, Column[] columns, int rowCount) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * 读取游标中剩余的所有行，读完后关闭游标。
+     *
+     * @param cursor 游标。
+     * @return 按列保存的结果。
+     * @throws SQLException 如果读取失败。
+     */
+    public static ColumnarResult read(RowCursor cursor) throws SQLException {
+        try (RowCursor rows = cursor) {
+            Builder builder = new Builder(rows.getColumnNames());
+            while (rows.next()) {
+                builder.add(rows.getRow());
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * 把按行保存的结果转换为按列保存。
+     *
+     * @param result 按行保存的结果。
+     * @return 按列保存的结果。
+     */
+    public static ColumnarResult of(SelectResult result) {
+        Builder builder = new Builder(result.getColumnNames());
+        for (Vector<Object> row : result.getDataRows()) {
+            builder.add(row.toArray());
+        }
+        return builder.build();
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * 列名（副本）。
+     */
+    public Vector<String> getColumnNames() {
+        return new Vector<>(Arrays.asList(columnNames));
+    }
+
+    /**
+     * 查找列的序号。
+     *
+     * @param name 列名。
+     * @return 序号；没有该列时返回 -1。
+     */
+    public int findColumn(String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 列中值的类型：整数列为 Number，实数列为 Double，文本列为 String，其他为 Object。
+     */
+    public Class<?> getColumnClass(int column) {
+        return columns[column].valueClass();
+    }
+
+    public boolean isNull(int row, int column) {
+        return columns[column].isNull(row);
+    }
+
+    /**
+     * 读取一个值，类型与 JDBC 驱动返回的相同（整数为 Integer 或 Long）。文本每次读取都会新建字符串。
+     *
+     * @return 值；为空时返回 null。
+     */
+    public Object getValueAt(int row, int column) {
+        return columns[column].get(row);
+    }
+
+    /**
+     * 读取一个值的文本形式，不需要装箱，适合逐行比较文本。
+     *
+     * @return 文本；为空时返回 null。
+     */
+    public String getString(int row, int column) {
+        Object value = columns[column].get(row);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * 读取整数列中的值，不装箱。
+     *
+     * @throws IllegalStateException 如果该列不是整数列。
+     */
+    public long getLong(int row, int column) {
+        if (!(columns[column] instanceof LongColumn)) {
+            throw new IllegalStateException("列 " + columnNames[column] + " 不是整数列。");
+        }
+        return ((LongColumn) columns[column]).values[row];
+    }
+
+    /**
+     * 读取数值列中的值，不装箱。
+     *
+     * @throws IllegalStateException 如果该列不是整数列或实数列。
+     */
+    public double getDouble(int row, int column) {
+        Column c = columns[column];
+        if (c instanceof DoubleColumn) {
+            return ((DoubleColumn) c).values[row];
+        }
+        if (c instanceof LongColumn) {
+            return ((LongColumn) c).values[row];
+        }
+        throw new IllegalStateException("列 " + columnNames[column] + " 不是数值列。");
+    }
+
+    /**
+     * 读取一行，供表格模型或需要 Vector 的代码使用。
+     */
+    public Vector<Object> getRow(int row) {
+        Vector<Object> values = new Vector<>(columns.length);
+        for (Column column : columns) {
+            values.add(column.get(row));
+        }
+        return values;
+    }
+
+    /**
+     * 转换为按行保存的结果（每次都是新的 Vector，调用方可以修改）。
+     */
+    public SelectResult toSelectResult() {
+        Vector<Vector<Object>> dataRows = new Vector<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            dataRows.add(getRow(i));
+        }
+        return new SelectResult(getColumnNames(), dataRows);
+    }
+
+    /**
+     * 只读的表格模型，显示时直接从各列读取，不复制数据。
+     */
+    public TableModel toTableModel() {
+        return new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return rowCount;
+            }
+
+            @Override
+            public int getColumnCount() {
+                return columnNames.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return columnNames[column];
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return ColumnarResult.this.getColumnClass(column);
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                return ColumnarResult.this.getValueAt(row, column);
+            }
+        };
+    }
+
+    /**
+     * 估计占用的内存（字节）。
+     */
+    public long estimateBytes() {
+        long size = 64;
+        for (int i = 0; i < columns.length; i++) {
+            size += 48 + 2L * columnNames[i].length() + columns[i].bytes();
+        }
+        return size;
+    }
+
+    /**
+     * 逐行添加数据，建立按列保存的结果。
+     */
+    static final class Builder {
+        private final String[] columnNames;
+        private final Column[] columns;
+        private int rowCount = 0;
+
+        Builder(Vector<String> columnNames) {
+            this.columnNames = columnNames.toArray(new String[0]);
+            this.columns = new Column[this.columnNames.length];
+        }
+
+        /**
+         * 添加一行，值的个数与列数相同。
+         */
+        Builder add(Object[] row) {
+            for (int i = 0; i < columns.length; i++) {
+                Object value = row[i];
+                if (columns[i] == null) {
+                    if (value == null) {
+                        continue; // 之前全是空值，等到第一个非空值再决定类型
+                    }
+                    columns[i] = Column.forValue(value, rowCount);
+                }
+                if (!columns[i].add(rowCount, value)) {
+                    columns[i] = new ObjectColumn(columns[i], rowCount);
+                    columns[i].add(rowCount, value);
+                }
+            }
+            rowCount++;
+            return this;
+        }
+
+        ColumnarResult build() {
+            Column[] built = new Column[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                built[i] = columns[i] == null ? new ObjectColumn(0) : columns[i];
+                built[i].trim(rowCount);
+            }
+            return new ColumnarResult(columnNames, built, rowCount);
+        }
+    }
+
+    /**
+     * 一列数据。行号超出已添加的范围时视为空值。
+     */
+    private abstract static class Column {
+        final BitSet nulls = new BitSet(); // 为空的行
+
+        /**
+         * 根据第一个非空值选择列的类型；之前的 rows 行都是空值。
+         */
+        static Column forValue(Object value, int rows) {
+            Column column;
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                column = new LongColumn(rows + 16);
+            } else if (value instanceof Double || value instanceof Float) {
+                column = new DoubleColumn(rows + 16);
+            } else if (value instanceof String) {
+                column = new StringColumn(rows + 16);
+            } else {
+                column = new ObjectColumn(rows + 16);
+            }
+            column.nulls.set(0, rows);
+            return column;
+        }
+
+        /**
+         * 在第 row 行保存一个值（按顺序逐行添加）。
+         *
+         * @return 值的类型不属于这一列时返回 false，不保存。
+         */
+        abstract boolean add(int row, Object value);
+
+        abstract Object get(int row);
+
+        abstract Class<?> valueClass();
+
+        /**
+         * 把数组缩小到实际行数。
+         */
+        abstract void trim(int rows);
+
+        abstract long bytes();
+
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        static int grow(int length, int row) {
+            return Math.max(row + 1, length + (length >> 1) + 16);
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        long[] values;
+        private int size = 0;
+
+        LongColumn(int capacity) {
+            values = new long[capacity];
+        }
+
+        @Override
+        boolean add(int row, Object value) {
+            if (value != null && !(value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte)) {
+                return false;
+            }
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                values[row] = ((Number) value).longValue();
+            }
+            size = row + 1;
+            return true;
+        }
+
+        @Override
+        Object get(int row) {
+            if (row >= size || nulls.get(row)) {
+                return null;
+            }
+            long value = values[row];
+            // 与 JDBC 驱动一致：在 int 范围内的整数读取为 Integer，否则为 Long
+            return value == (int) value ? (Object) (int) value : (Object) value;
+        }
+
+        @Override
+        Class<?> valueClass() {
+            return Number.class;
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+            size = rows;
+        }
+
+        @Override
+        long bytes() {
+            return 16 + 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        double[] values;
+        private int size = 0;
+
+        DoubleColumn(int capacity) {
+            values = new double[capacity];
+        }
+
+        @Override
+        boolean add(int row, Object value) {
+            if (value != null && !(value instanceof Double || value instanceof Float)) {
+                return false;
+            }
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                values[row] = ((Number) value).doubleValue();
+            }
+            size = row + 1;
+            return true;
+        }
+
+        @Override
+        Object get(int row) {
+            return row >= size || nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        Class<?> valueClass() {
+            return Double.class;
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+            size = rows;
+        }
+
+        @Override
+        long bytes() {
+            return 16 + 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * 文本列：第 i 行的字符串是 chars[offsets[i], offsets[i + 1])。
+     */
+    private static final class StringColumn extends Column {
+        private char[] chars = new char[256];
+        private int[] offsets;
+        private int size = 0;
+
+        StringColumn(int capacity) {
+            offsets = new int[capacity + 1];
+        }
+
+        @Override
+        boolean add(int row, Object value) {
+            if (value != null && !(value instanceof String)) {
+                return false;
+            }
+            if (row + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, grow(offsets.length, row + 1));
+            }
+            int start = offsets[size];
+            for (int i = size + 1; i <= row; i++) {
+                offsets[i] = start; // 之前的空值行长度为 0
+            }
+            if (value == null) {
+                nulls.set(row);
+                offsets[row + 1] = start;
+            } else {
+                String s = (String) value;
+                if (start + s.length() > chars.length) {
+                    chars = Arrays.copyOf(chars, Math.max(start + s.length(), chars.length * 2));
+                }
+                s.getChars(0, s.length(), chars, start);
+                offsets[row + 1] = start + s.length();
+            }
+            size = row + 1;
+            return true;
+        }
+
+        @Override
+        Object get(int row) {
+            if (row >= size || nulls.get(row)) {
+                return null;
+            }
+            return new String(chars, offsets[row], offsets[row + 1] - offsets[row]);
+        }
+
+        @Override
+        Class<?> valueClass() {
+            return String.class;
+        }
+
+        @Override
+        void trim(int rows) {
+            int start = offsets[size];
+            offsets = Arrays.copyOf(offsets, rows + 1);
+            for (int i = size + 1; i <= rows; i++) {
+                offsets[i] = start;
+            }
+            chars = Arrays.copyOf(chars, offsets[rows]);
+            size = rows;
+        }
+
+        @Override
+        long bytes() {
+            return 32 + 2L * chars.length + 4L * offsets.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * 逐个保存对象的列，用于二进制数据和混合类型的列。
+     */
+    private static final class ObjectColumn extends Column {
+        private Object[] values;
+        private int size = 0;
+
+        ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        /**
+         * 从类型不符的列转换，保留已有的 rows 行。
+         */
+        ObjectColumn(Column from, int rows) {
+            values = new Object[rows + 16];
+            for (int i = 0; i < rows; i++) {
+                values[i] = from.get(i);
+            }
+            size = rows;
+        }
+
+        @Override
+        boolean add(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = value;
+            size = row + 1;
+            return true;
+        }
+
+        @Override
+        Object get(int row) {
+            return row >= size ? null : values[row];
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return get(row) == null;
+        }
+
+        @Override
+        Class<?> valueClass() {
+            return Object.class;
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+            size = rows;
+        }
+
+        @Override
+        long bytes() {
+            long size = 16 + 8L * values.length;
+            for (Object value : values) {
+                if (value instanceof byte[]) {
+                    size += 16 + ((byte[]) value).length;
+                } else if (value instanceof String) {
+                    size += 48 + 2L * ((String) value).length();
+                } else if (value != null) {
+                    size += 24;
+                }
+            }
+            return size;
+        }
+    }
+}
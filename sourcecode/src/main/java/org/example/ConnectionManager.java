@@ -0,0 +1,382 @@
+package org.example;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * ConnectionManager 类负责管理同一个 SQLite 数据库文件的长连接。
+ * 包含一个专用的写连接（同一时刻只允许一个使用者）和一个有上限的只读连接池，
+ * 连接在创建时统一设置 PRAGMA，之后一直复用，避免每次调用都重新打开文件、解析表结构和预热页缓存。
+ * <p>
+ * 数据库使用 WAL 日志模式：写入追加到 WAL 文件，读取看到的是开始读取时已提交的数据，
+ * 因此长时间的导入不会阻塞浏览和查找。检查点由 {@link WalCheckpointer} 管理。
+ */
+public class ConnectionManager implements AutoCloseable {
+    private static final int DEFAULT_MAX_READERS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30; // 等待空闲只读连接的最长时间
+    private static final int BUSY_TIMEOUT_MS = 5000; // 锁冲突时 SQLite 的等待时间
+    private static final int CACHE_SIZE_KB = 20000; // 每个连接的页缓存大小（KB）
+    static final int DEFAULT_WAL_AUTOCHECKPOINT = 1000; // WAL 超过多少页时提交后自动执行检查点
+
+    private final String url;
+    private final int maxReaders;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<Connection> idleReaders;
+    private final List<Connection> allReaders = new ArrayList<>();
+    private final AtomicLong writeGeneration = new AtomicLong(); // 有写入的写连接租约的归还次数
+    private Connection writer;
+    private long[] changesAtAcquire; // 最外层写租约开始时写连接的修改计数（见 changeCount）
+    private volatile String journalMode = null; // 写连接的日志模式，尚未打开写连接时为 null
+    private int walAutoCheckpoint = DEFAULT_WAL_AUTOCHECKPOINT;
+    private final WalCheckpointer checkpointer;
+    private volatile boolean databaseReady = false; // 数据库文件是否已由写连接创建
+    private volatile boolean closed = false;
+
+    /**
+     * 构造方法，使用默认的只读连接池大小。
+     *
+     * @param url JDBC 连接地址。
+     */
+    public ConnectionManager(String url) {
+        this(url, DEFAULT_MAX_READERS);
+    }
+
+    /**
+     * 构造方法。
+     *
+     * @param url        JDBC 连接地址。
+     * @param maxReaders 只读连接池的最大连接数。
+     */
+    public ConnectionManager(String url, int maxReaders) {
+        this.url = url;
+        this.maxReaders = Math.max(1, maxReaders);
+        this.idleReaders = new ArrayBlockingQueue<>(this.maxReaders);
+        this.checkpointer = new WalCheckpointer(writeGeneration::get, url);
+    }
+
+    /**
+     * 获取写连接。写连接是独占的，调用方必须在使用完毕后关闭返回的租约。
+     * 同一线程可以重入获取。
+     *
+     * @return 写连接租约。
+     * @throws SQLException 如果连接无法打开。
+     */
+    public Lease write() throws SQLException {
+        writeLock.lock();
+        return acquireWriter();
+    }
+
+    /**
+     * 尝试获取写连接，写连接正被其他线程使用时立即返回 null。同一线程可以重入获取。
+     *
+     * @return 写连接租约；写连接被占用时返回 null。
+     * @throws SQLException 如果连接无法打开。
+     */
+    public Lease tryWrite() throws SQLException {
+        if (!writeLock.tryLock()) {
+            return null;
+        }
+        return acquireWriter();
+    }
+
+    /**
+     * 确保数据库文件存在：尚未打开写连接时打开它（写连接打开时创建文件）。不计入写入次数。
+     *
+     * @throws SQLException 如果连接无法打开。
+     */
+    public void ensureDatabase() throws SQLException {
+        writeLock.lock();
+        try {
+            ensureOpen();
+            openWriter();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 在已持有写锁（本次获取的一层）时打开写连接并创建租约，失败时释放这一层锁。
+     * 最外层租约记录写连接当时的修改计数，归还时据此判断是否有写入。
+     */
+    private Lease acquireWriter() throws SQLException {
+        try {
+            ensureOpen();
+            openWriter();
+            if (writeLock.getHoldCount() == 1) {
+                changesAtAcquire = changeCount(writer);
+            }
+            return new Lease(writer, this::releaseWriter);
+        } catch (SQLException | RuntimeException e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
+
+    private void openWriter() throws SQLException {
+        if (writer == null || writer.isClosed()) {
+            writer = DriverManager.getConnection(url);
+            applyPragmas(writer);
+            applyWriterPragmas(writer);
+            databaseReady = true;
+        }
+    }
+
+    /**
+     * 写连接的修改计数：累计修改的行数（total_changes()，包括触发器的修改）和表结构版本（建表、删表等改变它）。
+     * 两者在租约期间都没有变化说明租约没有写入。查询失败时返回 null，按有写入处理。
+     */
+    private static long[] changeCount(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT total_changes(), (SELECT schema_version FROM pragma_schema_version);")) {
+            return rs.next() ? new long[]{rs.getLong(1), rs.getLong(2)} : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 获取写入次数：每次归还有写入的写连接（最外层租约）时加一，缓存的查询结果可以据此判断数据是否可能已改变。
+     * 只读取或什么也没做的写租约不改变它。
+     *
+     * @return 写入次数。
+     */
+    public long getWriteGeneration() {
+        return writeGeneration.get();
+    }
+
+    /**
+     * 从只读连接池中获取一个连接。池中没有空闲连接且未达到上限时创建新连接，
+     * 否则等待其他使用者归还。
+     *
+     * @return 只读连接租约。
+     * @throws SQLException 如果连接无法打开或等待超时。
+     */
+    public Lease read() throws SQLException {
+        ensureOpen();
+        Connection conn = idleReaders.poll();
+        if (conn == null) {
+            conn = openReaderIfAllowed();
+        }
+        if (conn == null) {
+            try {
+                conn = idleReaders.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("等待只读连接时被中断。", e);
+            }
+            if (conn == null) {
+                throw new SQLException("等待只读连接超时。");
+            }
+        }
+        return new Lease(conn, this::releaseReader);
+    }
+
+    /**
+     * 在未达到上限时打开一个新的只读连接。
+     *
+     * @return 新连接；如果已达到上限，返回 null。
+     * @throws SQLException 如果连接无法打开。
+     */
+    private Connection openReaderIfAllowed() throws SQLException {
+        synchronized (allReaders) {
+            if (allReaders.size() >= maxReaders) {
+                return null;
+            }
+            // 只读连接无法创建数据库文件，首次使用时先通过写连接确保文件存在
+            if (!databaseReady) {
+                ensureDatabase();
+            }
+            SQLiteConfig config = new SQLiteConfig();
+            config.setReadOnly(true);
+            Connection conn = DriverManager.getConnection(url, config.toProperties());
+            applyPragmas(conn);
+            allReaders.add(conn);
+            return conn;
+        }
+    }
+
+    /**
+     * 为新打开的连接设置 PRAGMA。
+     *
+     * @param conn 要设置的连接。
+     * @throws SQLException 如果执行 PRAGMA 时发生错误。
+     */
+    private void applyPragmas(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS + ";");
+            stmt.execute("PRAGMA cache_size = -" + CACHE_SIZE_KB + ";");
+            stmt.execute("PRAGMA temp_store = MEMORY;");
+        }
+    }
+
+    /**
+     * 为写连接切换到 WAL 日志模式（模式保存在数据库文件中），并设置自动检查点的阈值。
+     * WAL 模式下 synchronous = NORMAL 不会损坏数据库，只是断电时可能丢失最近的提交。
+     * 无法使用 WAL 时（如内存数据库）保持原来的模式。
+     *
+     * @param conn 写连接。
+     * @throws SQLException 如果执行 PRAGMA 时发生错误。
+     */
+    private void applyWriterPragmas(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode = WAL;")) {
+                journalMode = rs.next() ? rs.getString(1).toLowerCase(Locale.ROOT) : null;
+            }
+            if (isWal()) {
+                stmt.execute("PRAGMA synchronous = NORMAL;");
+                stmt.execute("PRAGMA wal_autocheckpoint = " + walAutoCheckpoint + ";");
+                checkpointer.start();
+            }
+        }
+    }
+
+    /**
+     * 写连接是否使用 WAL 日志模式。尚未打开写连接时返回 false。
+     */
+    public boolean isWal() {
+        return "wal".equals(journalMode);
+    }
+
+    /**
+     * 设置 WAL 超过多少页时在提交后自动执行检查点；为 0 时不自动执行，只由 {@link WalCheckpointer} 执行。
+     *
+     * @param pages 页数。
+     * @throws SQLException 如果写连接已打开且设置失败。
+     */
+    public void setWalAutoCheckpoint(int pages) throws SQLException {
+        writeLock.lock();
+        try {
+            walAutoCheckpoint = Math.max(0, pages);
+            if (writer != null && !writer.isClosed() && isWal()) {
+                try (Statement stmt = writer.createStatement()) {
+                    stmt.execute("PRAGMA wal_autocheckpoint = " + walAutoCheckpoint + ";");
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int getWalAutoCheckpoint() {
+        return walAutoCheckpoint;
+    }
+
+    /**
+     * 获取 WAL 检查点管理对象。
+     */
+    public WalCheckpointer getWalCheckpointer() {
+        return checkpointer;
+    }
+
+    /**
+     * 归还写连接。最外层租约归还时，如果调用方遗留了未提交的事务，则回滚并恢复自动提交；
+     * 租约期间有写入（包括回滚掉的）时写入次数加一。
+     */
+    private void releaseWriter(Connection conn) {
+        boolean outermost = writeLock.getHoldCount() == 1;
+        try {
+            if (outermost && !conn.isClosed() && !conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("重置写连接时出错: " + e.getMessage());
+        } finally {
+            if (outermost) {
+                long[] before = changesAtAcquire;
+                changesAtAcquire = null;
+                if (before == null || !Arrays.equals(before, changeCount(conn))) {
+                    writeGeneration.incrementAndGet();
+                }
+            }
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 归还只读连接到池中；如果管理器已关闭，则直接关闭连接。
+     */
+    private void releaseReader(Connection conn) {
+        if (closed || !idleReaders.offer(conn)) {
+            closeQuietly(conn);
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("连接管理器已关闭。");
+        }
+    }
+
+    /**
+     * 关闭所有连接。正在使用中的只读连接会在归还时关闭。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        checkpointer.close();
+        Connection conn;
+        while ((conn = idleReaders.poll()) != null) {
+            closeQuietly(conn);
+        }
+        writeLock.lock();
+        try {
+            if (writer != null) {
+                closeQuietly(writer);
+                writer = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("关闭数据库连接时出错: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 连接租约，关闭时将连接归还给管理器而不是真正关闭。
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final Consumer<Connection> releaser;
+        private boolean released = false;
+
+        private Lease(Connection connection, Consumer<Connection> releaser) {
+            this.connection = connection;
+            this.releaser = releaser;
+        }
+
+        public Connection connection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                releaser.accept(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.example;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CountingInputStream 类在读取时统计已经从底层流中消费的字节数，用于按字节报告导入进度。
+ */
+public class CountingInputStream extends FilterInputStream {
+    private volatile long count = 0;
+
+    /**
+     * 构造方法。
+     *
+     * @param in 被包装的输入流。
+     */
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * 获取已读取的字节数。
+     *
+     * @return 已读取的字节数。
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false; // 不支持 reset，避免计数回退
+    }
+}
@@ -4,13 +4,36 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Set;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
 
-public class DOperator {
+public class DOperator implements AutoCloseable {
     public String location;
     String url;
+    private ConnectionManager connections; // 长连接管理（写连接 + 只读连接池）
+    private final Map<String, InsertPlan> insertPlans = new ConcurrentHashMap<>(); // 按表名缓存的插入计划
+    private volatile InsertStrategy insertStrategy = InsertStrategy.AUTO; // 批量插入的执行方式
+    private volatile boolean autoTrigramIndex = true; // 高阶搜索时是否自动为列建立三字符组索引
+    private static final int MAX_PAGE_INDEXES = 16; // 缓存的页索引数量上限
+    private final Map<String, KeysetPager.PageIndex> pageIndexes = Collections.synchronizedMap(
+            new LinkedHashMap<String, KeysetPager.PageIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, KeysetPager.PageIndex> eldest) {
+                    return size() > MAX_PAGE_INDEXES;
+                }
+            }); // 按查询缓存的稀疏页索引，最近最少使用的先丢弃
+    private RowCounter rowCounter; // 表和查找结果的记录数，第一次使用时创建
+    private final PageCache pageCache = new PageCache(PageCache.DEFAULT_MAX_BYTES); // 读取过的页
+    private final Map<String, List<SearchIndex>> searchIndexes = new ConcurrentHashMap<>(); // 按表名缓存的全文索引
+    private volatile long searchIndexGeneration = -1; // searchIndexes 对应的写连接归还次数
+    private final Map<String, EditDistanceIndex> editDistanceIndexes = new ConcurrentHashMap<>(); // 打开过的编辑距离索引
+    private final Object editDistanceBuildLock = new Object(); // 同一时间只打开（建立）一个编辑距离索引
 
     // 定义SQLite的保留字集合
     private static final Set<String> SQL_RESERVED_WORDS = new HashSet<>(Arrays.asList(
@@ -55,11 +78,28 @@ public class DOperator {
      * @return 列信息列表。如果查询失败，返回空列表。
      */
     public List<ColumnInfo> getTableColumnsWithTypesEscaped(String tableName) {
+        try (ConnectionManager.Lease lease = connections.read()) {
+            return readColumns(lease.connection(), tableName);
+        } catch (SQLException e) {
+            System.err.println("获取表列信息出错: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 在指定连接上读取表的列名及其类型，排除自动增量的id列。
+     * 在写连接的事务中调用时可以看到尚未提交的表。
+     *
+     * @param conn      数据库连接。
+     * @param tableName 要查询的表名。
+     * @return 列信息列表。如果表不存在，返回空列表。
+     * @throws SQLException 如果查询失败。
+     */
+    List<ColumnInfo> readColumns(Connection conn, String tableName) throws SQLException {
         List<ColumnInfo> columns = new ArrayList<>();
         String query = "PRAGMA table_info(" + escapeColumnName(tableName) + ");";
 
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement();
+        try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
 
             while (rs.next()) {
@@ -72,9 +112,6 @@ public class DOperator {
                     columns.add(new ColumnInfo(columnName, columnType));
                 }
             }
-
-        } catch (SQLException e) {
-            System.err.println("获取表列信息出错: " + e.getMessage());
         }
 
         return columns;
@@ -84,23 +121,74 @@ public class DOperator {
     public DOperator(String location){
         this.location = location;
         this.url = "jdbc:sqlite:"+location;
+        this.connections = new ConnectionManager(url);
     }
 
-    // 修改数据库路径
+    // 修改数据库路径，关闭原数据库的所有连接
     public DOperator setPath(String location){
+        saveEditDistanceIndexes();
+        clearInsertPlans();
+        pageIndexes.clear();
+        getRowCounter().clear();
+        searchIndexes.clear();
+        pageCache.clear();
+        connections.close();
         this.location = location;
         this.url = "jdbc:sqlite:"+location;
+        this.connections = new ConnectionManager(url);
+        return this;
+    }
+
+    /**
+     * 设置批量插入的执行方式，默认为 {@link InsertStrategy#AUTO}。
+     *
+     * @param insertStrategy 插入方式。
+     * @return 当前对象。
+     */
+    public DOperator setInsertStrategy(InsertStrategy insertStrategy) {
+        this.insertStrategy = insertStrategy;
         return this;
     }
 
+    public InsertStrategy getInsertStrategy() {
+        return insertStrategy;
+    }
+
+    /**
+     * 设置高阶搜索（{@link #fuzzySearch}）是否在列没有三字符组索引时自动建立，默认为 true。
+     * 设为 false 时，没有三字符组索引的列只比较 LIKE '%关键字%' 的前 {@value FuzzySearch#LIKE_CANDIDATE_LIMIT} 行，
+     * 拼写有错误的值可能找不到（结果的 {@link FuzzySearch.Result#isIndexed()} 为 false）。
+     *
+     * @param autoTrigramIndex 是否自动建立三字符组索引。
+     * @return 当前对象。
+     */
+    public DOperator setAutoTrigramIndex(boolean autoTrigramIndex) {
+        this.autoTrigramIndex = autoTrigramIndex;
+        return this;
+    }
+
+    public boolean isAutoTrigramIndex() {
+        return autoTrigramIndex;
+    }
+
+    // 关闭数据库的所有连接
+    @Override
+    public void close() {
+        saveEditDistanceIndexes();
+        clearInsertPlans();
+        pageIndexes.clear();
+        getRowCounter().clear();
+        searchIndexes.clear();
+        pageCache.clear();
+        connections.close();
+    }
+
     // 创建数据库
     public boolean createDatabase(){
-        try (Connection conn = DriverManager.getConnection(url)) {
-            if (conn != null) {
-                System.out.println("连接成功！数据库文件存储在 " + url);
-                return true;
-            }
-            return false;
+        try {
+            connections.ensureDatabase();
+            System.out.println("连接成功！数据库文件存储在 " + url);
+            return true;
         } catch (SQLException e) {
             System.out.println("连接数据库失败: " + e.getMessage());
             return false;
@@ -114,120 +202,692 @@ public class DOperator {
 
     /**
      * Select 方法，用于从指定的表中查询数据。
+     * 按 id 排序，通过 {@link KeysetPager} 的页索引定位页。id 连续时直接定位；否则第一次跳到第 N 页的代价与 OFFSET 相当，
+     * 之后在写入前跳到前 N 页中的任意页都只需按键定位。
      *
      * @param tableName    要查询的表名。
      * @param fieldNames   要匹配的字段名数组。如果为 null 或空，则不进行字段匹配。
-     * @param searchValues 与字段名对应的查找内容数组。如果为 null 或空，则不进行字段匹配。
+     * @param searchValues 与字段名对应的查找内容数组：LIKE 模式，或 {@link SearchIndex#keyword} 生成的按词查找。
+     *                     如果为 null 或空，则不进行字段匹配。
      * @param page         当前页码（从 1 开始）。
      * @param pageSize     每页记录数。
      * @return SelectResult 包含列名和数据行。如果查询失败，返回空结果。
      */
     public SelectResult select(String tableName, String[] fieldNames, String[] searchValues, int page, int pageSize) throws SQLException {
-        Vector<String> columnNames = new Vector<>();
-        Vector<Vector<Object>> dataRows = new Vector<>();
+        try {
+            return pager(tableName, fieldNames, searchValues, null, pageSize).page(page);
+        } catch (SQLException e) {
+            System.err.println("Select 查询出错: " + e.getMessage());
+            throw e; // 抛出异常
+        }
+    }
 
-        // 参数验证
+    /**
+     * 创建按键定位的分页器。连续翻页时使用 {@link KeysetPager#next()} 和 {@link KeysetPager#previous()}，
+     * 跳转时使用 {@link KeysetPager#page(int)}。
+     *
+     * @param tableName    要查询的表名。
+     * @param fieldNames   要匹配的字段名数组。如果为 null 或空，则不进行字段匹配。
+     * @param searchValues 与字段名对应的查找内容数组（LIKE 模式或按词查找）。
+     * @param sortColumn   排序列；为 null 时按 id 排序。
+     * @param pageSize     每页记录数。
+     * @return 分页器。
+     */
+    public KeysetPager pager(String tableName, String[] fieldNames, String[] searchValues, String sortColumn, int pageSize) {
+        return new KeysetPager(this, tableName, fieldNames, searchValues, sortColumn, pageSize);
+    }
+
+    /**
+     * 打开逐行读取的游标，按 id 顺序返回表中（或符合查找条件的）记录，不把结果全部读入内存。
+     * 游标占用一个只读连接，用完后必须关闭。
+     *
+     * @param tableName    要查询的表名。
+     * @param fieldNames   要匹配的字段名数组。如果为 null 或空，则不进行字段匹配。
+     * @param searchValues 与字段名对应的查找内容数组（LIKE 模式或按词查找）。
+     * @param includeId    是否包含 id 列。
+     * @param limit        最多读取的行数；为 0 时不限制。
+     * @return 游标。
+     * @throws SQLException 如果查询失败。
+     */
+    public RowCursor openCursor(String tableName, String[] fieldNames, String[] searchValues,
+                                boolean includeId, long limit) throws SQLException {
         boolean hasSearch = fieldNames != null && searchValues != null &&
                 fieldNames.length > 0 && searchValues.length > 0 &&
                 fieldNames.length == searchValues.length;
 
-        // 构建 SELECT 语句
-        StringBuilder sb = new StringBuilder("SELECT * FROM ").append(escapeColumnName(tableName));
-        if (hasSearch) {
-            sb.append(" WHERE ");
-            for (int i = 0; i < fieldNames.length; i++) {
-                sb.append(escapeColumnName(fieldNames[i])).append(" LIKE ?");
-                if (i < fieldNames.length - 1) {
-                    sb.append(" AND ");
+        ConnectionManager.Lease lease = connections.read();
+        PreparedStatement pstmt = null;
+        try {
+            // 构建 SELECT 语句，有全文索引时使用索引
+            List<Object> params = new ArrayList<>();
+            StringBuilder sb = new StringBuilder("SELECT * FROM ").append(escapeColumnName(tableName));
+            if (hasSearch) {
+                sb.append(" WHERE ");
+                for (int i = 0; i < fieldNames.length; i++) {
+                    sb.append(searchCondition(lease.connection(), tableName, fieldNames[i], searchValues[i], params));
+                    if (i < fieldNames.length - 1) {
+                        sb.append(" AND ");
+                    }
                 }
             }
+            sb.append(" ORDER BY id");
+            if (limit > 0) {
+                sb.append(" LIMIT ?");
+                params.add(limit);
+            }
+
+            pstmt = lease.connection().prepareStatement(sb.append(';').toString());
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (pstmt != null) {
+                pstmt.close();
+            }
+            lease.close();
+            throw e;
         }
-        sb.append(" LIMIT ? OFFSET ?;"); // 分页
+        return new RowCursor(lease, pstmt, includeId);
+    }
 
-        String query = sb.toString();
+    /**
+     * 获取查询的稀疏页索引。写连接归还过（数据可能已改变）之后重新建立。
+     *
+     * @param key 查询的标识（表名、查找条件、排序列和每页记录数）。
+     * @return 页索引。
+     */
+    KeysetPager.PageIndex pageIndex(String key) {
+        long generation = connections.getWriteGeneration();
+        synchronized (pageIndexes) {
+            KeysetPager.PageIndex index = pageIndexes.get(key);
+            if (index == null || index.getGeneration() != generation) {
+                index = new KeysetPager.PageIndex(generation);
+                pageIndexes.put(key, index);
+            }
+            return index;
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+    /**
+     * 从只读连接池中获取一个连接，供同一包中的查询类使用。
+     */
+    ConnectionManager.Lease readLease() throws SQLException {
+        return connections.read();
+    }
 
-            int paramIndex = 1;
+    /**
+     * 为表的一列创建全文索引（已存在时不做任何事）。之后对该列的查找先用索引找出候选行，再用 LIKE 核对。
+     * 索引由表上的触发器随插入、删除和更新同步。
+     *
+     * @param tableName  表名。
+     * @param columnName 列名。
+     * @param type       索引类型。
+     * @throws SQLException 如果列不存在或执行数据库操作时发生错误。
+     */
+    public void createSearchIndex(String tableName, String columnName, SearchIndex.Type type) throws SQLException {
+        try (ConnectionManager.Lease lease = connections.write()) {
+            Connection conn = lease.connection();
+            ColumnInfo column = findColumn(readColumns(conn, tableName), tableName, columnName);
+            conn.setAutoCommit(false); // 开始事务
+            try {
+                SearchIndex.create(this, conn, tableName, column.getName(), type);
+                conn.commit(); // 提交事务
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("创建全文索引出错: " + e.getMessage());
+            throw e;
+        }
+    }
 
-            // 设置搜索参数
-            if (hasSearch) {
-                for (String value : searchValues) {
-                    pstmt.setString(paramIndex++, value);
-                }
+    /**
+     * 删除表中一列的全文索引。索引不存在时不做任何事。
+     *
+     * @param tableName  表名。
+     * @param columnName 列名。
+     * @param type       索引类型。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void dropSearchIndex(String tableName, String columnName, SearchIndex.Type type) throws SQLException {
+        try (ConnectionManager.Lease lease = connections.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false); // 开始事务
+            try {
+                SearchIndex.drop(conn, tableName, columnName, type);
+                conn.commit(); // 提交事务
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
+        }
+    }
 
-            // 设置分页参数
-            pstmt.setInt(paramIndex++, pageSize);
-            pstmt.setInt(paramIndex, (page - 1) * pageSize);
+    /**
+     * 获取表上的全文索引。
+     *
+     * @param tableName 表名。
+     * @return 索引列表。如果查询失败，返回空列表。
+     */
+    public List<SearchIndex> getSearchIndexes(String tableName) {
+        try (ConnectionManager.Lease lease = connections.read()) {
+            return searchIndexes(lease.connection(), tableName);
+        } catch (SQLException e) {
+            System.err.println("获取全文索引出错: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
 
-            ResultSet rs = pstmt.executeQuery();
+    /**
+     * 获取表上的全文索引。缓存的结果在写连接归还后（索引可能已创建或删除）重新读取。
+     */
+    private List<SearchIndex> searchIndexes(Connection conn, String tableName) throws SQLException {
+        long generation = connections.getWriteGeneration();
+        if (generation != searchIndexGeneration) {
+            searchIndexes.clear();
+            searchIndexGeneration = generation;
+        }
+        List<SearchIndex> indexes = searchIndexes.get(tableName);
+        if (indexes == null) {
+            indexes = SearchIndex.read(conn, tableName);
+            searchIndexes.put(tableName, indexes);
+        }
+        return indexes;
+    }
 
-            // 获取列名
-            ResultSetMetaData meta = rs.getMetaData();
-            int columnCount = meta.getColumnCount();
-            for (int i = 1; i <= columnCount; i++) {
-                columnNames.add(meta.getColumnName(i));
+    /**
+     * 生成字段的查找条件，并把参数追加到参数列表。
+     * 查找内容是 LIKE 模式时，字段有三字符组索引且模式可以由索引回答，先用索引找出候选行，再用 LIKE 核对；否则只用 LIKE。
+     * 查找内容是按词查找（{@link SearchIndex#keyword}）时，字段有按词索引则用索引回答；否则退回到每个词的子串匹配。
+     *
+     * @param conn      执行查询的连接。
+     * @param tableName 表名。
+     * @param fieldName 字段名。
+     * @param pattern   LIKE 模式或按词查找。
+     * @param params    参数列表。
+     * @return 条件。
+     * @throws SQLException 如果读取索引信息失败。
+     */
+    String searchCondition(Connection conn, String tableName, String fieldName, String pattern, List<Object> params)
+            throws SQLException {
+        String like = escapeColumnName(fieldName) + " LIKE ?";
+        SearchIndex index = searchIndexFor(conn, tableName, fieldName, pattern);
+        if (SearchIndex.isKeyword(pattern)) {
+            if (index != null) {
+                return index.condition(pattern, params);
             }
+            List<String> words = SearchIndex.keywordWords(pattern);
+            if (words.isEmpty()) {
+                return "0"; // 没有任何词，与按词索引一样不匹配任何行
+            }
+            StringBuilder condition = new StringBuilder();
+            for (String word : words) {
+                if (condition.length() > 0) {
+                    condition.append(" AND ");
+                }
+                condition.append(like);
+                params.add("%" + word + "%");
+            }
+            return condition.toString();
+        }
+        String candidates = index != null ? index.condition(pattern, params) + " AND " : "";
+        params.add(pattern);
+        return candidates + like;
+    }
 
-            // 获取数据行
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
+    /**
+     * 查找一列中与关键字最相似的记录（高阶搜索），可以容忍拼写错误。
+     * 用三字符组索引在整张表中选出候选行；该列还没有三字符组索引时，第一次查找先建立索引（{@link #setAutoTrigramIndex}）。
+     * 没有索引（关闭了自动建立、建立失败或关键字不足三个字符）时只比较 LIKE '%关键字%' 的前若干行。
+     *
+     * @param tableName  表名。
+     * @param columnName 要比较的列名。
+     * @param keyword    关键字。
+     * @param limit      返回的记录数上限。
+     * @return 按相似度从高到低排列的结果。
+     * @throws SQLException 如果查询失败。
+     */
+    public FuzzySearch.Result fuzzySearch(String tableName, String columnName, String keyword, int limit)
+            throws SQLException {
+        if (autoTrigramIndex && !SearchIndex.trigrams(keyword.replace("%", "")).isEmpty()) {
+            ensureTrigramIndex(tableName, columnName);
+        }
+        return new FuzzySearch(this).search(tableName, columnName, keyword, limit);
+    }
+
+    /**
+     * 列还没有三字符组索引时建立索引。写连接正被占用（例如正在导入）时不等待，
+     * 和建立失败时一样只输出提示，查找退回到 LIKE 预筛选。
+     */
+    private void ensureTrigramIndex(String tableName, String columnName) throws SQLException {
+        try (ConnectionManager.Lease lease = connections.read()) {
+            if (trigramIndex(lease.connection(), tableName, columnName) != null) {
+                return;
+            }
+        }
+        long start = System.currentTimeMillis();
+        try (ConnectionManager.Lease lease = connections.tryWrite()) {
+            if (lease == null) {
+                System.out.println("写连接正忙，高阶搜索退回到 LIKE 预筛选");
+                return;
+            }
+            createSearchIndex(tableName, columnName, SearchIndex.Type.TRIGRAM); // 已持有写连接，重入获取
+            System.out.println("已为列 '" + columnName + "' 建立三字符组索引，耗时 "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (SQLException e) {
+            System.err.println("高阶搜索退回到 LIKE 预筛选: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查找一列蛋白质序列中与查询序列局部比对得分最高的记录（Smith-Waterman，BLOSUM62，仿射空位罚分）。
+     * 扫描整张表，在所有 CPU 核上并行计算。
+     *
+     * @param tableName  表名。
+     * @param columnName 序列所在的列名。
+     * @param query      查询序列。
+     * @param limit      返回的记录数上限。
+     * @return 按比对得分从高到低排列的结果，相似度为比对得分。
+     * @throws SQLException 如果查询失败。
+     */
+    public FuzzySearch.Result sequenceSearch(String tableName, String columnName, String query, int limit)
+            throws SQLException {
+        return sequenceSearch(tableName, columnName, query, limit, null);
+    }
+
+    /**
+     * 查找并报告进度：每比对完一批行，progress 接收已比对的行数。调用线程被中断时停止查找，
+     * 抛出 {@link java.util.concurrent.CancellationException}。
+     */
+    public FuzzySearch.Result sequenceSearch(String tableName, String columnName, String query, int limit,
+                                             IntConsumer progress) throws SQLException {
+        return new SequenceSearch(this).search(tableName, columnName, query,
+                SmithWaterman.DEFAULT_GAP_OPEN, SmithWaterman.DEFAULT_GAP_EXTEND, limit, progress);
+    }
+
+    /**
+     * 使用指定的空位罚分查找（长度为 k 的空位罚分为 gapOpen + k * gapExtend）。
+     */
+    public FuzzySearch.Result sequenceSearch(String tableName, String columnName, String query,
+                                             int gapOpen, int gapExtend, int limit) throws SQLException {
+        return new SequenceSearch(this).search(tableName, columnName, query, gapOpen, gapExtend, limit, null);
+    }
+
+    /**
+     * 按 id 读取记录（包含 id 列），不存在的 id 被忽略。
+     *
+     * @param tableName 表名。
+     * @param ids       要读取的 id。
+     * @return 读取到的记录，按 id 排列。
+     * @throws SQLException 如果查询失败。
+     */
+    public ColumnarResult selectByIds(String tableName, long[] ids) throws SQLException {
+        try (ConnectionManager.Lease lease = connections.read()) {
+            return selectByIds(lease.connection(), tableName, null, ids);
+        }
+    }
+
+    /**
+     * 按 id 读取记录的部分列。
+     *
+     * @param columnNames 要读取的列名；为 null 时读取所有列（包含 id 列）。
+     */
+    ColumnarResult selectByIds(Connection conn, String tableName, String[] columnNames, long[] ids) throws SQLException {
+        String columns = "*";
+        if (columnNames != null) {
+            StringBuilder list = new StringBuilder();
+            for (String columnName : columnNames) {
+                if (list.length() > 0) {
+                    list.append(", ");
+                }
+                list.append(escapeColumnName(columnName));
+            }
+            columns = list.toString();
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(ids[i]);
+        }
+        json.append(']');
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT " + columns + " FROM " + escapeColumnName(tableName)
+                + " WHERE id IN (SELECT value FROM json_each(?)) ORDER BY id;")) {
+            pstmt.setString(1, json.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                Vector<String> names = new Vector<>();
                 for (int i = 1; i <= columnCount; i++) {
-                    row.add(rs.getObject(i));
+                    names.add(rs.getMetaData().getColumnName(i));
+                }
+                ColumnarResult.Builder builder = new ColumnarResult.Builder(names);
+                while (rs.next()) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    builder.add(row);
                 }
-                dataRows.add(row);
+                return builder.build();
             }
+        }
+    }
+
+    /**
+     * 打开一列的编辑距离索引，用于查找与某个值的编辑距离不超过 k 或最小的记录。
+     * 第一次打开时从表中的数据建立并保存到数据库中，之后直接读取；插入、更新和删除的行在查找前自动补充，
+     * 表被删除或替换后重建。建立索引需要扫描整张表并持有写连接，不要在界面线程中调用。
+     *
+     * @param tableName  表名。
+     * @param columnName 列名。
+     * @return 索引。
+     * @throws SQLException 如果列不存在或读取失败。
+     */
+    public EditDistanceIndex editDistanceIndex(String tableName, String columnName) throws SQLException {
+        String key;
+        try (ConnectionManager.Lease lease = connections.read()) {
+            key = tableName + '\0' + findColumn(readColumns(lease.connection(), tableName), tableName, columnName).getName();
+        }
+        EditDistanceIndex index = editDistanceIndexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        synchronized (editDistanceBuildLock) {
+            index = editDistanceIndexes.get(key);
+            if (index != null) {
+                return index; // 等待期间其他线程已经打开
+            }
+            try (ConnectionManager.Lease lease = connections.read()) {
+                index = EditDistanceIndex.open(this, lease.connection(), tableName, key.substring(key.indexOf('\0') + 1));
+            }
+            if (!index.isBuilt()) {
+                index.rebuild();
+            } else if (index.isDirty()) {
+                // 打开时补充了关闭期间的修改，写连接空闲时顺便保存；正被占用（例如正在导入）时不等待，关闭时再保存
+                try (ConnectionManager.Lease lease = connections.tryWrite()) {
+                    if (lease != null) {
+                        index.save(lease.connection());
+                    }
+                }
+            }
+            editDistanceIndexes.put(key, index); // 建立完成后才放入，其他线程不会取到空的索引
+        }
+        return index;
+    }
+
+    /**
+     * 用编辑距离索引查找一列中与关键字编辑距离最小的记录（比较时不区分大小写，忽略前后空白）。
+     *
+     * @param tableName  表名。
+     * @param columnName 要比较的列名。
+     * @param keyword    关键字。
+     * @param limit      返回的记录数上限。
+     * @return 按编辑距离从小到大排列的结果，相似度为编辑距离；候选行数为这次查找计算距离的次数。
+     * @throws SQLException 如果列不存在或查询失败。
+     */
+    public FuzzySearch.Result editDistanceSearch(String tableName, String columnName, String keyword, int limit)
+            throws SQLException {
+        EditDistanceIndex index = editDistanceIndex(tableName, columnName);
+        long before = index.getTree().getDistanceCount();
+        List<BKTree.Match> matches = index.nearest(keyword, limit);
+        int evaluated = (int) (index.getTree().getDistanceCount() - before);
+        long[] ids = new long[limit];
+        double[] distances = new double[limit];
+        int n = 0;
+        for (BKTree.Match match : matches) {
+            for (long id : match.getIds()) {
+                if (n == limit) {
+                    break;
+                }
+                ids[n] = id;
+                distances[n] = match.getDistance();
+                n++;
+            }
+        }
+        return FuzzySearch.materialize(this, tableName, Arrays.copyOf(ids, n), Arrays.copyOf(distances, n),
+                evaluated, true);
+    }
+
+    /**
+     * 删除一列的编辑距离索引（包括保存在数据库中的树）。
+     *
+     * @param tableName  表名。
+     * @param columnName 列名。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void dropEditDistanceIndex(String tableName, String columnName) throws SQLException {
+        EditDistanceIndex index = editDistanceIndex(tableName, columnName);
+        editDistanceIndexes.remove(tableName + '\0' + index.getColumnName());
+        try (ConnectionManager.Lease lease = connections.write()) {
+            index.delete(lease.connection());
+        }
+    }
+
+    /**
+     * 把编辑距离索引保存到数据库中。
+     */
+    void saveEditDistanceIndex(EditDistanceIndex index) throws SQLException {
+        try (ConnectionManager.Lease lease = connections.write()) {
+            index.save(lease.connection());
+        }
+    }
+
+    /**
+     * 保存打开过且有修改的编辑距离索引，然后全部关闭。
+     */
+    private void saveEditDistanceIndexes() {
+        for (EditDistanceIndex index : editDistanceIndexes.values()) {
+            if (index.isDirty()) {
+                try {
+                    saveEditDistanceIndex(index);
+                } catch (SQLException e) {
+                    System.err.println("保存编辑距离索引出错: " + e.getMessage());
+                }
+            }
+        }
+        editDistanceIndexes.clear();
+    }
+
+    /**
+     * 获取一列的三字符组索引。
+     *
+     * @return 索引；该列没有三字符组索引时返回 null。
+     */
+    SearchIndex trigramIndex(Connection conn, String tableName, String fieldName) throws SQLException {
+        for (SearchIndex index : searchIndexes(conn, tableName)) {
+            if (index.getType() == SearchIndex.Type.TRIGRAM && index.getColumnName().equalsIgnoreCase(fieldName)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查找能回答字段查找内容的全文索引：LIKE 模式只使用三字符组索引（结果与 LIKE 相同），候选行太多时直接扫描表；
+     * 按词查找只使用按词索引。
+     *
+     * @return 索引；没有可用的索引或扫描表更快时返回 null。
+     */
+    SearchIndex searchIndexFor(Connection conn, String tableName, String fieldName, String pattern) throws SQLException {
+        for (SearchIndex index : searchIndexes(conn, tableName)) {
+            if (index.getColumnName().equalsIgnoreCase(fieldName) && index.canAnswer(pattern)) {
+                return index.isSelective(this, conn, pattern) ? index : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 当前数据库的连接管理，供同一包中的类使用。
+     */
+    ConnectionManager getConnectionManager() {
+        return connections;
+    }
 
-            rs.close();
+    /**
+     * 获取 WAL 检查点管理对象，可以查看 WAL 文件大小、调整检查点间隔或立即执行检查点。
+     *
+     * @return 检查点管理对象。
+     */
+    public WalCheckpointer getWalCheckpointer() {
+        return connections.getWalCheckpointer();
+    }
 
+    /**
+     * 获取页缓存，可以调整内存占用上限或查看命中次数。
+     *
+     * @return 页缓存。
+     */
+    public PageCache getPageCache() {
+        return pageCache;
+    }
+
+    /**
+     * 获取记录数的计数器，可以在限定时间内估计记录数或在后台精确计数。
+     *
+     * @return 计数器。
+     */
+    public synchronized RowCounter getRowCounter() {
+        if (rowCounter == null) {
+            rowCounter = new RowCounter(this);
+        }
+        return rowCounter;
+    }
+
+
+    /**
+     * 计算指定表的总记录数。第一次计数后由 {@link RowCounter} 记录并随插入和删除维护，之后不再扫描表。
+     *
+     * @param tableName 要查询的表名。
+     * @return 表中的总记录数。如果查询失败，返回 0。
+     */
+    public int getTotalRecords(String tableName) {
+        try {
+            return (int) getRowCounter().count(tableName);
         } catch (SQLException e) {
-            System.err.println("Select 查询出错: " + e.getMessage());
-            throw e; // 抛出异常
+            System.err.println("计算总记录数时出错: " + e.getMessage());
         }
+        return 0;
+    }
 
-        return new SelectResult(columnNames, dataRows);
+    /**
+     * 创建数据库表，如果表不存在，并根据推断的数据类型设置列类型。
+     * 新建的表在同一个事务中开始由 {@link RowCounter} 记录记录数。
+     *
+     * @param tableName 表名。
+     * @param keys      表头数组。
+     * @param types     推断出的数据类型数组。
+     * @return 是否成功创建表。
+     */
+    public boolean createTable(String tableName, String[] keys, String[] types) {
+        // 检查 keys 和 types 的长度是否匹配
+        if (keys.length != types.length) {
+            System.out.println("字段数量和类型数量不匹配！");
+            return false;
+        }
+        String createTableSQL = buildCreateTableSql(tableName, keys, types);
+        System.out.println("执行的SQL语句: " + createTableSQL);
+
+        // 执行 SQL 语句
+        try (ConnectionManager.Lease lease = connections.write();
+             Statement stmt = lease.connection().createStatement()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            boolean existed = RowCounter.tableExists(conn, tableName);
+            stmt.execute(createTableSQL);
+            if (!existed) {
+                getRowCounter().track(conn, tableName, 0);
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            System.out.println("表 '" + tableName + "' 创建成功或已存在。");
+            return true;
+        } catch (SQLException e) {
+            System.out.println("创建表时出错: " + e.getMessage());
+            return false;
+        }
     }
 
+    /**
+     * 为表的指定列创建索引，然后运行 ANALYZE 收集统计信息，在一个事务中完成。
+     * 应在数据全部写入之后调用：一次性建索引比在插入时逐行维护 B 树快得多。
+     * TEXT 列的索引使用 NOCASE 排序规则，使不以通配符开头的 LIKE 查询（LIKE 默认不区分大小写）可以使用索引。
+     *
+     * @param tableName   表名。
+     * @param columnNames 要建索引的列名（不区分大小写）。
+     * @throws SQLException 如果列不存在或执行数据库操作时发生错误。
+     */
+    public void createIndexes(String tableName, List<String> columnNames) throws SQLException {
+        if (columnNames == null || columnNames.isEmpty()) {
+            return;
+        }
+        try (ConnectionManager.Lease lease = connections.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false); // 开始事务
+            createIndexes(conn, tableName, columnNames);
+            conn.commit(); // 提交事务
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            System.err.println("创建索引出错: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 在指定连接上为表的指定列创建索引并运行 ANALYZE，不负责事务的开始和提交。
+     *
+     * @param conn        写连接。
+     * @param tableName   表名。
+     * @param columnNames 要建索引的列名（不区分大小写）。
+     * @throws SQLException 如果列不存在或执行数据库操作时发生错误。
+     */
+    void createIndexes(Connection conn, String tableName, List<String> columnNames) throws SQLException {
+        List<ColumnInfo> columns = readColumns(conn, tableName);
+        try (Statement stmt = conn.createStatement()) {
+            long start = System.nanoTime();
+            for (String columnName : columnNames) {
+                ColumnInfo column = findColumn(columns, tableName, columnName);
+                ColumnKind kind = ColumnKind.of(column);
+                String collate = kind == ColumnKind.TEXT || kind == ColumnKind.ANNOTATIONS ? " COLLATE NOCASE" : "";
+                String indexName = "idx_" + tableName + "_" + column.getName();
+                stmt.execute("CREATE INDEX IF NOT EXISTS " + escapeColumnName(indexName) + " ON " + escapeColumnName(tableName)
+                        + " (" + escapeColumnName(column.getName()) + collate + ");");
+            }
+            stmt.execute("ANALYZE " + escapeColumnName(tableName) + ";"); // 为查询规划器收集统计信息
+            System.out.println(String.format("为表 '%s' 的 %d 个列创建索引并完成 ANALYZE，用时 %.2f 秒。",
+                    tableName, columnNames.size(), (System.nanoTime() - start) / 1e9));
+        }
+    }
 
     /**
-     * 计算指定表的总记录数。
+     * 按列名（不区分大小写）查找列。
      *
-     * @param tableName 要查询的表名。
-     * @return 表中的总记录数。如果查询失败，返回 0。
+     * @throws SQLException 如果列不存在。
      */
-    public int getTotalRecords(String tableName) {
-        String countQuery = "SELECT COUNT(*) AS total FROM " + escapeColumnName(tableName) + ";";
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(countQuery)) {
-
-            if (rs.next()) {
-                return rs.getInt("total");
+    private static ColumnInfo findColumn(List<ColumnInfo> columns, String tableName, String columnName) throws SQLException {
+        for (ColumnInfo c : columns) {
+            if (c.getName().equalsIgnoreCase(columnName.trim())) {
+                return c;
             }
-
-        } catch (SQLException e) {
-            System.err.println("计算总记录数时出错: " + e.getMessage());
         }
-        return 0;
+        throw new SQLException("表 " + tableName + " 中没有列 " + columnName + "。");
     }
 
     /**
-     * 创建数据库表，如果表不存在，并根据推断的数据类型设置列类型。
+     * 构建 CREATE TABLE 语句，表包含自动增量的id列和给定的字段。
      *
      * @param tableName 表名。
      * @param keys      表头数组。
-     * @param types     推断出的数据类型数组。
-     * @return 是否成功创建表。
+     * @param types     数据类型数组。
+     * @return CREATE TABLE 语句。
      */
-    public boolean createTable(String tableName, String[] keys, String[] types) {
-        // 检查 keys 和 types 的长度是否匹配
-        if (keys.length != types.length) {
-            System.out.println("字段数量和类型数量不匹配！");
-            return false;
-        }
-        // 构建 CREATE TABLE 语句
+    String buildCreateTableSql(String tableName, String[] keys, String[] types) {
         StringBuilder sb = new StringBuilder();
         sb.append("CREATE TABLE IF NOT EXISTS ").append(escapeColumnName(tableName)).append(" (");
         sb.append("id INTEGER PRIMARY KEY AUTOINCREMENT");
@@ -238,19 +898,112 @@ public class DOperator {
             sb.append(", ").append(key).append(" ").append(type);
         }
         sb.append(");");
+        return sb.toString();
+    }
 
-        String createTableSQL = sb.toString();
-        System.out.println("执行的SQL语句: " + createTableSQL);
+    /**
+     * 构建带占位符的单行 INSERT 语句，并转义列名。
+     *
+     * @param tableName 目标表名。
+     * @param columns   要插入的列（不含自动增量的id列）。
+     * @return INSERT 语句。
+     */
+    String buildInsertSql(String tableName, List<ColumnInfo> columns) {
+        return buildInsertSql(tableName, columns, 1);
+    }
 
-        // 执行 SQL 语句
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSQL);
-            System.out.println("表 '" + tableName + "' 创建成功或已存在。");
-            return true;
-        } catch (SQLException e) {
-            System.out.println("创建表时出错: " + e.getMessage());
-            return false;
+    /**
+     * 构建包含多行 VALUES 占位符的 INSERT 语句，并转义列名。
+     *
+     * @param tableName 目标表名。
+     * @param columns   要插入的列（不含自动增量的id列）。
+     * @param rows      VALUES 的行数。
+     * @return INSERT 语句。
+     */
+    String buildInsertSql(String tableName, List<ColumnInfo> columns, int rows) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("INSERT INTO ").append(escapeColumnName(tableName)).append(" (");
+
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(escapeColumnName(columns.get(i).getName()));
+            if (i < columns.size() - 1) {
+                sb.append(", ");
+            }
+        }
+
+        sb.append(") VALUES ");
+
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sb.append(", ");
+            }
+            sb.append("(");
+            for (int i = 0; i < columns.size(); i++) {
+                sb.append("?");
+                if (i < columns.size() - 1) {
+                    sb.append(", ");
+                }
+            }
+            sb.append(")");
+        }
+
+        sb.append(";");
+        return sb.toString();
+    }
+
+    /**
+     * 开始一次批量导入会话，使用默认的提交间隔。
+     *
+     * @see #beginBulkLoad(String, String[], String[], int, long)
+     */
+    public BulkLoader beginBulkLoad(String tableName, String[] keys, String[] types) throws SQLException {
+        return beginBulkLoad(tableName, keys, types, BulkLoader.DEFAULT_COMMIT_ROWS, BulkLoader.DEFAULT_COMMIT_MILLIS);
+    }
+
+    /**
+     * 开始一次批量导入会话。会话期间当前线程独占写连接，必须在同一线程中写入并关闭会话。
+     * 调用 {@link BulkLoader#commit()} 之前，目标表不会出现或改变。
+     *
+     * @param tableName    目标表名。目标表已存在时追加数据，忽略 keys 和 types。
+     * @param keys         表头数组。
+     * @param types        推断出的数据类型数组。
+     * @param commitRows   每提交一次的最大行数。
+     * @param commitMillis 两次提交之间的最长时间（毫秒）。
+     * @return 批量导入会话。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public BulkLoader beginBulkLoad(String tableName, String[] keys, String[] types,
+                                    int commitRows, long commitMillis) throws SQLException {
+        if (keys.length != types.length) {
+            throw new SQLException("字段数量和类型数量不匹配！");
+        }
+        return new BulkLoader(this, connections.write(), tableName, keys, types, commitRows, commitMillis, null);
+    }
+
+    /**
+     * 从检查点继续一次中断的批量导入会话。导入表中已提交的数据保留，之后写入的数据追加在其后。
+     *
+     * @param checkpoint   由 {@link #getImportCheckpoint(String)} 读取的检查点。
+     * @param commitRows   每提交一次的最大行数。
+     * @param commitMillis 两次提交之间的最长时间（毫秒）。
+     * @return 批量导入会话，已启用检查点。
+     * @throws SQLException 如果执行数据库操作时发生错误，或导入表与检查点不一致。
+     */
+    public BulkLoader resumeBulkLoad(ImportCheckpoint checkpoint, int commitRows, long commitMillis) throws SQLException {
+        return new BulkLoader(this, connections.write(), checkpoint.getTableName(), new String[0], new String[0],
+                commitRows, commitMillis, checkpoint);
+    }
+
+    /**
+     * 读取指定表未完成的批量导入的检查点。
+     *
+     * @param tableName 目标表名。
+     * @return 检查点；没有未完成的导入时返回 null。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public ImportCheckpoint getImportCheckpoint(String tableName) throws SQLException {
+        try (ConnectionManager.Lease lease = connections.read()) {
+            return ImportCheckpoint.read(lease.connection(), tableName);
         }
     }
 
@@ -267,94 +1020,83 @@ public class DOperator {
             return;
         }
 
-        // 获取表的列信息，已排除自动增量的id列
-        List<ColumnInfo> columns = getTableColumnsWithTypesEscaped(tableName);
-        if (columns.isEmpty()) {
-            throw new SQLException("表 " + tableName + " 不存在或没有列信息。");
+        try (ConnectionManager.Lease lease = connections.write()) {
+            InsertPlan plan = insertPlan(lease.connection(), tableName);
+            List<Object[]> convertedRows = new ArrayList<>(rows.size());
+            for (String[] row : rows) {
+                convertedRows.add(plan.convertRow(row));
+            }
+            executeBatch(lease.connection(), plan, convertedRows);
         }
+    }
 
-        // 构建 INSERT 语句，并转义列名
-        StringBuilder sb = new StringBuilder();
-        sb.append("INSERT INTO ").append(escapeColumnName(tableName)).append(" (");
+    /**
+     * 将一行文本字段按列类型转换为要绑定到 INSERT 语句的值。
+     * 空值和转换失败的值转换为 null，缺失的列也为 null。
+     * 该方法不访问数据库，可以在导入的解析线程中并行调用。
+     *
+     * @param columns 表的列信息（不含自动增量的id列）。
+     * @param row     文本字段数组。
+     * @return 与列一一对应的值数组。
+     */
+    public Object[] convertRow(List<ColumnInfo> columns, String[] row) {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < columns.size() && i < row.length; i++) {
+            String value = row[i].trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            ColumnInfo column = columns.get(i);
 
-        for (int i = 0; i < columns.size(); i++) {
-            sb.append(escapeColumnName(columns.get(i).getName()));
-            if (i < columns.size() - 1) {
-                sb.append(", ");
+            try {
+                values[i] = ColumnKind.of(column).convert(value);
+            } catch (NumberFormatException e) {
+                // 如果转换失败，设置为 null 并记录错误
+                System.err.println("数据类型转换失败，字段: " + column.getName() + ", 值: " + value);
             }
         }
+        return values;
+    }
 
-        sb.append(") VALUES (");
+    /**
+     * 批量插入已经按列类型转换好的数据行（见 {@link #convertRow(List, String[])}），在一个事务中提交。
+     *
+     * @param tableName 目标数据库表名。
+     * @param columns   表的列信息（不含自动增量的id列），必须与表当前的结构一致。
+     * @param rows      转换后的数据行。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    public void batchInsertConverted(String tableName, List<ColumnInfo> columns, List<Object[]> rows) throws SQLException {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
 
-        for (int i = 0; i < columns.size(); i++) {
-            sb.append("?");
-            if (i < columns.size() - 1) {
-                sb.append(", ");
+        try (ConnectionManager.Lease lease = connections.write()) {
+            InsertPlan plan = insertPlan(lease.connection(), tableName);
+            if (plan.getColumns().size() != columns.size()) {
+                throw new SQLException("表 " + tableName + " 的结构已改变，请重新获取列信息。");
             }
+            executeBatch(lease.connection(), plan, rows);
         }
+    }
 
-        sb.append(");");
-
-        String insertSQL = sb.toString();
-
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
-
+    /**
+     * 使用插入计划按当前的插入方式在一个事务中批量插入数据行。
+     *
+     * @param conn 写连接。
+     * @param plan 插入计划。
+     * @param rows 转换后的数据行。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    private void executeBatch(Connection conn, InsertPlan plan, List<Object[]> rows) throws SQLException {
+        try {
             conn.setAutoCommit(false); // 开始事务
-
-            for (String[] row : rows) {
-                for (int i = 0; i < columns.size(); i++) {
-                    if (i < row.length) {
-                        String value = row[i].trim();
-                        String type = columns.get(i).getType().toUpperCase();
-
-                        if (value.isEmpty()) {
-                            pstmt.setObject(i + 1, null);
-                            continue;
-                        }
-
-                        try {
-                            switch (type) {
-                                case "INTEGER":
-                                case "INT":
-                                    pstmt.setInt(i + 1, Integer.parseInt(value));
-                                    break;
-                                case "REAL":
-                                case "FLOAT":
-                                case "DOUBLE":
-                                    pstmt.setDouble(i + 1, Double.parseDouble(value));
-                                    break;
-                                case "BOOLEAN":
-                                    pstmt.setBoolean(i + 1, Boolean.parseBoolean(value));
-                                    break;
-                                case "TEXT":
-                                default:
-                                    // 特别处理 annotations 字段，将其作为字符串存储
-                                    if (columns.get(i).getName().equalsIgnoreCase("annotations")) {
-                                        // 移除大括号和单引号
-                                        String annotations = value.replaceAll("[{}']", "");
-                                        pstmt.setString(i + 1, annotations);
-                                    } else {
-                                        pstmt.setString(i + 1, value);
-                                    }
-                                    break;
-                            }
-                        } catch (NumberFormatException e) {
-                            // 如果转换失败，设置为 null 并记录错误
-                            pstmt.setObject(i + 1, null);
-                            System.err.println("数据类型转换失败，字段: " + columns.get(i).getName() + ", 值: " + value);
-                        }
-                    } else {
-                        pstmt.setObject(i + 1, null); // 处理缺失的值
-                    }
-                }
-                pstmt.addBatch();
-            }
-
-            pstmt.executeBatch();
+            plan.execute(conn, rows, insertStrategy);
+            getRowCounter().added(conn, plan.getTableName(), rows.size());
             conn.commit(); // 提交事务
+            conn.setAutoCommit(true);
 
-            System.out.println("成功插入 " + rows.size() + " 条记录到表 '" + tableName + "'。");
+            System.out.println("成功插入 " + rows.size() + " 条记录到表 '" + plan.getTableName() + "'。");
 
         } catch (SQLException e) {
             System.err.println("批量插入出错: " + e.getMessage());
@@ -362,6 +1104,56 @@ public class DOperator {
         }
     }
 
+    /**
+     * 获取表的插入计划。缓存的计划在数据库的 schema_version 改变后重新编译。
+     * 调用方必须持有写连接。
+     *
+     * @param conn      写连接。
+     * @param tableName 目标表名。
+     * @return 插入计划。
+     * @throws SQLException 如果表不存在或查询失败。
+     */
+    InsertPlan insertPlan(Connection conn, String tableName) throws SQLException {
+        long schemaVersion = readSchemaVersion(conn);
+        InsertPlan plan = insertPlans.get(tableName);
+        if (plan != null && plan.getSchemaVersion() == schemaVersion) {
+            return plan;
+        }
+        if (plan != null) {
+            plan.close();
+        }
+
+        // 获取表的列信息，已排除自动增量的id列
+        List<ColumnInfo> columns = readColumns(conn, tableName);
+        if (columns.isEmpty()) {
+            insertPlans.remove(tableName);
+            throw new SQLException("表 " + tableName + " 不存在或没有列信息。");
+        }
+        plan = new InsertPlan(this, tableName, columns, schemaVersion);
+        insertPlans.put(tableName, plan);
+        return plan;
+    }
+
+    /**
+     * 读取数据库的 schema_version，任何表结构的改变都会使其增加。
+     */
+    private static long readSchemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA schema_version;")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * 丢弃所有缓存的插入计划并关闭其中的语句。
+     */
+    private void clearInsertPlans() {
+        for (InsertPlan plan : insertPlans.values()) {
+            plan.close();
+        }
+        insertPlans.clear();
+    }
+
     /**
      * 获取当前数据库中的所有表名。
      *
@@ -369,10 +1161,16 @@ public class DOperator {
      */
     public List<String> getAllTableNames() {
         List<String> tableNames = new ArrayList<>();
-        String query = "SELECT name FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%';";
-
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement();
+        // 不列出批量导入中（或导入失败残留）的导入表、导入检查点表、记录数表、全文索引表和编辑距离索引表
+        String query = "SELECT name FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%'"
+                + " AND name <> '" + ImportCheckpoint.TABLE + "' AND name <> '" + RowCounter.TABLE + "'"
+                + " AND name <> '" + SearchIndex.REGISTRY + "' AND name <> '" + EditDistanceIndex.TABLE + "'"
+                + " AND name <> '" + EditDistanceIndex.CHANGES + "'"
+                + " AND name NOT LIKE '" + SearchIndex.PREFIX.replace("_", "\\_") + "%' ESCAPE '\\'"
+                + " AND name NOT LIKE '%" + BulkLoader.STAGING_SUFFIX.replace("_", "\\_") + "' ESCAPE '\\';";
+
+        try (ConnectionManager.Lease lease = connections.read();
+             Statement stmt = lease.connection().createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
 
             while (rs.next()) {
@@ -388,7 +1186,7 @@ public class DOperator {
     }
 
     /**
-     * 获取指定表的分页数据。
+     * 获取指定表的分页数据（按 id 排序，不含 id 列）。
      *
      * @param tableName  要查询的表名。
      * @param pageSize   每页记录数。
@@ -396,31 +1194,12 @@ public class DOperator {
      * @return 数据行的向量。如果查询失败，返回空向量。
      */
     public Vector<Vector<Object>> getTablePageData(String tableName, int pageSize, int pageNumber) {
-        Vector<Vector<Object>> dataRows = new Vector<>();
-        String query = "SELECT * FROM " + escapeColumnName(tableName) + " LIMIT ? OFFSET ?;";
-        int offset = (pageNumber - 1) * pageSize;
-
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setInt(1, pageSize);
-            pstmt.setInt(2, offset);
-            ResultSet rs = pstmt.executeQuery();
-
-            List<ColumnInfo> columns = getTableColumnsWithTypesEscaped(tableName);
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                for (ColumnInfo col : columns) {
-                    row.add(rs.getObject(col.getName()));
-                }
-                dataRows.add(row);
-            }
-
+        try {
+            return pager(tableName, null, null, null, pageSize).setIncludeId(false).page(pageNumber).getDataRows();
         } catch (SQLException e) {
             System.err.println("获取分页数据出错: " + e.getMessage());
+            return new Vector<>();
         }
-
-        return dataRows;
     }
 
     /**
@@ -459,31 +1238,20 @@ public class DOperator {
         }
     }
 
+    /**
+     * 查找指定列包含关键字的所有记录（不含 id 列）。结果全部读入内存，行数多时应使用 {@link #openCursor}。
+     *
+     * @param tableName  要查询的表名。
+     * @param columnName 要匹配的列名。
+     * @param keyword    关键字，按 LIKE '%keyword%' 匹配。
+     * @return SelectResult 包含列名和数据行。
+     * @throws SQLException 如果查询失败。
+     */
     public SelectResult search(String tableName, String columnName, String keyword) throws SQLException {
-        Vector<String> columnNames = getTableColumnNames(tableName);
-        Vector<Vector<Object>> dataRows = new Vector<>();
-
-        // 构建 WHERE 子句，使用 LIKE 进行模糊匹配
-        String whereClause = escapeColumnName(columnName) + " LIKE ?";
-        String query = "SELECT * FROM " + escapeColumnName(tableName) + " WHERE " + whereClause + ";";
-
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, "%" + keyword + "%"); // 部分匹配
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Vector<Object> row = new Vector<>();
-                    for (String col : columnNames) {
-                        row.add(rs.getObject(col));
-                    }
-                    dataRows.add(row);
-                }
-            }
+        try (RowCursor cursor = openCursor(tableName, new String[]{columnName}, new String[]{"%" + keyword + "%"},
+                false, 0)) {
+            return cursor.toSelectResult();
         }
-
-        return new SelectResult(columnNames, dataRows);
     }
 
     /**
@@ -496,49 +1264,13 @@ public class DOperator {
      * @throws SQLException 如果执行数据库操作时发生错误。
      */
     public int getTotalRecordsWithSearch(String tableName, String[] fieldNames, String[] searchValues) throws SQLException {
-        // 参数验证
-        boolean hasSearch = fieldNames != null && searchValues != null &&
-                fieldNames.length > 0 && searchValues.length > 0 &&
-                fieldNames.length == searchValues.length;
-
-        if (!hasSearch) {
-            // 如果没有搜索条件，则返回表的总记录数
-            return getTotalRecords(tableName);
-        }
-
-        // 构建 COUNT 查询语句
-        StringBuilder sb = new StringBuilder("SELECT COUNT(*) AS total FROM ").append(escapeColumnName(tableName)).append(" WHERE ");
-        for (int i = 0; i < fieldNames.length; i++) {
-            sb.append(escapeColumnName(fieldNames[i])).append(" LIKE ?");
-            if (i < fieldNames.length - 1) {
-                sb.append(" AND ");
-            }
-        }
-        sb.append(";");
-
-        String countQuery = sb.toString();
-        int total = 0;
-
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement pstmt = conn.prepareStatement(countQuery)) {
-
-            // 设置搜索参数
-            for (int i = 0; i < searchValues.length; i++) {
-                pstmt.setString(i + 1, searchValues[i]);
-            }
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    total = rs.getInt("total");
-                }
-            }
-
+        // 没有搜索条件时返回表的总记录数；结果按查找条件缓存，写入后失效
+        try {
+            return (int) getRowCounter().count(tableName, fieldNames, searchValues);
         } catch (SQLException e) {
             System.err.println("计算符合搜索条件的总记录数时出错: " + e.getMessage());
             throw e;
         }
-
-        return total;
     }
 
     /**
@@ -554,87 +1286,40 @@ public class DOperator {
             return;
         }
 
-        // 获取表的列信息，已排除自动增量的id列
-        List<ColumnInfo> columns = getTableColumnsWithTypesEscaped(tableName);
-        if (columns.isEmpty()) {
-            throw new SQLException("表 " + tableName + " 不存在或没有列信息。");
-        }
-
-        // 构建 INSERT 语句，并转义列名
-        StringBuilder sb = new StringBuilder();
-        sb.append("INSERT INTO ").append(escapeColumnName(tableName)).append(" (");
-
-        for (int i = 0; i < columns.size(); i++) {
-            sb.append(escapeColumnName(columns.get(i).getName()));
-            if (i < columns.size() - 1) {
-                sb.append(", ");
-            }
-        }
-
-        sb.append(") VALUES (");
-
-        for (int i = 0; i < columns.size(); i++) {
-            sb.append("?");
-            if (i < columns.size() - 1) {
-                sb.append(", ");
+        try (ConnectionManager.Lease lease = connections.write()) {
+            InsertPlan plan = insertPlan(lease.connection(), tableName);
+            PreparedStatement pstmt = plan.statement(lease.connection());
+
+            // 设置字段值，缺失的值为 null
+            plan.bind(pstmt, plan.convertRow(row));
+
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try {
+                pstmt.executeUpdate();
+                getRowCounter().added(conn, tableName, 1);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        }
-
-        sb.append(");");
-
-        String insertSQL = sb.toString();
-
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
-
-            // 设置字段值
-            for (int i = 0; i < columns.size(); i++) {
-                if (i < row.length) {
-                    String value = row[i].trim();
-                    String type = columns.get(i).getType().toUpperCase();
-
-                    if (value.isEmpty()) {
-                        pstmt.setObject(i + 1, null);
-                        continue;
-                    }
+            System.out.println("成功插入一条记录到表 '" + tableName + "'。");
 
-                    try {
-                        switch (type) {
-                            case "INTEGER":
-                            case "INT":
-                                pstmt.setInt(i + 1, Integer.parseInt(value));
-                                break;
-                            case "REAL":
-                            case "FLOAT":
-                            case "DOUBLE":
-                                pstmt.setDouble(i + 1, Double.parseDouble(value));
-                                break;
-                            case "BOOLEAN":
-                                pstmt.setBoolean(i + 1, Boolean.parseBoolean(value));
-                                break;
-                            case "TEXT":
-                            default:
-                                pstmt.setString(i + 1, value);
-                                break;
-                        }
-                    } catch (NumberFormatException e) {
-                        // 如果转换失败，设置为 null 并记录错误
-                        pstmt.setObject(i + 1, null);
-                        System.err.println("数据类型转换失败，字段: " + columns.get(i).getName() + ", 值: " + value);
-                    }
-                } else {
-                    pstmt.setObject(i + 1, null); // 处理缺失的值
+            // 把新的一行加入已打开的编辑距离索引
+            for (EditDistanceIndex index : editDistanceIndexes.values()) {
+                if (index.getTableName().equals(tableName)) {
+                    index.catchUp(conn);
                 }
             }
 
-            pstmt.executeUpdate();
-            System.out.println("成功插入一条记录到表 '" + tableName + "'。");
-
         } catch (SQLException e) {
             System.err.println("插入数据出错: " + e.getMessage());
             throw e; // 重新抛出异常以便上层处理
         }
     }
+
     /**
      * SelectTopN 方法，用于从指定的表中检索满足条件的前 N 条记录。
      *
@@ -653,56 +1338,26 @@ public class DOperator {
                 fieldNames.length > 0 && searchValues.length > 0 &&
                 fieldNames.length == searchValues.length;
 
-        // 构建 SELECT 语句
-        StringBuilder sb = new StringBuilder("SELECT * FROM ").append(escapeColumnName(tableName));
+        // 先查页缓存
+        StringBuilder cacheKey = new StringBuilder("top\0").append(tableName).append('\0').append(limit);
         if (hasSearch) {
-            sb.append(" WHERE ");
             for (int i = 0; i < fieldNames.length; i++) {
-                sb.append(escapeColumnName(fieldNames[i])).append(" LIKE ?");
-                if (i < fieldNames.length - 1) {
-                    sb.append(" AND ");
-                }
+                cacheKey.append('\0').append(fieldNames[i]).append('\0').append(searchValues[i]);
             }
         }
-        sb.append(" LIMIT ?;"); // 仅限制记录数
-
-        String query = sb.toString();
-
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            int paramIndex = 1;
-
-            // 设置搜索参数
-            if (hasSearch) {
-                for (String value : searchValues) {
-                    pstmt.setString(paramIndex++, value);
-                }
-            }
-
-            // 设置 LIMIT 参数
-            pstmt.setInt(paramIndex, limit);
-
-            ResultSet rs = pstmt.executeQuery();
-
-            // 获取列名
-            ResultSetMetaData meta = rs.getMetaData();
-            int columnCount = meta.getColumnCount();
-            for (int i = 1; i <= columnCount; i++) {
-                columnNames.add(meta.getColumnName(i));
-            }
-
-            // 获取数据行
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(rs.getObject(i));
-                }
-                dataRows.add(row);
-            }
+        long generation = connections.getWriteGeneration();
+        PageCache.Entry cached = pageCache.get(cacheKey.toString(), generation);
+        if (cached != null) {
+            return cached.getResult();
+        }
 
-            rs.close();
+        try (RowCursor cursor = openCursor(tableName, fieldNames, searchValues, true, limit)) {
+            SelectResult result = cursor.toSelectResult();
+            columnNames = result.getColumnNames();
+            dataRows = result.getDataRows();
 
+            pageCache.put(cacheKey.toString(), generation, new PageCache.Entry(
+                    new SelectResult(columnNames, dataRows), null, null));
         } catch (SQLException e) {
             System.err.println("SelectTopN 查询出错: " + e.getMessage());
             // 根据需求，可以选择抛出异常或返回空结果
@@ -717,40 +1372,13 @@ public class DOperator {
      * @return SelectResult 包含所有列名和数据行。如果查询失败，返回空结果。
      */
     public SelectResult getAllRecords(String tableName) {
-        Vector<String> columnNames = new Vector<>();
-        Vector<Vector<Object>> dataRows = new Vector<>();
-
-        // 构建 SELECT 语句
-        String query = "SELECT * FROM " + escapeColumnName(tableName) + ";";
-
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-
-            // 获取列名
-            ResultSetMetaData meta = rs.getMetaData();
-            int columnCount = meta.getColumnCount();
-            for (int i = 1; i <= columnCount; i++) {
-                columnNames.add(meta.getColumnName(i));
-            }
-
-            // 获取数据行
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(rs.getObject(i));
-                }
-                dataRows.add(row);
-            }
-
-            rs.close();
-
+        try (RowCursor cursor = openCursor(tableName, null, null, true, 0)) {
+            return cursor.toSelectResult();
         } catch (SQLException e) {
             System.err.println("获取所有记录时出错: " + e.getMessage());
             // 根据需求，可以选择抛出异常或返回空结果
+            return new SelectResult(new Vector<>(), new Vector<>());
         }
-
-        return new SelectResult(columnNames, dataRows);
     }
 
 }
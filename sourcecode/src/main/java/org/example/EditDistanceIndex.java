@@ -0,0 +1,393 @@
+package org.example;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EditDistanceIndex 类是表中一列的编辑距离索引，由 {@link DOperator#editDistanceIndex} 打开，
+ * 回答“与某个值的编辑距离不超过 k 的所有记录”和“编辑距离最小的 n 条记录”这类查找，
+ * 每次查找只计算一小部分不同值的距离，而不是逐行比较。
+ * <p>
+ * 索引是该列所有不同值的 {@link BKTree}，序列化后保存在 {@value #TABLE} 表中，同时记录已加入的最大 id
+ * 和已处理的修改记录，再次打开数据库时直接读取，不必重建。
+ * <ul>
+ * <li>新插入的行（id 大于已加入的最大 id）在查找前补充到树中，{@link DOperator#insert} 插入后立即补充；</li>
+ * <li>表上的触发器把值被更新和被删除的行记录到 {@value #CHANGES} 表中，查找前从树中移除旧值并加入新值；</li>
+ * <li>触发器随表一起删除，因此触发器不存在时说明表已被删除或替换（例如重新导入），保存的树作废，从表中的数据重建。</li>
+ * </ul>
+ * 补充后的树在关闭数据库时保存，已处理的修改记录随之删除。
+ */
+public class EditDistanceIndex {
+    static final String TABLE = "__edit_distance_indexes"; // 保存编辑距离索引的表
+    static final String CHANGES = "__edit_distance_changes"; // 触发器记录的值被更新或删除的行
+    private static final String TRIGGER_PREFIX = "__edit_distance_"; // 触发器名的前缀
+
+    private final DOperator operator;
+    private final String tableName;
+    private final String columnName;
+    private BKTree tree = new BKTree();
+    private long maxId = 0; // 已加入树的最大 id
+    private long changeSeq = 0; // 已处理的最后一条修改记录
+    private boolean built = false; // 树是否对应当前的表（读取了有效的保存结果或已重建）
+    private volatile long checkedGeneration = -1; // 上次检查新插入的行时写连接的写入次数
+    private boolean dirty = false; // 树是否有尚未保存的修改
+
+    private EditDistanceIndex(DOperator operator, String tableName, String columnName) {
+        this.operator = operator;
+        this.tableName = tableName;
+        this.columnName = columnName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * 打开一列的编辑距离索引：触发器仍然存在时读取保存的树并补充之后的修改。
+     * 没有保存过或已经失效时返回的索引尚未建立（{@link #isBuilt()}），由调用方 {@link #rebuild()}。
+     *
+     * @param operator   数据库操作对象。
+     * @param conn       只读连接。
+     * @param tableName  表名。
+     * @param columnName 列名（与表中的写法一致）。
+     * @return 索引。
+     * @throws SQLException 如果读取失败。
+     */
+    static EditDistanceIndex open(DOperator operator, Connection conn, String tableName, String columnName)
+            throws SQLException {
+        EditDistanceIndex index = new EditDistanceIndex(operator, tableName, columnName);
+        synchronized (index) {
+            if (index.triggersExist(conn) && index.load(conn)) {
+                index.built = true;
+                index.catchUp(conn);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 读取保存的树。
+     *
+     * @return 是否读取成功。
+     */
+    private boolean load(Connection conn) throws SQLException {
+        if (!RowCounter.tableExists(conn, TABLE)) {
+            return false;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT max_id, change_seq, data FROM " + TABLE
+                + " WHERE table_name = ? AND column_name = ?;")) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, columnName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                long savedMaxId = rs.getLong(1);
+                long savedChangeSeq = rs.getLong(2);
+                byte[] data = rs.getBytes(3);
+                try {
+                    tree = BKTree.fromBytes(data);
+                    maxId = savedMaxId;
+                    changeSeq = savedChangeSeq;
+                    return true;
+                } catch (IOException e) {
+                    System.err.println("读取编辑距离索引失败，将重建: " + e.getMessage());
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理触发器记录的修改，再把 id 大于已加入的最大 id 的行加入树中。
+     *
+     * @param conn 可以读取表的连接（只读连接或写连接）。
+     * @throws SQLException 如果读取失败。
+     */
+    synchronized void catchUp(Connection conn) throws SQLException {
+        long generation = operator.getConnectionManager().getWriteGeneration();
+        String table = operator.escapeColumnName(tableName);
+        String column = operator.escapeColumnName(columnName);
+        if (RowCounter.tableExists(conn, CHANGES)) {
+            // 先移除每条记录中的旧值，再按行的当前值加入一次；id 大于已加入的最大 id 的行由下面补充
+            Map<Long, String> current = new LinkedHashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT c.seq, c.row_id, c.old_value, t.id, t."
+                    + column + " FROM " + CHANGES + " c LEFT JOIN " + table + " t ON t.id = c.row_id"
+                    + " WHERE c.table_name = ? AND c.column_name = ? AND c.seq > ? ORDER BY c.seq;")) {
+                pstmt.setString(1, tableName);
+                pstmt.setString(2, columnName);
+                pstmt.setLong(3, changeSeq);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(2);
+                        tree.remove(rs.getString(3), id);
+                        if (rs.getObject(4) != null && id <= maxId) {
+                            current.put(id, rs.getString(5));
+                        }
+                        changeSeq = rs.getLong(1);
+                        dirty = true;
+                    }
+                }
+            }
+            for (Map.Entry<Long, String> entry : current.entrySet()) {
+                tree.add(entry.getValue(), entry.getKey());
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT id, " + column
+                + " FROM " + table + " WHERE id > ? ORDER BY id;")) {
+            pstmt.setFetchSize(RowCursor.DEFAULT_FETCH_SIZE);
+            pstmt.setLong(1, maxId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong(1);
+                    tree.add(rs.getString(2), id);
+                    maxId = id;
+                    dirty = true;
+                }
+            }
+        }
+        checkedGeneration = generation;
+    }
+
+    /**
+     * 查找前补充之后的修改；自上次检查后没有写入时不查询数据库。触发器已不存在（表被删除或替换）时重建。
+     */
+    private BKTree current() throws SQLException {
+        if (operator.getConnectionManager().getWriteGeneration() != checkedGeneration) {
+            boolean valid;
+            try (ConnectionManager.Lease lease = operator.readLease()) {
+                synchronized (this) {
+                    valid = triggersExist(lease.connection());
+                    if (valid) {
+                        catchUp(lease.connection());
+                    }
+                }
+            }
+            if (!valid) {
+                System.out.println("表 '" + tableName + "' 已被删除或替换，重建列 '" + columnName + "' 的编辑距离索引");
+                rebuild();
+            }
+        }
+        synchronized (this) {
+            return tree;
+        }
+    }
+
+    /**
+     * 查找与关键字的编辑距离不超过 radius 的所有值（比较时不区分大小写，忽略前后空白）。
+     *
+     * @param query  关键字。
+     * @param radius 编辑距离的上限。
+     * @return 查找到的值及具有该值的行的 id，按距离从小到大排列。
+     * @throws SQLException 如果补充修改失败。
+     */
+    public List<BKTree.Match> within(String query, int radius) throws SQLException {
+        return current().radius(query, radius);
+    }
+
+    /**
+     * 查找与关键字编辑距离最小的 n 个值（比较时不区分大小写，忽略前后空白）。
+     *
+     * @param query 关键字。
+     * @param n     值的个数。
+     * @return 查找到的值及具有该值的行的 id，按距离从小到大排列。
+     * @throws SQLException 如果补充修改失败。
+     */
+    public List<BKTree.Match> nearest(String query, int n) throws SQLException {
+        return current().nearest(query, n);
+    }
+
+    /**
+     * 已加入树的最大 id。
+     */
+    public synchronized long getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * 当前的树，可以查看不同值的个数和累计计算距离的次数。
+     */
+    public synchronized BKTree getTree() {
+        return tree;
+    }
+
+    /**
+     * 在一个事务中创建触发器、从表中的数据重建整棵树并保存。触发器先于读取表创建，之后的修改都会被记录。
+     *
+     * @throws SQLException 如果表不存在，或读取、保存失败。
+     */
+    public void rebuild() throws SQLException {
+        try (ConnectionManager.Lease lease = operator.getConnectionManager().write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false); // 开始事务
+            try {
+                synchronized (this) {
+                    createTables(conn);
+                    createTriggers(conn);
+                    try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + CHANGES
+                            + " WHERE table_name = ? AND column_name = ?;")) {
+                        pstmt.setString(1, tableName);
+                        pstmt.setString(2, columnName);
+                        pstmt.executeUpdate();
+                    }
+                    try (Statement stmt = conn.createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM " + CHANGES + ";")) {
+                        changeSeq = rs.next() ? rs.getLong(1) : 0;
+                    }
+                    tree = new BKTree();
+                    maxId = 0;
+                    catchUp(conn);
+                    built = true;
+                    save(conn);
+                }
+                conn.commit(); // 提交事务
+            } catch (SQLException e) {
+                conn.rollback();
+                synchronized (this) {
+                    built = false;
+                    checkedGeneration = -1;
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * 树是否对应当前的表；为 false 时需要 {@link #rebuild()}。
+     */
+    synchronized boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * 树是否有尚未保存的修改。
+     */
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 把树保存到 {@value #TABLE} 表中，并删除已处理的修改记录。
+     *
+     * @param conn 写连接。
+     * @throws SQLException 如果保存失败。
+     */
+    synchronized void save(Connection conn) throws SQLException {
+        createTables(conn);
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT OR REPLACE INTO " + TABLE
+                + " (table_name, column_name, max_id, change_seq, data) VALUES (?, ?, ?, ?, ?);")) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, columnName);
+            pstmt.setLong(3, maxId);
+            pstmt.setLong(4, changeSeq);
+            pstmt.setBytes(5, tree.toBytes());
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + CHANGES
+                + " WHERE table_name = ? AND column_name = ? AND seq <= ?;")) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, columnName);
+            pstmt.setLong(3, changeSeq);
+            pstmt.executeUpdate();
+        }
+        dirty = false;
+    }
+
+    /**
+     * 删除保存的树、修改记录和触发器。
+     *
+     * @param conn 写连接。
+     * @throws SQLException 如果删除失败。
+     */
+    void delete(Connection conn) throws SQLException {
+        createTables(conn);
+        for (String sql : new String[]{"DELETE FROM " + TABLE + " WHERE table_name = ? AND column_name = ?;",
+                "DELETE FROM " + CHANGES + " WHERE table_name = ? AND column_name = ?;"}) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, tableName);
+                pstmt.setString(2, columnName);
+                pstmt.executeUpdate();
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TRIGGER IF EXISTS " + quoteName(triggerName("_au")) + ";");
+            stmt.execute("DROP TRIGGER IF EXISTS " + quoteName(triggerName("_ad")) + ";");
+        }
+    }
+
+    private static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (table_name TEXT NOT NULL,"
+                    + " column_name TEXT NOT NULL, max_id INTEGER NOT NULL, change_seq INTEGER NOT NULL,"
+                    + " data BLOB NOT NULL, PRIMARY KEY (table_name, column_name));");
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM pragma_table_info('" + TABLE + "')"
+                    + " WHERE name = 'change_seq';")) {
+                if (!rs.next()) {
+                    // 旧版本保存的表：没有触发器，其中的树在打开时都会重建
+                    stmt.execute("ALTER TABLE " + TABLE + " ADD COLUMN change_seq INTEGER NOT NULL DEFAULT 0;");
+                }
+            }
+            // AUTOINCREMENT：删除已处理的记录后序号也不会重复使用
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + CHANGES + " (seq INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " table_name TEXT NOT NULL, column_name TEXT NOT NULL, row_id INTEGER NOT NULL, old_value TEXT);");
+        }
+    }
+
+    /**
+     * 创建记录修改的触发器：更新时记录旧的 id 和值（id 改变时还记录新的 id），删除时记录被删除的 id 和值。
+     */
+    private void createTriggers(Connection conn) throws SQLException {
+        String table = operator.escapeColumnName(tableName);
+        String column = operator.escapeColumnName(columnName);
+        String insert = "INSERT INTO " + CHANGES + " (table_name, column_name, row_id, old_value)";
+        String names = quote(tableName) + ", " + quote(columnName);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS " + quoteName(triggerName("_au")) + " AFTER UPDATE OF id, "
+                    + column + " ON " + table + " WHEN OLD." + column + " IS NOT NEW." + column
+                    + " OR OLD.id IS NOT NEW.id BEGIN " + insert + " VALUES (" + names + ", OLD.id, OLD." + column + "); "
+                    + insert + " SELECT " + names + ", NEW.id, NULL WHERE OLD.id IS NOT NEW.id; END;");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS " + quoteName(triggerName("_ad")) + " AFTER DELETE ON " + table
+                    + " BEGIN " + insert + " VALUES (" + names + ", OLD.id, OLD." + column + "); END;");
+        }
+    }
+
+    /**
+     * 判断记录修改的触发器是否存在。
+     */
+    private boolean triggersExist(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM sqlite_master"
+                + " WHERE type = 'trigger' AND tbl_name = ? AND name IN (?, ?);")) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, triggerName("_au"));
+            pstmt.setString(3, triggerName("_ad"));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 2;
+            }
+        }
+    }
+
+    private String triggerName(String suffix) {
+        return TRIGGER_PREFIX + tableName + "." + columnName + suffix;
+    }
+
+    private static String quoteName(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
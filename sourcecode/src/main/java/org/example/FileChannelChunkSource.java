@@ -0,0 +1,170 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * FileChannelChunkSource 类把文件切分为按行对齐、互不重叠的区间，供导入流水线的解析线程并行读取。
+ * <p>
+ * 读取线程只负责计算切分点（每个切分点只需读取附近的少量字节），区间内容由各解析线程通过
+ * {@link FileChannel} 的定位读取直接读入复用的缓冲区，不经过 Reader 的字符解码。
+ * 没有使用内存映射：映射区域只有在垃圾回收时才会解除，导入大文件时会产生大量未释放的映射。
+ */
+public class FileChannelChunkSource implements ImportPipeline.ChunkSource, Closeable {
+    private static final int SCAN_WINDOW = 64 * 1024; // 查找行尾时每次读取的字节数
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private long position;
+    private long sequence = 0;
+
+    /**
+     * 构造方法。
+     *
+     * @param path      文件路径。
+     * @param chunkSize 每个区间的目标大小（字节）。
+     * @throws IOException 如果文件无法打开。
+     */
+    public FileChannelChunkSource(Path path, int chunkSize) throws IOException {
+        this(path, chunkSize, 0);
+    }
+
+    /**
+     * 构造方法，从指定位置开始切分。
+     *
+     * @param path          文件路径。
+     * @param chunkSize     每个区间的目标大小（字节）。
+     * @param startPosition 起始字节位置，必须位于行首。
+     * @throws IOException 如果文件无法打开。
+     */
+    public FileChannelChunkSource(Path path, int chunkSize, long startPosition) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+        this.position = startPosition;
+    }
+
+    /**
+     * 计算 [start, end) 范围内按行对齐的切分点，相邻切分点之间约为 targetSize 字节。
+     * 返回的数组以 start 开头、以 end 结尾，各区间可以由不同的线程独立扫描。
+     *
+     * @param channel    文件通道。
+     * @param start      起始位置（行首）。
+     * @param end        结束位置（行尾或文件末尾）。
+     * @param targetSize 每个区间的目标大小。
+     * @return 切分点数组。
+     * @throws IOException 如果读取文件失败。
+     */
+    public static long[] splitPoints(FileChannel channel, long start, long end, long targetSize) throws IOException {
+        List<Long> points = new ArrayList<>();
+        points.add(start);
+        long current = start;
+        while (end - current > targetSize) {
+            long next = nextLineStart(channel, current + targetSize, end);
+            if (next >= end) {
+                break;
+            }
+            points.add(next);
+            current = next;
+        }
+        points.add(end);
+        long[] result = new long[points.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = points.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 查找 from 之后（含）第一个换行符之后的位置，\r\n 视为一个整体。
+     *
+     * @return 下一行的起始位置；没有换行符时返回 end。
+     */
+    public static long nextLineStart(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        long base = from;
+        boolean pendingCR = false;
+        while (base < end) {
+            window.clear();
+            window.limit((int) Math.min(SCAN_WINDOW, end - base));
+            int n = channel.read(window, base);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = window.get(i);
+                if (pendingCR) {
+                    return b == '\n' ? base + i + 1 : base + i;
+                }
+                if (b == '\n') {
+                    return base + i + 1;
+                }
+                if (b == '\r') {
+                    pendingCR = true;
+                }
+            }
+            base += n;
+        }
+        return end;
+    }
+
+    @Override
+    public ImportPipeline.Chunk next() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        long end = size - position > chunkSize ? nextLineStart(channel, position + chunkSize, size) : size;
+        if (end - position > Integer.MAX_VALUE - 8) {
+            throw new IOException("单行数据过长，无法导入。");
+        }
+        ImportPipeline.Chunk chunk = new ImportPipeline.Chunk(sequence++, position, (int) (end - position), null);
+        position = end;
+        return chunk;
+    }
+
+    @Override
+    public ByteBuffer load(ImportPipeline.Chunk chunk) throws IOException {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null || buffer.capacity() < chunk.getLength()) {
+            buffer = ByteBuffer.allocate(Math.max(chunk.getLength(), chunkSize + chunkSize / 4));
+        }
+        buffer.clear();
+        buffer.limit(chunk.getLength());
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, chunk.getStartOffset() + buffer.position());
+            if (n < 0) {
+                throw new IOException("文件在导入过程中被截断。");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer data) {
+        if (data != null && data.capacity() <= chunkSize * 2) {
+            bufferPool.offer(data); // 超长行使用的大缓冲区不复用
+        }
+    }
+
+    /**
+     * 获取文件大小。
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
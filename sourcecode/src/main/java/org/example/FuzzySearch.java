@@ -0,0 +1,337 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * FuzzySearch 类实现容错的相似度查找（高阶搜索），由 {@link DOperator#fuzzySearch} 调用。
+ * <p>
+ * 列上有三字符组索引（{@link SearchIndex.Type#TRIGRAM}）时，在整张表中按与关键字共有的三字符组数选出候选行：
+ * 读取关键字中每个三字符组的倒排表并按行计数，共有数最多的 {@value #CANDIDATE_LIMIT} 行作为候选。
+ * 拼写有个别错误的值仍然含有关键字的大部分三字符组，因此不含关键字原文的值也能找到。
+ * 三字符组从最少见的开始计数，读取的倒排表总长度不超过 {@value #POSTING_BUDGET}：常见的三字符组区分不出候选行，
+ * 读取又最慢，超出时不再参与计数。
+ * <p>
+ * {@link DOperator#fuzzySearch} 在列还没有三字符组索引时先建立索引。仍然没有索引（关闭了自动建立或建立失败）
+ * 或关键字不足三个字符时，退回到用 LIKE '%关键字%' 取前 {@value #LIKE_CANDIDATE_LIMIT} 行作为候选，
+ * 结果的 {@link Result#isIndexed()} 为 false。
+ * <p>
+ * 候选行至少要含有参与计数的三字符组中的 30%。
+ * 候选行按 {@link #similarity} 排序：Levenshtein 相似度和 Jaro-Winkler 相似度各占一半，由 {@link SimilarityScorer} 计算。
+ * 排序时只由 {@link TopK} 保留最高的若干个 id，最后再读取这些行的所有列。
+ */
+public class FuzzySearch {
+    static final int CANDIDATE_LIMIT = 2000; // 按共有三字符组数选出的候选行数上限
+    static final int LIKE_CANDIDATE_LIMIT = 1000; // 没有三字符组索引时 LIKE 预筛选的行数
+    private static final double MIN_SHARED_FRACTION = 0.3; // 候选行至少含有参与计数的三字符组中的这一比例
+    private static final long POSTING_BUDGET = 500000; // 读取的倒排表总长度上限（至少读取一个三字符组）
+    private static final int MAX_GRAMS = 127; // 参与计数的三字符组个数上限（计数保存在 byte 中）
+
+    private final DOperator operator;
+
+    /**
+     * 查找结果：按相似度从高到低排列的前若干行。
+     */
+    public static final class Result {
+        private final ColumnarResult winners; // 入选的行，按 id 排列
+        private final int[] rows; // 按相似度排列的入选行在 winners 中的行号
+        private final double[] similarities;
+        private final int candidateCount;
+        private final boolean indexed;
+
+        Result(ColumnarResult winners, int[] rows, double[] similarities, int candidateCount, boolean indexed) {
+            this.winners = winners;
+            this.rows = rows;
+            this.similarities = similarities;
+            this.candidateCount = candidateCount;
+            this.indexed = indexed;
+        }
+
+        /**
+         * 列名（与 SELECT * 相同，包含 id 列）。
+         */
+        public Vector<String> getColumnNames() {
+            return winners.getColumnNames();
+        }
+
+        /**
+         * 列数。
+         */
+        public int getColumnCount() {
+            return winners.getColumnCount();
+        }
+
+        /**
+         * 结果的行数。
+         */
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * 第 i 个结果（从 0 开始，相似度从高到低）的数据行。
+         */
+        public Vector<Object> getRow(int i) {
+            return winners.getRow(rows[i]);
+        }
+
+        /**
+         * 第 i 个结果第 column 列的值。
+         */
+        public Object getValueAt(int i, int column) {
+            return winners.getValueAt(rows[i], column);
+        }
+
+        /**
+         * 第 i 个结果的相似度（0.0 - 1.0）；序列比对（{@link DOperator#sequenceSearch}）的结果中是比对得分，
+         * 编辑距离查找（{@link DOperator#editDistanceSearch}）的结果中是编辑距离。
+         */
+        public double getSimilarity(int i) {
+            return similarities[i];
+        }
+
+        /**
+         * 计算了相似度的候选行数。
+         */
+        public int getCandidateCount() {
+            return candidateCount;
+        }
+
+        /**
+         * 候选行是否由三字符组索引在整张表中选出（否则来自 LIKE 预筛选）。
+         */
+        public boolean isIndexed() {
+            return indexed;
+        }
+    }
+
+    FuzzySearch(DOperator operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * 查找与关键字最相似的记录。
+     * <p>
+     * 候选行只读取 id 和要比较的列，边计算相似度边由 {@link TopK} 保留最高的 limit 个，
+     * 已经保留满时用其中最低的相似度作为下限，达不到的候选行提前放弃；最后只按 id 读取入选行的所有列。
+     *
+     * @param tableName  表名。
+     * @param columnName 要比较的列名。
+     * @param keyword    关键字（其中的 % 被忽略）。
+     * @param limit      返回的记录数上限。
+     * @return 查找结果。
+     * @throws SQLException 如果查询失败。
+     */
+    Result search(String tableName, String columnName, String keyword, int limit) throws SQLException {
+        keyword = keyword.replace("%", "");
+        SimilarityScorer scorer = new SimilarityScorer(keyword);
+        TopK top;
+        int candidateCount;
+        boolean indexed;
+        try (ConnectionManager.Lease lease = operator.readLease()) {
+            Connection conn = lease.connection();
+            long[] ids = indexedCandidates(conn, tableName, columnName, keyword);
+            indexed = ids != null;
+            if (indexed) {
+                // 候选行数有上限，读入 id 和比较的列后并行计算，每个线程保留自己的前 limit 个，最后合并
+                ColumnarResult candidates = operator.selectByIds(conn, tableName,
+                        new String[]{"id", columnName}, ids);
+                candidateCount = candidates.getRowCount();
+                top = IntStream.range(0, candidateCount).parallel().collect(() -> new TopK(limit),
+                        (heap, row) -> offer(heap, scorer, candidates.getLong(row, 0), candidates.getString(row, 1)),
+                        TopK::merge);
+            } else {
+                top = new TopK(limit);
+                candidateCount = 0;
+            }
+        }
+        if (!indexed) {
+            // LIKE 预筛选的结果逐行读取，只保留分数
+            try (RowCursor cursor = operator.openCursor(tableName, new String[]{columnName},
+                    new String[]{"%" + keyword + "%"}, true, LIKE_CANDIDATE_LIMIT)) {
+                int idColumn = columnIndex(cursor.getColumnNames(), "id");
+                int searchColumn = columnIndex(cursor.getColumnNames(), columnName);
+                while (cursor.next()) {
+                    Object[] row = cursor.getRow();
+                    Object value = searchColumn < 0 ? null : row[searchColumn];
+                    offer(top, scorer, ((Number) row[idColumn]).longValue(), value == null ? null : value.toString());
+                }
+                candidateCount = (int) cursor.getRowCount();
+            }
+        }
+        return materialize(operator, tableName, top, candidateCount, indexed);
+    }
+
+    /**
+     * 计算一个候选行的相似度并送入 top；确定进不了前 limit 个时不完整计算。
+     */
+    private static void offer(TopK top, SimilarityScorer scorer, long id, String value) {
+        double score = scorer.score(value == null ? "" : value, top.cutoff());
+        if (score >= 0) {
+            top.offer(score, id);
+        }
+    }
+
+    private static int columnIndex(Vector<String> columnNames, String columnName) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按 id 读取入选行的所有列，按相似度排列。读取之前已被删除的行不出现在结果中。
+     * {@link SequenceSearch} 也用它生成结果。
+     */
+    static Result materialize(DOperator operator, String tableName, TopK top, int candidateCount, boolean indexed)
+            throws SQLException {
+        return materialize(operator, tableName, top.ids(), top.scores(), candidateCount, indexed);
+    }
+
+    /**
+     * 按 id 读取已排好序的入选行的所有列。{@link DOperator#editDistanceSearch} 也用它生成结果。
+     */
+    static Result materialize(DOperator operator, String tableName, long[] ranked, double[] scores,
+                              int candidateCount, boolean indexed) throws SQLException {
+        long[] sorted = ranked.clone();
+        Arrays.sort(sorted);
+        ColumnarResult winners = operator.selectByIds(tableName, sorted);
+        int idColumn = winners.findColumn("id");
+        Map<Long, Integer> rowOf = new HashMap<>();
+        for (int row = 0; row < winners.getRowCount(); row++) {
+            rowOf.put(winners.getLong(row, idColumn), row);
+        }
+        int[] rows = new int[ranked.length];
+        double[] similarities = new double[ranked.length];
+        int n = 0;
+        for (int i = 0; i < ranked.length; i++) {
+            Integer row = rowOf.get(ranked[i]);
+            if (row != null) {
+                rows[n] = row;
+                similarities[n] = scores[i];
+                n++;
+            }
+        }
+        return new Result(winners, Arrays.copyOf(rows, n), Arrays.copyOf(similarities, n), candidateCount, indexed);
+    }
+
+    /**
+     * 用三字符组索引在整张表中选出候选行。
+     *
+     * @return 候选行的 id；列上没有三字符组索引、关键字没有三字符组或 id 超出计数数组的范围时返回 null。
+     */
+    private long[] indexedCandidates(Connection conn, String tableName, String columnName, String keyword)
+            throws SQLException {
+        Set<String> grams = SearchIndex.trigrams(keyword);
+        if (grams.isEmpty()) {
+            return null;
+        }
+        SearchIndex index = operator.trigramIndex(conn, tableName, columnName);
+        if (index == null) {
+            return null;
+        }
+        long maxId;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT COALESCE((SELECT MAX(id) FROM " + operator.escapeColumnName(tableName) + "), 0);");
+             ResultSet rs = pstmt.executeQuery()) {
+            maxId = rs.next() ? rs.getLong(1) : 0;
+        }
+        if (maxId >= Integer.MAX_VALUE - 8) {
+            return null;
+        }
+
+        // 从最少见的三字符组开始；没有出现过的三字符组不影响计数
+        List<String> used = new ArrayList<>();
+        List<Long> frequencies = new ArrayList<>();
+        for (String gram : grams) {
+            long frequency = index.documentFrequency(conn, gram);
+            if (frequency > 0) {
+                used.add(gram);
+                frequencies.add(frequency);
+            }
+        }
+        Integer[] order = IntStream.range(0, used.size()).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingLong(frequencies::get));
+
+        byte[] counts = new byte[(int) maxId + 1];
+        int counted = 0;
+        long postings = 0;
+        for (int i : order) {
+            postings += frequencies.get(i);
+            if (counted >= MAX_GRAMS || (counted > 0 && postings > POSTING_BUDGET)) {
+                break;
+            }
+            index.forEachRow(conn, used.get(i), id -> {
+                if (id >= 0 && id < counts.length) {
+                    counts[(int) id]++;
+                }
+            });
+            counted++;
+        }
+        return topCounts(counts, Math.max(1, (int) Math.ceil(counted * MIN_SHARED_FRACTION)));
+    }
+
+    /**
+     * 选出计数最高的至多 {@value #CANDIDATE_LIMIT} 个 id，计数相同时取 id 较小的。
+     *
+     * @param counts    按 id 计数的数组。
+     * @param minShared 计数的下限。
+     * @return 选出的 id，按 id 排列。
+     */
+    private static long[] topCounts(byte[] counts, int minShared) {
+        int[] histogram = new int[MAX_GRAMS + 1];
+        for (byte count : counts) {
+            histogram[count]++;
+        }
+        int threshold = MAX_GRAMS + 1; // 计数不低于 threshold 的行全部入选
+        int selected = 0;
+        while (threshold > minShared && selected + histogram[threshold - 1] <= CANDIDATE_LIMIT) {
+            threshold--;
+            selected += histogram[threshold];
+        }
+        int partial = threshold > minShared ? CANDIDATE_LIMIT - selected : 0; // 计数为 threshold - 1 的行中入选的个数
+
+        long[] ids = new long[selected + partial];
+        int n = 0;
+        for (int id = 0; id < counts.length; id++) {
+            int count = counts[id];
+            if (count >= threshold) {
+                ids[n++] = id;
+            } else if (count == threshold - 1 && partial > 0) {
+                ids[n++] = id;
+                partial--;
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * 计算两个字符串的相似度
+     *
+     * @param query  用户输入的搜索关键词
+     * @param target 数据库中的字段值
+     * @return 相似度分数（0.0 - 1.0）
+     */
+    public static double similarity(String query, String target) {
+        if (query == null || target == null) {
+            return 0.0;
+        }
+
+        // 统一小写，去除前后空白；Levenshtein 相似度和 Jaro-Winkler 相似度各占一半。
+        // 同一关键字与许多值比较时应直接使用 SimilarityScorer，关键字只编译一次
+        return new SimilarityScorer(query).score(target);
+    }
+}
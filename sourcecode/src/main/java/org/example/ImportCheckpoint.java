@@ -0,0 +1,267 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * ImportCheckpoint 类表示一次批量导入的检查点：源文件的标识、已提交数据在文件中的结束位置、已提交的行数和导入表的结构。
+ * <p>
+ * 检查点保存在数据库的 {@value #TABLE} 表中，每张目标表一行，由 {@link BulkLoader} 在每次提交时与数据写在同一个事务里，
+ * 因此检查点总是与导入表中已提交的数据一致。导入中断后，可以用 {@link DOperator#resumeBulkLoad} 从检查点的位置继续导入。
+ * <p>
+ * 文件以大小、修改时间和开头、结尾各 64KB 内容的 CRC32 识别，任何一项不同都视为另一个文件。
+ * 对 gzip 压缩的文件，位置是解压后数据中的字节位置。
+ */
+public class ImportCheckpoint {
+    static final String TABLE = "__import_checkpoints"; // 保存检查点的表
+    private static final int FINGERPRINT_BYTES = 64 * 1024; // 计算文件指纹时读取的开头和结尾字节数
+
+    private final String tableName;
+    private final String filePath;
+    private final long fileSize;
+    private final long fileModified;
+    private final long fileFingerprint;
+    private final String schema;
+    private final long offset;
+    private final long sourcePosition;
+    private final long rows;
+
+    private ImportCheckpoint(String tableName, String filePath, long fileSize, long fileModified, long fileFingerprint,
+                             String schema, long offset, long sourcePosition, long rows) {
+        this.tableName = tableName;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+        this.fileFingerprint = fileFingerprint;
+        this.schema = schema;
+        this.offset = offset;
+        this.sourcePosition = sourcePosition;
+        this.rows = rows;
+    }
+
+    /**
+     * 为从指定文件导入到指定表创建初始检查点（位置和行数为 0）。
+     *
+     * @param tableName 目标表名。
+     * @param file      源文件。
+     * @param columns   导入表的列信息（不含自动增量的id列）。
+     * @return 检查点。
+     * @throws IOException 如果读取文件失败。
+     */
+    public static ImportCheckpoint forFile(String tableName, File file, List<DOperator.ColumnInfo> columns) throws IOException {
+        return new ImportCheckpoint(tableName, file.getAbsolutePath(), file.length(), file.lastModified(),
+                fingerprint(file), encodeSchema(columns), 0, 0, 0);
+    }
+
+    /**
+     * 返回位置和行数更新后的检查点。
+     *
+     * @param offset         已提交数据在（解压后的）文件中的结束位置，位于行首。
+     * @param sourcePosition 对应的原始文件字节位置，用于报告进度。
+     * @param rows           已提交的行数。
+     * @return 新的检查点。
+     */
+    ImportCheckpoint at(long offset, long sourcePosition, long rows) {
+        return new ImportCheckpoint(tableName, filePath, fileSize, fileModified, fileFingerprint, schema,
+                offset, sourcePosition, rows);
+    }
+
+    /**
+     * 判断检查点是否属于指定的文件。
+     *
+     * @param file 源文件。
+     * @return 文件的大小、修改时间和指纹都相同时返回 true。
+     * @throws IOException 如果读取文件失败。
+     */
+    public boolean matches(File file) throws IOException {
+        return file.length() == fileSize && file.lastModified() == fileModified && fingerprint(file) == fileFingerprint;
+    }
+
+    /**
+     * 判断导入表的结构是否与检查点记录的一致。
+     *
+     * @param columns 导入表的列信息（不含自动增量的id列）。
+     * @return 一致时返回 true。
+     */
+    boolean matchesSchema(List<DOperator.ColumnInfo> columns) {
+        return schema.equals(encodeSchema(columns));
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * 导入表的结构，每行一列，格式为“列名\t类型”。
+     */
+    public String getSchema() {
+        return schema;
+    }
+
+    /**
+     * 已提交数据在（解压后的）文件中的结束位置，继续导入时从此处开始读取。
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * 与 {@link #getOffset()} 对应的原始文件字节位置。未压缩的文件两者相同。
+     */
+    public long getSourcePosition() {
+        return sourcePosition;
+    }
+
+    /**
+     * 已提交的行数。
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 在事务中写入（或替换）检查点，不负责提交。
+     *
+     * @param conn 写连接。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    void write(Connection conn) throws SQLException {
+        createTable(conn);
+        String sql = "INSERT OR REPLACE INTO " + TABLE + " (table_name, file_path, file_size, file_modified,"
+                + " file_fingerprint, schema, byte_offset, source_position, rows_committed, updated_at)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, filePath);
+            pstmt.setLong(3, fileSize);
+            pstmt.setLong(4, fileModified);
+            pstmt.setLong(5, fileFingerprint);
+            pstmt.setString(6, schema);
+            pstmt.setLong(7, offset);
+            pstmt.setLong(8, sourcePosition);
+            pstmt.setLong(9, rows);
+            pstmt.setLong(10, System.currentTimeMillis());
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 读取指定表的检查点。
+     *
+     * @param conn      数据库连接。
+     * @param tableName 目标表名。
+     * @return 检查点；没有检查点时返回 null。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    static ImportCheckpoint read(Connection conn, String tableName) throws SQLException {
+        if (!tableExists(conn)) {
+            return null;
+        }
+        String sql = "SELECT file_path, file_size, file_modified, file_fingerprint, schema, byte_offset,"
+                + " source_position, rows_committed FROM " + TABLE + " WHERE table_name = ?;";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new ImportCheckpoint(tableName, rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4),
+                        rs.getString(5), rs.getLong(6), rs.getLong(7), rs.getLong(8));
+            }
+        }
+    }
+
+    /**
+     * 删除指定表的检查点，不负责提交。
+     *
+     * @param conn      写连接。
+     * @param tableName 目标表名。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    static void delete(Connection conn, String tableName) throws SQLException {
+        if (!tableExists(conn)) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + TABLE + " WHERE table_name = ?;")) {
+            pstmt.setString(1, tableName);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void createTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                    + "table_name TEXT PRIMARY KEY, file_path TEXT, file_size INTEGER, file_modified INTEGER,"
+                    + " file_fingerprint INTEGER, schema TEXT, byte_offset INTEGER, source_position INTEGER,"
+                    + " rows_committed INTEGER, updated_at INTEGER);");
+        }
+    }
+
+    private static boolean tableExists(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type='table' AND name = ?;")) {
+            pstmt.setString(1, TABLE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * 计算文件开头和结尾各 {@value #FINGERPRINT_BYTES} 字节的 CRC32。
+     */
+    private static long fingerprint(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            updateCrc(crc, channel, 0, Math.min(size, FINGERPRINT_BYTES));
+            long tailStart = Math.max(FINGERPRINT_BYTES, size - FINGERPRINT_BYTES);
+            updateCrc(crc, channel, tailStart, size - tailStart);
+        }
+        return crc.getValue();
+    }
+
+    private static void updateCrc(CRC32 crc, FileChannel channel, long position, long length) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        crc.update(buffer);
+    }
+
+    /**
+     * 把列信息编码为文本，每行一列，列名中的反斜杠、制表符和换行符转义。
+     */
+    private static String encodeSchema(List<DOperator.ColumnInfo> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (DOperator.ColumnInfo column : columns) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(column.getName().replace("\\", "\\\\").replace("\t", "\\t")
+                            .replace("\n", "\\n").replace("\r", "\\r"))
+                    .append('\t').append(column.getType());
+        }
+        return sb.toString();
+    }
+}
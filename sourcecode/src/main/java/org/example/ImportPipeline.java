@@ -0,0 +1,501 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * ImportPipeline 类实现多阶段并行导入：
+ * <ol>
+ *     <li>读取线程把输入流切分成按行对齐的字节块；</li>
+ *     <li>多个解析线程把字节块解析、转换成类型化的数据批次；</li>
+ *     <li>调用线程作为唯一的写入者，把批次写入数据库。</li>
+ * </ol>
+ * 各阶段之间使用有界队列，并用许可数限制同时在途的字节块数，读取速度超过写入速度时读取线程会被阻塞。
+ * 保序模式下写入者按字节块的顺序写入，行顺序（以及自增 id）与单线程导入完全一致。
+ */
+public class ImportPipeline {
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024; // 每个字节块的目标大小
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final int parserThreads;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final boolean preserveOrder;
+
+    /**
+     * 按行对齐的原始字节块，对应输入中的 [startOffset, startOffset + length) 区间。
+     */
+    public static class Chunk {
+        private final long sequence;
+        private final long startOffset;
+        private final int length;
+        private final ByteBuffer data;
+        private final long sourcePosition;
+
+        /**
+         * 构造方法。
+         *
+         * @param sequence    块的序号（从 0 开始连续编号）。
+         * @param startOffset 块在输入中的起始字节位置。
+         * @param length      块的字节数。
+         * @param data        已读取的内容；为 null 时由 {@link ChunkSource#load(Chunk)} 在解析线程中读取。
+         */
+        public Chunk(long sequence, long startOffset, int length, ByteBuffer data) {
+            this(sequence, startOffset, length, data, startOffset + length);
+        }
+
+        /**
+         * 构造方法，用于输入经过解压等变换的情况。
+         *
+         * @param sequence       块的序号（从 0 开始连续编号）。
+         * @param startOffset    块在输入中的起始字节位置。
+         * @param length         块的字节数。
+         * @param data           已读取的内容。
+         * @param sourcePosition 切分出该块时在原始文件中已读取的字节数，用于报告进度。
+         */
+        public Chunk(long sequence, long startOffset, int length, ByteBuffer data, long sourcePosition) {
+            this.sequence = sequence;
+            this.startOffset = startOffset;
+            this.length = length;
+            this.data = data;
+            this.sourcePosition = sourcePosition;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * 块在输入中的起始字节位置。
+         */
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        public long getEndOffset() {
+            return startOffset + length;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public ByteBuffer getData() {
+            return data;
+        }
+
+        /**
+         * 该块结束时在原始文件中的字节位置。未经变换的输入与 {@link #getEndOffset()} 相同，
+         * 压缩输入为切分出该块时已读取的压缩字节数。
+         */
+        public long getSourcePosition() {
+            return sourcePosition;
+        }
+    }
+
+    /**
+     * 字节块的来源。{@link #next()} 只在读取线程中调用；{@link #load(Chunk)} 和
+     * {@link #release(ByteBuffer)} 在解析线程中并发调用。
+     */
+    public interface ChunkSource {
+        /**
+         * 切分出下一个字节块。
+         *
+         * @return 下一个块；输入结束时返回 null。
+         */
+        Chunk next() throws IOException;
+
+        /**
+         * 获取块的内容，返回的缓冲区 position 为 0、limit 为块长度。
+         */
+        default ByteBuffer load(Chunk chunk) throws IOException {
+            return chunk.getData();
+        }
+
+        /**
+         * 块解析完毕后归还 {@link #load(Chunk)} 返回的缓冲区。
+         */
+        default void release(ByteBuffer data) {
+        }
+    }
+
+    /**
+     * 解析后的数据批次。
+     */
+    public static class Batch {
+        private final long sequence;
+        private final long endOffset;
+        private final long sourcePosition;
+        private final List<Object[]> rows;
+
+        public Batch(Chunk chunk, List<Object[]> rows) {
+            this.sequence = chunk.getSequence();
+            this.endOffset = chunk.getEndOffset();
+            this.sourcePosition = chunk.getSourcePosition();
+            this.rows = rows;
+        }
+
+        /**
+         * 批次对应字节块的结束位置，写入该批次后输入流中此位置之前的数据均已处理。
+         */
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        /**
+         * 批次对应字节块结束时在原始文件中的字节位置（见 {@link Chunk#getSourcePosition()}）。
+         */
+        public long getSourcePosition() {
+            return sourcePosition;
+        }
+
+        public List<Object[]> getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * 解析阶段，在解析线程中调用，必须是线程安全的。
+     */
+    @FunctionalInterface
+    public interface ChunkParser {
+        Batch parse(Chunk chunk, ByteBuffer data) throws IOException;
+    }
+
+    /**
+     * 写入阶段，只在调用 {@link #run} 的线程中调用。
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        void write(Batch batch) throws SQLException;
+    }
+
+    /**
+     * 构造方法。
+     *
+     * @param parserThreads 解析线程数。
+     * @param chunkSize     每个字节块的目标大小（字节）。
+     * @param preserveOrder 是否按输入顺序写入。
+     */
+    public ImportPipeline(int parserThreads, int chunkSize, boolean preserveOrder) {
+        this.parserThreads = Math.max(1, parserThreads);
+        this.chunkSize = Math.max(4096, chunkSize);
+        this.maxChunksInFlight = this.parserThreads * 2 + 2;
+        this.preserveOrder = preserveOrder;
+    }
+
+    /**
+     * 运行导入流水线，直到输入流结束且所有批次都已写入。
+     *
+     * @param in     输入流。
+     * @param parser 解析阶段。
+     * @param writer 写入阶段。
+     * @return 本次导入的统计信息。
+     * @throws IOException  如果读取或解析失败。
+     * @throws SQLException 如果写入失败。
+     */
+    public ImportStats run(InputStream in, ChunkParser parser, BatchWriter writer) throws IOException, SQLException {
+        return run(new StreamChunkSource(in, chunkSize), parser, writer);
+    }
+
+    /**
+     * 运行导入流水线，直到字节块来源结束且所有批次都已写入。
+     *
+     * @param source 字节块来源。
+     * @param parser 解析阶段。
+     * @param writer 写入阶段。
+     * @return 本次导入的统计信息。
+     * @throws IOException  如果读取或解析失败。
+     * @throws SQLException 如果写入失败。
+     */
+    public ImportStats run(ChunkSource source, ChunkParser parser, BatchWriter writer) throws IOException, SQLException {
+        ImportStats stats = new ImportStats(parserThreads, preserveOrder);
+        long startTime = System.nanoTime();
+
+        BlockingQueue<Chunk> chunkQueue = new ArrayBlockingQueue<>(maxChunksInFlight);
+        BlockingQueue<Batch> batchQueue = new ArrayBlockingQueue<>(maxChunksInFlight);
+        Semaphore inFlight = new Semaphore(maxChunksInFlight);
+        AtomicLong totalChunks = new AtomicLong(-1); // 读取结束前未知
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                long chunks = readChunks(source, chunkQueue, inFlight, stats);
+                totalChunks.set(chunks);
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }, "tsv-import-reader");
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, r -> {
+            Thread t = new Thread(r, "tsv-import-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < parserThreads; i++) {
+            parsers.execute(() -> {
+                try {
+                    while (failure.get() == null) {
+                        Chunk chunk = chunkQueue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                        if (chunk == null) {
+                            if (totalChunks.get() >= 0 && chunkQueue.isEmpty()) {
+                                return; // 读取结束且没有剩余的块
+                            }
+                            continue;
+                        }
+                        long parseStart = System.nanoTime();
+                        ByteBuffer data = source.load(chunk);
+                        Batch batch;
+                        try {
+                            batch = parser.parse(chunk, data);
+                        } finally {
+                            source.release(data);
+                        }
+                        stats.addParseNanos(System.nanoTime() - parseStart);
+                        batchQueue.put(batch);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            writeBatches(batchQueue, inFlight, totalChunks, failure, writer, stats);
+        } finally {
+            parsers.shutdownNow();
+            reader.interrupt();
+            try {
+                reader.join(TimeUnit.SECONDS.toMillis(5)); // 等待读取线程退出后再由调用方关闭输入流
+                parsers.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        stats.setElapsedNanos(System.nanoTime() - startTime);
+        return stats;
+    }
+
+    /**
+     * 读取线程：从来源中依次取出字节块，在途块数达到上限时等待写入者释放。
+     *
+     * @return 字节块总数。
+     */
+    private long readChunks(ChunkSource source, BlockingQueue<Chunk> chunkQueue, Semaphore inFlight,
+                            ImportStats stats) throws IOException, InterruptedException {
+        long chunks = 0;
+        while (true) {
+            long waitStart = System.nanoTime();
+            inFlight.acquire();
+            stats.addReaderStallNanos(System.nanoTime() - waitStart);
+
+            Chunk chunk = source.next();
+            if (chunk == null) {
+                inFlight.release();
+                return chunks;
+            }
+            chunkQueue.put(chunk);
+            stats.addBytes(chunk.getLength());
+            chunks++;
+        }
+    }
+
+    /**
+     * 从输入流中读取并切分按行对齐字节块的来源。
+     */
+    static class StreamChunkSource implements ChunkSource {
+        private final InputStream in;
+        private final int chunkSize;
+        private final LongSupplier sourcePosition;
+        private long sequence = 0;
+        private long offset = 0;
+        private final long startOffset;
+        private byte[] carry = new byte[0];
+        private boolean eof = false;
+
+        StreamChunkSource(InputStream in, int chunkSize) {
+            this(in, chunkSize, 0, null);
+        }
+
+        /**
+         * 构造方法。
+         *
+         * @param in             输入流。
+         * @param chunkSize      每个字节块的目标大小（字节）。
+         * @param startOffset    起始位置，必须位于行首。之前的数据在读取线程中跳过（解压的数据无法定位，只能读过去）。
+         * @param sourcePosition 原始文件中已读取的字节数（例如解压前的压缩字节数）；为 null 时使用输入流中的位置。
+         */
+        StreamChunkSource(InputStream in, int chunkSize, long startOffset, LongSupplier sourcePosition) {
+            this.in = in;
+            this.chunkSize = chunkSize;
+            this.startOffset = startOffset;
+            this.sourcePosition = sourcePosition;
+        }
+
+        @Override
+        public Chunk next() throws IOException {
+            if (offset < startOffset) {
+                long skipped = in.skip(startOffset);
+                while (skipped < startOffset) {
+                    long n = in.skip(startOffset - skipped);
+                    if (n <= 0) {
+                        if (in.read() < 0) {
+                            throw new IOException("输入在位置 " + skipped + " 处结束，无法跳到位置 " + startOffset + "。");
+                        }
+                        n = 1;
+                    }
+                    skipped += n;
+                }
+                offset = startOffset;
+            }
+            while (!eof) {
+                byte[] buffer = new byte[Math.max(chunkSize, carry.length * 2)];
+                System.arraycopy(carry, 0, buffer, 0, carry.length);
+                int length = carry.length;
+                int lineEnd = -1;
+                while (true) {
+                    int n = in.read(buffer, length, buffer.length - length);
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    // 从上次读取的最后一个字节开始扫描，避免漏掉跨读取边界的 \r\n
+                    int scanFrom = Math.max(0, length - 1);
+                    length += n;
+                    int found = lastLineEnd(buffer, scanFrom, length);
+                    if (found >= 0) {
+                        lineEnd = found;
+                    }
+                    if (length == buffer.length) {
+                        if (lineEnd >= 0) {
+                            break;
+                        }
+                        // 单行超过块大小，扩容后继续读取
+                        byte[] grown = new byte[buffer.length * 2];
+                        System.arraycopy(buffer, 0, grown, 0, length);
+                        buffer = grown;
+                    }
+                }
+
+                int chunkLength = eof ? length : lineEnd + 1;
+                carry = new byte[length - chunkLength];
+                System.arraycopy(buffer, chunkLength, carry, 0, carry.length);
+
+                if (chunkLength > 0) {
+                    long position = sourcePosition == null ? offset + chunkLength : sourcePosition.getAsLong();
+                    Chunk chunk = new Chunk(sequence++, offset, chunkLength, ByteBuffer.wrap(buffer, 0, chunkLength), position);
+                    offset += chunkLength;
+                    return chunk;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 查找 [from, to) 中最后一个换行符（\n 或 \r）的位置。
+         */
+        private static int lastLineEnd(byte[] buffer, int from, int to) {
+            for (int i = to - 1; i >= from; i--) {
+                if (buffer[i] == '\n' || buffer[i] == '\r') {
+                    // \r 位于末尾时其后可能紧跟 \n，不在此处切分，保证 \r\n 不被拆开
+                    if (buffer[i] == '\r' && i == to - 1) {
+                        continue;
+                    }
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 写入阶段：在调用线程中按顺序（或按完成顺序）写入批次。
+     */
+    private void writeBatches(BlockingQueue<Batch> batchQueue, Semaphore inFlight, AtomicLong totalChunks,
+                              AtomicReference<Throwable> failure, BatchWriter writer,
+                              ImportStats stats) throws IOException, SQLException {
+        Map<Long, Batch> pending = new HashMap<>();
+        long nextSequence = 0;
+        long written = 0;
+
+        while (true) {
+            rethrow(failure.get());
+            long total = totalChunks.get();
+            if (total >= 0 && written == total) {
+                return;
+            }
+
+            Batch batch;
+            long waitStart = System.nanoTime();
+            try {
+                batch = batchQueue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("导入被中断。", e);
+            }
+            stats.addWriterIdleNanos(System.nanoTime() - waitStart);
+            if (batch == null) {
+                continue;
+            }
+
+            if (!preserveOrder) {
+                written += writeBatch(batch, writer, inFlight, stats);
+                continue;
+            }
+
+            pending.put(batch.sequence, batch);
+            Batch next;
+            while ((next = pending.remove(nextSequence)) != null) {
+                written += writeBatch(next, writer, inFlight, stats);
+                nextSequence++;
+            }
+        }
+    }
+
+    private int writeBatch(Batch batch, BatchWriter writer, Semaphore inFlight, ImportStats stats) throws SQLException {
+        long writeStart = System.nanoTime();
+        writer.write(batch);
+        stats.addWriteNanos(System.nanoTime() - writeStart);
+        stats.addRows(batch.getRows().size());
+        inFlight.release();
+        return 1;
+    }
+
+    private static void rethrow(Throwable e) throws IOException, SQLException {
+        if (e == null) {
+            return;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IOException(e);
+    }
+}
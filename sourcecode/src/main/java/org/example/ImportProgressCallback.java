@@ -12,4 +12,17 @@ public interface ImportProgressCallback {
      * @param processedRecords 已处理记录数。
      */
     void onProgress(int totalRecords, int processedRecords);
+
+    /**
+     * 按字节报告导入进度。导入只读取文件一次，总记录数在读取样本后根据平均行宽估算，
+     * 估算前为 0。默认实现将估算的总记录数转交给 {@link #onProgress(int, int)}。
+     *
+     * @param totalBytes            文件总字节数。
+     * @param bytesRead             已读取的字节数。
+     * @param estimatedTotalRecords 估算的总记录数（未知时为 0）。
+     * @param processedRecords      已处理记录数。
+     */
+    default void onByteProgress(long totalBytes, long bytesRead, int estimatedTotalRecords, int processedRecords) {
+        onProgress(estimatedTotalRecords, processedRecords);
+    }
 }
@@ -0,0 +1,117 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImportStats 类记录一次导入的吞吐量和各阶段耗时，用于比较不同的线程数和保序设置。
+ * 各阶段的耗时在多个线程中累加，因此解析耗时可能大于总耗时。
+ */
+public class ImportStats {
+    private final int parserThreads;
+    private final boolean preserveOrder;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong readerStallNanos = new AtomicLong();
+    private final AtomicLong writerIdleNanos = new AtomicLong();
+    private volatile long elapsedNanos;
+
+    public ImportStats(int parserThreads, boolean preserveOrder) {
+        this.parserThreads = parserThreads;
+        this.preserveOrder = preserveOrder;
+    }
+
+    void addRows(long n) {
+        rows.addAndGet(n);
+    }
+
+    void addBytes(long n) {
+        bytes.addAndGet(n);
+    }
+
+    void addParseNanos(long n) {
+        parseNanos.addAndGet(n);
+    }
+
+    void addWriteNanos(long n) {
+        writeNanos.addAndGet(n);
+    }
+
+    void addReaderStallNanos(long n) {
+        readerStallNanos.addAndGet(n);
+    }
+
+    void addWriterIdleNanos(long n) {
+        writerIdleNanos.addAndGet(n);
+    }
+
+    void setElapsedNanos(long n) {
+        elapsedNanos = n;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    public boolean isPreserveOrder() {
+        return preserveOrder;
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * 解析线程累计的解析耗时。
+     */
+    public long getParseNanos() {
+        return parseNanos.get();
+    }
+
+    /**
+     * 写入者累计的写入耗时。
+     */
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    /**
+     * 读取线程因在途块数达到上限而等待的时间（写入跟不上时增大）。
+     */
+    public long getReaderStallNanos() {
+        return readerStallNanos.get();
+    }
+
+    /**
+     * 写入者等待下一个批次的时间（解析跟不上时增大）。
+     */
+    public long getWriterIdleNanos() {
+        return writerIdleNanos.get();
+    }
+
+    /**
+     * 每秒导入的行数。
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows.get() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("导入 %d 行 / %.1f MB，用时 %.2f 秒（%.0f 行/秒）；解析线程 %d，%s；"
+                        + "解析 %.2f 秒，写入 %.2f 秒，读取等待 %.2f 秒，写入等待 %.2f 秒",
+                getRows(), getBytes() / 1048576.0, elapsedNanos / 1e9, getRowsPerSecond(),
+                parserThreads, preserveOrder ? "保序" : "不保序",
+                getParseNanos() / 1e9, getWriteNanos() / 1e9,
+                getReaderStallNanos() / 1e9, getWriterIdleNanos() / 1e9);
+    }
+}
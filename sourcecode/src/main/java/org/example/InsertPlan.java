@@ -0,0 +1,300 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * InsertPlan 类是一张表编译好的插入计划：缓存的列信息、INSERT 语句、每列预先选好的转换类型和绑定方法，
+ * 以及在写连接上复用的 PreparedStatement。
+ * <p>
+ * 计划按 {@link InsertStrategy} 执行批量插入。多行 VALUES 方式每条语句的行数受绑定参数数量上限约束，
+ * 剩余不足一条完整语句的行按 2 的幂拆分，因此每张表最多缓存十几条不同行数的语句。
+ * <p>
+ * 计划记录创建时数据库的 schema_version，表结构改变后由 {@link DOperator} 丢弃并重新编译。
+ * 计划只在持有写连接时使用，不需要额外同步。
+ */
+class InsertPlan {
+    static final int MAX_BOUND_PARAMETERS = 32766; // SQLite 默认的绑定参数数量上限（SQLITE_MAX_VARIABLE_NUMBER）
+    static final int MAX_ROWS_PER_STATEMENT = 128; // 行数再多时解析和绑定的开销不再下降
+    private static final long TRIAL_ROWS = 20000; // AUTO 方式下每种方式至少试写的行数
+
+    private final DOperator operator;
+    private final String tableName;
+    private final List<DOperator.ColumnInfo> columns;
+    private final long schemaVersion;
+    private final ColumnKind[] kinds;
+    private final String[] names;
+    private final Binder[] binders;
+    private final int rowsPerStatement;
+    private final Map<Integer, PreparedStatement> statements = new HashMap<>(); // 按每条语句的行数缓存
+    private Connection statementConnection;
+    private final long[] trialNanos = new long[2]; // AUTO 方式下 BATCH 和 MULTI_ROW 的累计耗时
+    private final long[] trialRows = new long[2];
+    private InsertStrategy chosenStrategy;
+
+    /**
+     * 单列的绑定方法，在编译计划时按列类型选定。
+     */
+    private interface Binder {
+        void bind(PreparedStatement pstmt, int index, Object value) throws SQLException;
+    }
+
+    /**
+     * 构造方法。
+     *
+     * @param operator      数据库操作对象，用于生成 INSERT 语句。
+     * @param tableName     目标表名。
+     * @param columns       表的列信息（不含自动增量的id列）。
+     * @param schemaVersion 编译时数据库的 schema_version。
+     */
+    InsertPlan(DOperator operator, String tableName, List<DOperator.ColumnInfo> columns, long schemaVersion) {
+        this.operator = operator;
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(columns);
+        this.schemaVersion = schemaVersion;
+        this.kinds = new ColumnKind[columns.size()];
+        this.names = new String[columns.size()];
+        this.binders = new Binder[columns.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = ColumnKind.of(columns.get(i));
+            names[i] = columns.get(i).getName();
+            binders[i] = binderFor(kinds[i]);
+        }
+        this.rowsPerStatement = Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, MAX_BOUND_PARAMETERS / Math.max(1, kinds.length)));
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    List<DOperator.ColumnInfo> getColumns() {
+        return columns;
+    }
+
+    long getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    /**
+     * 多行 VALUES 方式下每条完整语句包含的行数。
+     */
+    int getRowsPerStatement() {
+        return rowsPerStatement;
+    }
+
+    /**
+     * 将一行文本字段转换为要绑定的值，规则与 {@link DOperator#convertRow} 相同。
+     *
+     * @param row 文本字段数组。
+     * @return 与列一一对应的值数组。
+     */
+    Object[] convertRow(String[] row) {
+        Object[] values = new Object[kinds.length];
+        for (int i = 0; i < kinds.length && i < row.length; i++) {
+            String value = row[i].trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            try {
+                values[i] = kinds[i].convert(value);
+            } catch (NumberFormatException e) {
+                // 如果转换失败，设置为 null 并记录错误
+                System.err.println("数据类型转换失败，字段: " + names[i] + ", 值: " + value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 获取该计划在指定连接上的单行 INSERT 语句。连接不变时复用同一个语句。
+     *
+     * @param conn 写连接。
+     * @return 预编译的 INSERT 语句。
+     * @throws SQLException 如果预编译失败。
+     */
+    PreparedStatement statement(Connection conn) throws SQLException {
+        return statement(conn, 1);
+    }
+
+    /**
+     * 获取包含指定行数 VALUES 的 INSERT 语句，按行数缓存。
+     */
+    private PreparedStatement statement(Connection conn, int rows) throws SQLException {
+        if (statementConnection != conn) {
+            close();
+            statementConnection = conn;
+        }
+        PreparedStatement pstmt = statements.get(rows);
+        if (pstmt == null || pstmt.isClosed()) {
+            pstmt = conn.prepareStatement(operator.buildInsertSql(tableName, columns, rows));
+            statements.put(rows, pstmt);
+        }
+        return pstmt;
+    }
+
+    /**
+     * 绑定一行的值。
+     *
+     * @param pstmt 由 {@link #statement(Connection)} 返回的语句。
+     * @param row   与列一一对应的值数组。
+     * @throws SQLException 如果绑定失败。
+     */
+    void bind(PreparedStatement pstmt, Object[] row) throws SQLException {
+        bind(pstmt, row, 0);
+    }
+
+    /**
+     * 从指定的参数位置开始绑定一行的值。
+     */
+    private void bind(PreparedStatement pstmt, Object[] row, int offset) throws SQLException {
+        for (int i = 0; i < binders.length; i++) {
+            binders[i].bind(pstmt, offset + i + 1, i < row.length ? row[i] : null);
+        }
+    }
+
+    /**
+     * 按指定方式插入数据行，不负责事务的开始和提交。
+     *
+     * @param conn     写连接。
+     * @param rows     转换后的数据行。
+     * @param strategy 插入方式。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    void execute(Connection conn, List<Object[]> rows, InsertStrategy strategy) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (strategy != InsertStrategy.AUTO) {
+            executeWith(conn, rows, strategy);
+            return;
+        }
+        if (chosenStrategy != null) {
+            executeWith(conn, rows, chosenStrategy);
+            return;
+        }
+
+        // 试写阶段：每次使用已写行数较少的方式，两种方式都达到试写行数后选定较快的一种
+        InsertStrategy trial = trialRows[0] <= trialRows[1] ? InsertStrategy.BATCH : InsertStrategy.MULTI_ROW;
+        int index = trial == InsertStrategy.BATCH ? 0 : 1;
+        long start = System.nanoTime();
+        executeWith(conn, rows, trial);
+        trialNanos[index] += System.nanoTime() - start;
+        trialRows[index] += rows.size();
+
+        if (trialRows[0] >= TRIAL_ROWS && trialRows[1] >= TRIAL_ROWS) {
+            double batchRate = trialRows[0] * 1e9 / Math.max(1, trialNanos[0]);
+            double multiRowRate = trialRows[1] * 1e9 / Math.max(1, trialNanos[1]);
+            chosenStrategy = multiRowRate >= batchRate ? InsertStrategy.MULTI_ROW : InsertStrategy.BATCH;
+            System.out.println(String.format("表 '%s' 的插入方式: %s（逐行批处理 %.0f 行/秒，多行 VALUES %.0f 行/秒，每条语句 %d 行）",
+                    tableName, chosenStrategy, batchRate, multiRowRate, rowsPerStatement));
+        }
+    }
+
+    private void executeWith(Connection conn, List<Object[]> rows, InsertStrategy strategy) throws SQLException {
+        if (strategy == InsertStrategy.MULTI_ROW) {
+            executeMultiRow(conn, rows);
+        } else {
+            executeBatch(conn, rows);
+        }
+    }
+
+    /**
+     * 使用单行 INSERT 语句和 JDBC 批处理插入。
+     */
+    private void executeBatch(Connection conn, List<Object[]> rows) throws SQLException {
+        PreparedStatement pstmt = statement(conn, 1);
+        for (Object[] row : rows) {
+            bind(pstmt, row, 0);
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+    }
+
+    /**
+     * 使用多行 VALUES 语句插入。先用完整行数的语句，剩余的行按 2 的幂拆分为较小的语句。
+     */
+    private void executeMultiRow(Connection conn, List<Object[]> rows) throws SQLException {
+        int total = rows.size();
+        int done = 0;
+        while (done < total) {
+            int remaining = total - done;
+            int count = remaining >= rowsPerStatement ? rowsPerStatement : Integer.highestOneBit(remaining);
+            PreparedStatement pstmt = statement(conn, count);
+            for (int r = 0; r < count; r++) {
+                bind(pstmt, rows.get(done + r), r * binders.length);
+            }
+            pstmt.executeUpdate();
+            done += count;
+        }
+    }
+
+    /**
+     * 关闭缓存的语句。
+     */
+    void close() {
+        for (PreparedStatement pstmt : statements.values()) {
+            try {
+                pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("关闭插入语句时出错: " + e.getMessage());
+            }
+        }
+        statements.clear();
+        statementConnection = null;
+    }
+
+    private static Binder binderFor(ColumnKind kind) {
+        switch (kind) {
+            case INTEGER:
+                return (pstmt, index, value) -> {
+                    if (value instanceof Integer) {
+                        pstmt.setInt(index, (Integer) value);
+                    } else if (value instanceof Long) {
+                        pstmt.setLong(index, (Long) value);
+                    } else if (value == null) {
+                        pstmt.setNull(index, Types.INTEGER);
+                    } else {
+                        pstmt.setObject(index, value);
+                    }
+                };
+            case REAL:
+                return (pstmt, index, value) -> {
+                    if (value instanceof Double) {
+                        pstmt.setDouble(index, (Double) value);
+                    } else if (value == null) {
+                        pstmt.setNull(index, Types.REAL);
+                    } else {
+                        pstmt.setObject(index, value);
+                    }
+                };
+            case BOOLEAN:
+                return (pstmt, index, value) -> {
+                    if (value instanceof Boolean) {
+                        pstmt.setBoolean(index, (Boolean) value);
+                    } else if (value == null) {
+                        pstmt.setNull(index, Types.BOOLEAN);
+                    } else {
+                        pstmt.setObject(index, value);
+                    }
+                };
+            case TEXT:
+            case ANNOTATIONS:
+            default:
+                return (pstmt, index, value) -> {
+                    if (value instanceof String) {
+                        pstmt.setString(index, (String) value);
+                    } else if (value == null) {
+                        pstmt.setNull(index, Types.VARCHAR);
+                    } else {
+                        pstmt.setObject(index, value);
+                    }
+                };
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example;
+
+/**
+ * 批量插入的执行方式。
+ */
+public enum InsertStrategy {
+    /**
+     * 单行 INSERT 语句，通过 JDBC 的 addBatch / executeBatch 逐行执行。
+     */
+    BATCH,
+    /**
+     * 一条 INSERT 语句包含多行 VALUES (...), (...)，每条语句的行数受绑定参数数量上限约束。
+     */
+    MULTI_ROW,
+    /**
+     * 先交替使用两种方式写入一部分数据并计时，之后固定使用较快的一种。
+     */
+    AUTO
+}
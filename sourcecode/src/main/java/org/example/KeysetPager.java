@@ -0,0 +1,476 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * KeysetPager 类按键定位（keyset / seek）分页读取一张表或一次模糊查找的结果，由 {@link DOperator#pager} 创建。
+ * <p>
+ * 行按 (排序列, id) 排序，没有排序列时按 id 排序。上一页、下一页从当前页第一行或最后一行的键开始，
+ * 通过索引直接定位，耗时与页码无关。跳转到任意页时使用稀疏页索引（{@link PageIndex}）：
+ * 每隔 {@value #INDEX_STRIDE} 页记录一次该页第一行的键，从最近的记录开始最多跳过 {@value #INDEX_STRIDE} - 1 页。
+ * 页索引是从第一页开始逐段延伸的，第一次跳到第 N 页时仍要顺序经过前 N 页的行（只读键列，代价与 OFFSET 相当）；
+ * 之后跳到已索引范围内的任意页只需按键定位再跳过不到 {@value #INDEX_STRIDE} 页。
+ * 没有查找条件和排序列、且 id 连续（与 {@link RowCounter} 记录的记录数相符）时，直接由页码算出起始 id，不需要页索引。
+ * <p>
+ * 页索引和读取过的页（{@link PageCache}）缓存在 {@link DOperator} 中，同一查询的分页器共用；
+ * 有写入之后缓存失效，页索引在下次跳页时从头重新延伸。
+ * 分页器本身不是线程安全的，但不同线程可以各自使用自己的分页器。
+ */
+public class KeysetPager {
+    static final int INDEX_STRIDE = 32; // 稀疏页索引每隔多少页记录一次边界
+
+    private final DOperator operator;
+    private final String tableName;
+    private final String[] fieldNames;
+    private final String[] searchValues;
+    private final String sortColumn;
+    private final int pageSize;
+    private final String indexKey;
+    private boolean includeId = true;
+    private int pageNumber = 0; // 当前页码，0 表示尚未读取
+    private Key firstKey; // 当前页第一行的键
+    private Key lastKey; // 当前页最后一行的键
+
+    /**
+     * 行在排序中的位置：排序列的值（没有排序列时为 null）和 id。
+     */
+    public static final class Key {
+        private final Object sortValue;
+        private final long id;
+
+        Key(Object sortValue, long id) {
+            this.sortValue = sortValue;
+            this.id = id;
+        }
+
+        public Object getSortValue() {
+            return sortValue;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+
+    /**
+     * 一次查询读取的数据行及每行的键。
+     */
+    private static final class Rows {
+        final SelectResult result = new SelectResult(new Vector<>(), new Vector<>());
+        final List<Key> keys = new ArrayList<>();
+    }
+
+    /**
+     * 构造方法。
+     *
+     * @param operator     数据库操作对象。
+     * @param tableName    表名。
+     * @param fieldNames   要匹配的字段名数组，为 null 或与 searchValues 长度不同时不进行匹配。
+     * @param searchValues 与字段名对应的查找内容数组（LIKE 模式或按词查找）。
+     * @param sortColumn   排序列；为 null 时按 id 排序。
+     * @param pageSize     每页记录数。
+     */
+    KeysetPager(DOperator operator, String tableName, String[] fieldNames, String[] searchValues,
+                String sortColumn, int pageSize) {
+        boolean hasSearch = fieldNames != null && searchValues != null &&
+                fieldNames.length > 0 && searchValues.length > 0 &&
+                fieldNames.length == searchValues.length;
+        this.operator = operator;
+        this.tableName = tableName;
+        this.fieldNames = hasSearch ? fieldNames.clone() : new String[0];
+        this.searchValues = hasSearch ? searchValues.clone() : new String[0];
+        this.sortColumn = sortColumn == null || sortColumn.equalsIgnoreCase("id") ? null : sortColumn;
+        this.pageSize = Math.max(1, pageSize);
+
+        StringBuilder key = new StringBuilder(tableName).append('\0').append(this.sortColumn).append('\0').append(this.pageSize);
+        for (int i = 0; i < this.fieldNames.length; i++) {
+            key.append('\0').append(this.fieldNames[i]).append('\0').append(this.searchValues[i]);
+        }
+        this.indexKey = key.toString();
+    }
+
+    /**
+     * 设置结果中是否包含 id 列，默认包含（与 SELECT * 相同）。
+     *
+     * @param includeId 是否包含 id 列。
+     * @return 当前对象。
+     */
+    public KeysetPager setIncludeId(boolean includeId) {
+        this.includeId = includeId;
+        return this;
+    }
+
+    /**
+     * 复制分页器：相同的查询和当前位置。副本可以交给另一个线程继续翻页，不影响原分页器。
+     *
+     * @return 新的分页器。
+     */
+    public KeysetPager copy() {
+        KeysetPager copy = new KeysetPager(operator, tableName, fieldNames, searchValues, sortColumn, pageSize)
+                .setIncludeId(includeId);
+        copy.moveTo(pageNumber, firstKey, lastKey);
+        return copy;
+    }
+
+    /**
+     * 当前页码（从 1 开始）；尚未读取任何页时为 0。
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    /**
+     * 读取指定页。
+     *
+     * @param page 页码（从 1 开始）。
+     * @return 该页的数据；页码超出范围时数据行为空。
+     * @throws SQLException 如果查询失败。
+     */
+    public SelectResult page(int page) throws SQLException {
+        page = Math.max(1, page);
+        long generation = operator.getConnectionManager().getWriteGeneration();
+        PageCache.Entry cached = operator.getPageCache().get(cacheKey(page), generation);
+        if (cached != null) {
+            moveTo(page, cached.getFirstKey(), cached.getLastKey());
+            return cached.getResult();
+        }
+        try (ConnectionManager.Lease lease = operator.readLease()) {
+            Connection conn = lease.connection();
+            PageIndex.Position position = operator.pageIndex(indexKey).locate(this, conn, page);
+            Rows rows = position == null
+                    ? query(conn, null, ">=", false, 0, 0) // 页码超出范围，只取列名
+                    : query(conn, position.key, ">=", false, position.skipRows, pageSize);
+            moveTo(page, rows);
+            cache(page, generation, rows);
+            return rows.result;
+        }
+    }
+
+    /**
+     * 读取当前页的下一页；尚未读取时读取第一页。
+     *
+     * @return 下一页的数据；已经是最后一页时数据行为空，当前位置不变。
+     * @throws SQLException 如果查询失败。
+     */
+    public SelectResult next() throws SQLException {
+        if (lastKey == null) {
+            return page(pageNumber + 1);
+        }
+        long generation = operator.getConnectionManager().getWriteGeneration();
+        PageCache.Entry cached = operator.getPageCache().get(cacheKey(pageNumber + 1), generation);
+        if (cached != null && cached.getFirstKey() != null) {
+            moveTo(pageNumber + 1, cached.getFirstKey(), cached.getLastKey());
+            return cached.getResult();
+        }
+        try (ConnectionManager.Lease lease = operator.readLease()) {
+            Rows rows = query(lease.connection(), lastKey, ">", false, 0, pageSize);
+            if (!rows.keys.isEmpty()) {
+                moveTo(pageNumber + 1, rows);
+                cache(pageNumber, generation, rows);
+            }
+            return rows.result;
+        }
+    }
+
+    /**
+     * 读取当前页的上一页。
+     *
+     * @return 上一页的数据；已经是第一页时数据行为空，当前位置不变。
+     * @throws SQLException 如果查询失败。
+     */
+    public SelectResult previous() throws SQLException {
+        if (firstKey == null && pageNumber > 1) {
+            return page(pageNumber - 1);
+        }
+        long generation = operator.getConnectionManager().getWriteGeneration();
+        if (pageNumber > 1) {
+            PageCache.Entry cached = operator.getPageCache().get(cacheKey(pageNumber - 1), generation);
+            if (cached != null && cached.getFirstKey() != null) {
+                moveTo(pageNumber - 1, cached.getFirstKey(), cached.getLastKey());
+                return cached.getResult();
+            }
+        }
+        try (ConnectionManager.Lease lease = operator.readLease()) {
+            if (pageNumber <= 1) {
+                return query(lease.connection(), null, ">=", false, 0, 0).result; // 已经是第一页，只取列名
+            }
+            Rows rows = query(lease.connection(), firstKey, "<", true, 0, pageSize);
+            Collections.reverse(rows.result.getDataRows());
+            Collections.reverse(rows.keys);
+            if (!rows.keys.isEmpty()) {
+                moveTo(pageNumber - 1, rows);
+                cache(pageNumber, generation, rows);
+            }
+            return rows.result;
+        }
+    }
+
+    /**
+     * 记录当前页及其首末行的键。
+     */
+    private void moveTo(int page, Rows rows) {
+        List<Key> keys = rows.keys;
+        moveTo(page, keys.isEmpty() ? null : keys.get(0), keys.isEmpty() ? null : keys.get(keys.size() - 1));
+    }
+
+    private void moveTo(int page, Key first, Key last) {
+        pageNumber = page;
+        firstKey = first;
+        lastKey = last;
+    }
+
+    /**
+     * 把读取的一页放入页缓存。
+     *
+     * @param generation 开始读取前写连接的归还次数。
+     */
+    private void cache(int page, long generation, Rows rows) {
+        List<Key> keys = rows.keys;
+        operator.getPageCache().put(cacheKey(page), generation, new PageCache.Entry(rows.result,
+                keys.isEmpty() ? null : keys.get(0), keys.isEmpty() ? null : keys.get(keys.size() - 1)));
+    }
+
+    /**
+     * 页在页缓存中的键：查询的标识、是否包含 id 列和页码。
+     */
+    private String cacheKey(int page) {
+        return indexKey + '\0' + includeId + '\0' + page;
+    }
+
+    /**
+     * 按键定位查询数据行。
+     *
+     * @param conn       只读连接。
+     * @param from       起始键；为 null 时从头开始。
+     * @param op         与起始键的比较方式（">="、">" 或 "<"）。
+     * @param descending 是否倒序读取。
+     * @param skipRows   跳过的行数。
+     * @param limit      最多读取的行数；为 0 时只返回列名。
+     */
+    private Rows query(Connection conn, Key from, String op, boolean descending, int skipRows, int limit)
+            throws SQLException {
+        Rows rows = new Rows();
+        List<Object> params = new ArrayList<>();
+        StringBuilder sb = new StringBuilder("SELECT id AS pager_id");
+        if (sortColumn != null) {
+            sb.append(", ").append(operator.escapeColumnName(sortColumn)).append(" AS pager_sort");
+        }
+        sb.append(", * FROM ").append(operator.escapeColumnName(tableName));
+        appendWhere(conn, sb, params, from, op);
+        appendOrderBy(sb, descending);
+        sb.append(" LIMIT ? OFFSET ?;");
+        params.add(limit);
+        params.add(skipRows);
+
+        int keyColumns = sortColumn != null ? 2 : 1;
+        try (PreparedStatement pstmt = conn.prepareStatement(sb.toString())) {
+            bind(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columnCount = meta.getColumnCount();
+                List<Integer> output = new ArrayList<>();
+                for (int i = keyColumns + 1; i <= columnCount; i++) {
+                    String name = meta.getColumnName(i);
+                    if (includeId || !name.equalsIgnoreCase("id")) {
+                        output.add(i);
+                        rows.result.getColumnNames().add(name);
+                    }
+                }
+                while (rs.next()) {
+                    Vector<Object> row = new Vector<>(output.size());
+                    for (int i : output) {
+                        row.add(rs.getObject(i));
+                    }
+                    rows.result.getDataRows().add(row);
+                    rows.keys.add(new Key(sortColumn != null ? rs.getObject(2) : null, rs.getLong(1)));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 读取从起始键开始（含）跳过指定行数之后那一行的键，用于建立页索引。
+     *
+     * @return 该行的键；没有这一行时返回 null。
+     */
+    Key keyAt(Connection conn, Key from, int skipRows) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sb = new StringBuilder("SELECT id");
+        if (sortColumn != null) {
+            sb.append(", ").append(operator.escapeColumnName(sortColumn));
+        }
+        sb.append(" FROM ").append(operator.escapeColumnName(tableName));
+        appendWhere(conn, sb, params, from, ">=");
+        appendOrderBy(sb, false);
+        sb.append(" LIMIT 1 OFFSET ?;");
+        params.add(skipRows);
+        try (PreparedStatement pstmt = conn.prepareStatement(sb.toString())) {
+            bind(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new Key(sortColumn != null ? rs.getObject(2) : null, rs.getLong(1)) : null;
+            }
+        }
+    }
+
+    /**
+     * 判断能否直接由页码算出起始 id：没有查找条件和排序列，且 id 连续，
+     * 即最大 id 与最小 id 之差与 {@link RowCounter} 记录的记录数相符。记录数尚未开始记录时不判断，不扫描表。
+     *
+     * @return 最小的 id；不能直接计算时返回 null。
+     */
+    Long denseStartId(Connection conn) throws SQLException {
+        if (fieldNames.length > 0 || sortColumn != null) {
+            return null;
+        }
+        Long count = operator.getRowCounter().readTracked(conn, tableName);
+        if (count == null || count == 0) {
+            return null;
+        }
+        String table = operator.escapeColumnName(tableName);
+        try (PreparedStatement pstmt = conn.prepareStatement( // 分开查询才能各自直接读取主键的两端
+                "SELECT (SELECT MIN(id) FROM " + table + "), (SELECT MAX(id) FROM " + table + ");");
+             ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return null;
+            }
+            long min = rs.getLong(1);
+            return rs.getLong(2) - min + 1 == count ? min : null;
+        }
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * 追加查找条件（有全文索引时使用索引）和键定位条件。
+     * SQLite 排序时 NULL 最小，因此排序列为 NULL 的行排在最前面，条件中单独处理。
+     */
+    private void appendWhere(Connection conn, StringBuilder sb, List<Object> params, Key from, String op)
+            throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < fieldNames.length; i++) {
+            conditions.add(operator.searchCondition(conn, tableName, fieldNames[i], searchValues[i], params));
+        }
+        if (from != null) {
+            if (sortColumn == null) {
+                conditions.add("id " + op + " ?");
+                params.add(from.id);
+            } else {
+                String column = operator.escapeColumnName(sortColumn);
+                boolean after = !op.equals("<");
+                if (from.sortValue == null && after) {
+                    conditions.add("((" + column + " IS NULL AND id " + op + " ?) OR " + column + " IS NOT NULL)");
+                    params.add(from.id);
+                } else if (from.sortValue == null) {
+                    conditions.add("(" + column + " IS NULL AND id < ?)");
+                    params.add(from.id);
+                } else if (after) {
+                    conditions.add("(" + column + " > ? OR (" + column + " = ? AND id " + op + " ?))");
+                    params.add(from.sortValue);
+                    params.add(from.sortValue);
+                    params.add(from.id);
+                } else {
+                    conditions.add("(" + column + " IS NULL OR " + column + " < ? OR (" + column + " = ? AND id < ?))");
+                    params.add(from.sortValue);
+                    params.add(from.sortValue);
+                    params.add(from.id);
+                }
+            }
+        }
+        if (!conditions.isEmpty()) {
+            sb.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    private void appendOrderBy(StringBuilder sb, boolean descending) {
+        String direction = descending ? " DESC" : "";
+        sb.append(" ORDER BY ");
+        if (sortColumn != null) {
+            sb.append(operator.escapeColumnName(sortColumn)).append(direction).append(", ");
+        }
+        sb.append("id").append(direction);
+    }
+
+    private static void bind(PreparedStatement pstmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+    }
+
+    /**
+     * 稀疏页索引：记录第 1、1 + {@value #INDEX_STRIDE}、1 + 2 × {@value #INDEX_STRIDE}……页第一行的键。
+     * 跳转到更靠后的页时从最后一个记录向后延伸，每次跳过 {@value #INDEX_STRIDE} 页，只读取键列。
+     * 索引记录创建时写连接的归还次数，数据可能改变后由 {@link DOperator} 丢弃。
+     */
+    static final class PageIndex {
+        private final long generation;
+        private final List<Key> boundaries = new ArrayList<>();
+        private boolean complete = false; // 是否已延伸到最后一页
+        private boolean denseChecked = false;
+        private Long denseStartId;
+
+        /**
+         * 页在索引中的位置：最近的边界键和从该键开始要跳过的行数。
+         */
+        static final class Position {
+            final Key key;
+            final int skipRows;
+
+            Position(Key key, int skipRows) {
+                this.key = key;
+                this.skipRows = skipRows;
+            }
+        }
+
+        PageIndex(long generation) {
+            this.generation = generation;
+        }
+
+        long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * 定位指定页。
+         *
+         * @return 页的位置；页码超出范围时返回 null。
+         */
+        synchronized Position locate(KeysetPager pager, Connection conn, int page) throws SQLException {
+            int pageSize = pager.getPageSize();
+            int target = (page - 1) / INDEX_STRIDE;
+            // 只在第一次跳到第一段以外时判断 id 是否连续
+            if (target > 0 && !denseChecked) {
+                denseStartId = pager.denseStartId(conn);
+                denseChecked = true;
+            }
+            if (denseStartId != null) {
+                return new Position(new Key(null, denseStartId + (long) (page - 1) * pageSize), 0);
+            }
+
+            while (boundaries.size() <= target && !complete) {
+                Key next = boundaries.isEmpty()
+                        ? pager.keyAt(conn, null, 0)
+                        : pager.keyAt(conn, boundaries.get(boundaries.size() - 1), INDEX_STRIDE * pageSize);
+                if (next == null) {
+                    complete = true;
+                } else {
+                    boundaries.add(next);
+                }
+            }
+            if (boundaries.size() <= target) {
+                return null;
+            }
+            return new Position(boundaries.get(target), ((page - 1) % INDEX_STRIDE) * pageSize);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Levenshtein 类用位并行算法（Myers / Hyyrö）计算 Levenshtein 编辑距离，供相似度查找和 {@link BKTree} 使用。
+ * <p>
+ * 关键字先编译为 {@link Pattern}：记录每个字符在关键字中出现的位置（每个位置一位），之后与每个值比较时
+ * 动态规划矩阵的一整列用几个 long 的位运算一次算出，每个字符只需常数次运算（关键字不超过 64 个字符时），
+ * 不再逐格填表。关键字超过 64 个字符时分成每 64 个字符一块，块之间传递进位。
+ * <p>
+ * {@link Pattern#distance(CharSequence, int)} 在距离一定超过上限时提前停止，用于只关心距离是否足够小的场合。
+ * <p>
+ * 比较前两个字符串都统一写法（见 {@link #normalize}），因此比较不区分大小写，并忽略前后空白。
+ * 统一写法后的值放在每个线程自己的缓冲区中，比较时不创建新的字符串或数组。{@link Pattern} 可以在多个线程中同时使用。
+ */
+public final class Levenshtein {
+    private static final int ASCII = 128; // 用数组记录的字符范围，其余字符用散列表记录
+
+    /**
+     * 每个线程的缓冲区：统一写法后的值、分块计算时每块的状态和 {@link SimilarityScorer} 配对字符用的数组。
+     */
+    static final class Scratch {
+        char[] text = new char[64];
+        long[] positive = new long[2]; // 每块的垂直正差分位向量
+        long[] negative = new long[2]; // 每块的垂直负差分位向量
+        int[] matched = new int[64]; // 较短的值中每个字符配对的位置
+        boolean[] flags = new boolean[64]; // 较长的值中每个字符是否已配对
+        int[] nextSame = new int[64]; // 较长的值中下一个相同字符的位置
+        int[] firstSame = new int[ASCII]; // 较长的值中每个 ASCII 字符尚未配对的第一个位置
+
+        /**
+         * 把值统一写法后放入缓冲区。
+         *
+         * @return 统一写法后的长度。
+         */
+        int load(CharSequence value) {
+            int start = 0;
+            int end = value.length();
+            while (start < end && value.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && value.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            int length = end - start;
+            if (text.length < length) {
+                text = new char[Math.max(length, text.length * 2)];
+            }
+            if (value instanceof String) {
+                ((String) value).getChars(start, end, text, 0);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    text[i] = value.charAt(start + i);
+                }
+            }
+            for (int i = 0; i < length; i++) {
+                char c = text[i];
+                if (c < ASCII) {
+                    if (c >= 'A' && c <= 'Z') {
+                        text[i] = (char) (c + ('a' - 'A'));
+                    }
+                } else {
+                    text[i] = Character.toLowerCase(c);
+                }
+            }
+            return length;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private Levenshtein() {
+    }
+
+    /**
+     * 当前线程的缓冲区，供同一包中的相似度计算共用。
+     */
+    static Scratch scratch() {
+        return SCRATCH.get();
+    }
+
+    /**
+     * 统一写法：去除前后空白（与 String.trim 相同），每个字符转为小写。
+     */
+    public static String normalize(String value) {
+        Scratch scratch = SCRATCH.get();
+        int length = scratch.load(value);
+        return new String(scratch.text, 0, length);
+    }
+
+    /**
+     * 计算两个字符串（统一写法后）的编辑距离。
+     */
+    public static int distance(CharSequence a, CharSequence b) {
+        return Pattern.compile(a).distance(b);
+    }
+
+    /**
+     * 编译后的关键字。
+     */
+    public static final class Pattern {
+        private final String text; // 统一写法后的关键字
+        private final int length;
+        private final int blocks; // 64 个字符一块的块数
+        private final long[] ascii; // ASCII 字符在关键字中出现的位置，第 c 个字符的第 b 块在 [c * blocks + b]
+        private final Map<Character, long[]> others = new HashMap<>(); // 其余字符出现的位置
+        private final long[] none; // 不在关键字中的字符
+
+        private Pattern(String text) {
+            this.text = text;
+            this.length = text.length();
+            this.blocks = Math.max(1, (length + 63) >>> 6);
+            this.ascii = new long[ASCII * blocks];
+            this.none = new long[blocks];
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                long bit = 1L << (i & 63);
+                if (c < ASCII) {
+                    ascii[c * blocks + (i >>> 6)] |= bit;
+                } else {
+                    others.computeIfAbsent(c, k -> new long[blocks])[i >>> 6] |= bit;
+                }
+            }
+        }
+
+        /**
+         * 编译关键字（统一写法后）。
+         */
+        public static Pattern compile(CharSequence query) {
+            return new Pattern(normalize(query.toString()));
+        }
+
+        /**
+         * 统一写法后的关键字。
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * 统一写法后关键字的长度。
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * 计算与一个值（统一写法后）的编辑距离。
+         */
+        public int distance(CharSequence value) {
+            return distance(value, Integer.MAX_VALUE - 1);
+        }
+
+        /**
+         * 计算与一个值（统一写法后）的编辑距离，距离超过上限时提前停止。
+         *
+         * @param value 值。
+         * @param max   距离的上限。
+         * @return 编辑距离；超过上限时返回 max + 1。
+         */
+        public int distance(CharSequence value, int max) {
+            Scratch scratch = SCRATCH.get();
+            return distance(scratch, scratch.load(value), max);
+        }
+
+        /**
+         * 计算与缓冲区中已统一写法的值的编辑距离。
+         *
+         * @param scratch 当前线程的缓冲区。
+         * @param n       值的长度。
+         * @param max     距离的上限。
+         * @return 编辑距离；超过上限时返回 max + 1。
+         */
+        int distance(Scratch scratch, int n, int max) {
+            if (Math.abs(length - n) > max) {
+                return max + 1;
+            }
+            if (length == 0) {
+                return n;
+            }
+            if (n == 0) {
+                return length;
+            }
+            return blocks == 1 ? single(scratch.text, n, max) : blocked(scratch, n, max);
+        }
+
+        private long[] positions(char c) {
+            if (c < ASCII) {
+                return null;
+            }
+            long[] bits = others.get(c);
+            return bits == null ? none : bits;
+        }
+
+        /**
+         * 关键字不超过 64 个字符：每个字符一次位运算（Hyyrö 的全局编辑距离形式）。
+         */
+        private int single(char[] value, int n, int max) {
+            long last = 1L << (length - 1);
+            long pv = -1L;
+            long mv = 0L;
+            int score = length;
+            for (int j = 0; j < n; j++) {
+                char c = value[j];
+                long eq = c < ASCII ? ascii[c] : positions(c)[0];
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                } else if ((mh & last) != 0) {
+                    score--;
+                }
+                // 第 0 行的水平差分恒为 +1
+                ph = (ph << 1) | 1L;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+                // 剩下的 n - j - 1 个字符最多使距离减少同样多
+                if (score - (n - j - 1) > max) {
+                    return max + 1;
+                }
+            }
+            return score;
+        }
+
+        /**
+         * 关键字超过 64 个字符：每块依次计算，块之间传递最后一行的水平差分（Myers 的分块算法）。
+         */
+        private int blocked(Scratch scratch, int n, int max) {
+            char[] value = scratch.text;
+            if (scratch.positive.length < blocks) {
+                scratch.positive = new long[blocks];
+                scratch.negative = new long[blocks];
+            }
+            long[] pvs = scratch.positive;
+            long[] mvs = scratch.negative;
+            Arrays.fill(pvs, 0, blocks, -1L);
+            Arrays.fill(mvs, 0, blocks, 0L);
+            long last = 1L << ((length - 1) & 63);
+            int score = length;
+            for (int j = 0; j < n; j++) {
+                char c = value[j];
+                long[] bits = positions(c);
+                int base = c * blocks;
+                int carry = 1; // 进入块顶部的水平差分，第 0 行恒为 +1
+                for (int b = 0; b < blocks; b++) {
+                    long eq = bits == null ? ascii[base + b] : bits[b];
+                    long pv = pvs[b];
+                    long mv = mvs[b];
+                    long xv = eq | mv;
+                    if (carry < 0) {
+                        eq |= 1L;
+                    }
+                    long xh = (((eq & pv) + pv) ^ pv) | eq;
+                    long ph = mv | ~(xh | pv);
+                    long mh = pv & xh;
+                    long high = b == blocks - 1 ? last : Long.MIN_VALUE;
+                    int out = (ph & high) != 0 ? 1 : (mh & high) != 0 ? -1 : 0;
+                    ph <<= 1;
+                    mh <<= 1;
+                    if (carry < 0) {
+                        mh |= 1L;
+                    } else if (carry > 0) {
+                        ph |= 1L;
+                    }
+                    pvs[b] = mh | ~(xv | ph);
+                    mvs[b] = ph & xv;
+                    carry = out;
+                }
+                score += carry;
+                if (score - (n - j - 1) > max) {
+                    return max + 1;
+                }
+            }
+            return score;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package org.example;
 
-import org.apache.commons.text.similarity.LevenshteinDistance;
-import org.apache.commons.text.similarity.JaroWinklerDistance;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -12,10 +10,9 @@ import java.awt.event.*;
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.Vector;
-import java.util.stream.Collectors;
 
 public class MainView extends JFrame {
     private JTable table;
@@ -25,6 +22,7 @@ public class MainView extends JFrame {
     private final JMenu editMenu = new JMenu("编辑");
     private final JMenuItem find = new JMenuItem("查找");
     private final JMenuItem ultrafind = new JMenuItem("高阶查找");
+    private final JMenuItem searchIndex = new JMenuItem("全文索引");
     private final JMenuItem imp = new JMenuItem("导入");
     private final JMenuItem open = new JMenuItem("打开");
     private final JMenuItem newDB = new JMenuItem("新建"); // 新增：新建数据库选项
@@ -40,7 +38,11 @@ public class MainView extends JFrame {
     private int totalPages = 1;
     private final int pageSize = 35; // 每页记录数
     private int totalRecords = 0;
+    private boolean totalExact = true; // 总记录数是否精确；否则 totalRecords 是下限，精确计数在后台进行
     private String currentTable = null;
+    private static final long COUNT_BUDGET_MILLIS = 200; // 切换表或搜索时同步计数的最长时间
+    private CompletableFuture<Long> pendingCount = null; // 后台进行中的精确计数
+    private int countRequest = 0; // 计数请求的序号，用于丢弃过时的后台计数结果
 
     private String currentDBPath = null; // 当前数据库路径
     private DOperator operater = null; // 当前数据库操作对象
@@ -52,8 +54,8 @@ public class MainView extends JFrame {
     // 新增：用于跟踪当前是否在搜索模式以及存储搜索参数
     private String[] currentSearchFields = null;
     private String[] currentSearchValues = null;
-    LevenshteinDistance levenshteinDistance = new LevenshteinDistance();
-    JaroWinklerDistance jaroWinklerDistance = new JaroWinklerDistance();
+    private KeysetPager pager = null; // 当前表（或搜索结果）的分页器，表或搜索条件改变时置为 null
+    private final PagePrefetcher prefetcher = new PagePrefetcher(); // 在后台预读相邻页，表或搜索条件改变时停止
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
@@ -72,6 +74,12 @@ public class MainView extends JFrame {
         initializeNavigationPanel();
         initializeDataList(); // 初始化左侧数据表浏览窗口
         registerCtrlCAction(); // 注册全局 Ctrl+C 事件
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeOperater(); // 退出前关闭数据库连接
+            }
+        });
 
         // 使用 JSplitPane 将左侧浏览窗口和右侧表格分开
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, new JScrollPane(dataList), new JScrollPane(table));
@@ -105,6 +113,7 @@ public class MainView extends JFrame {
                 JOptionPane.showMessageDialog(this, "高阶查找失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
             }
         });
+        searchIndex.addActionListener(e -> createSearchIndex());
         // 组装菜单
         fileMenu.add(newDB); // 添加“新建”选项到“文件”菜单
         fileMenu.add(open);
@@ -113,6 +122,7 @@ public class MainView extends JFrame {
         editMenu.add(add); // 将“添加”项添加到编辑菜单
         editMenu.add(find);
         editMenu.add(ultrafind);
+        editMenu.add(searchIndex);
         menuBar.add(fileMenu);
         menuBar.add(editMenu);
     }
@@ -216,6 +226,7 @@ public class MainView extends JFrame {
                 performSearch(currentSearchFields, currentSearchValues);
             } else {
                 updateTable();
+                refreshTotalRecords();
             }
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(this, "插入数据失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
@@ -229,6 +240,20 @@ public class MainView extends JFrame {
             return;
         }
         currentPage = newPage;
+        if (pager != null && pager.getPageNumber() == newPage - delta && Math.abs(delta) == 1) {
+            // 相邻页从当前页的首行或末行按键定位，不需要跳过前面的行
+            try {
+                SelectResult page = delta > 0 ? pager.next() : pager.previous();
+                if (pager.getPageNumber() == newPage) {
+                    updateTableWithDatabaseData(page.getColumnNames(), page.getDataRows());
+                    updatePageLabel();
+                    prefetcher.prefetch(pager, delta, lastPage());
+                    return;
+                }
+            } catch (SQLException e) {
+                System.err.println("翻页失败，按页码重新读取: " + e.getMessage());
+            }
+        }
         updateTable();
         updatePageLabel();
     }
@@ -266,6 +291,7 @@ public class MainView extends JFrame {
             // 创建数据库
             DOperator newOperater = new DOperator(dbPath);
             newOperater.createDatabase(); // 假设 createDatabase() 方法为 void
+            closeOperater(); // 释放原数据库的连接
             operater = newOperater; // 更新当前数据库操作对象
             currentDBPath = dbPath;
             setTitle("Java 大作业 - " + currentDBPath);
@@ -304,6 +330,7 @@ public class MainView extends JFrame {
                 return;
             }
 
+            closeOperater(); // 释放原数据库的连接
             operater = new DOperator(dbPath);
             currentDBPath = dbPath;
             setTitle("Java 大作业 - " + currentDBPath);
@@ -314,6 +341,17 @@ public class MainView extends JFrame {
         }
     }
 
+    /**
+     * 关闭当前数据库操作对象持有的所有连接。
+     */
+    private void closeOperater() {
+        prefetcher.cancel();
+        pager = null;
+        if (operater != null) {
+            operater.close();
+        }
+    }
+
     /**
      * 加载当前数据库中的所有表到数据表浏览列表。
      */
@@ -353,7 +391,7 @@ public class MainView extends JFrame {
         fileChooser.setDialogTitle("选择要导入的 TSV 文件");
         fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
         fileChooser.setMultiSelectionEnabled(true); // 允许多文件选择
-        FileNameExtensionFilter filter = new FileNameExtensionFilter("TSV Files (*.tsv)", "tsv");
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("TSV Files (*.tsv, *.tsv.gz)", "tsv", "gz");
         fileChooser.addChoosableFileFilter(filter);
 
         int result = fileChooser.showOpenDialog(this);
@@ -366,12 +404,14 @@ public class MainView extends JFrame {
         for (File tsvFile : tsvFiles) {
             String tsvFilePath = tsvFile.getAbsolutePath();
 
-            if (!tsvFilePath.toLowerCase().endsWith(".tsv")) {
-                JOptionPane.showMessageDialog(this, "请选择后缀名为 .tsv 的文件！", "文件类型错误", JOptionPane.ERROR_MESSAGE);
+            String lowerPath = tsvFilePath.toLowerCase();
+            if (!lowerPath.endsWith(".tsv") && !lowerPath.endsWith(".tsv.gz")) {
+                JOptionPane.showMessageDialog(this, "请选择后缀名为 .tsv 或 .tsv.gz 的文件！", "文件类型错误", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            String defaultTableName = tsvFile.getName().substring(0, tsvFile.getName().lastIndexOf('.'));
+            String fileName = tsvFile.getName();
+            String defaultTableName = fileName.substring(0, fileName.length() - (lowerPath.endsWith(".gz") ? 7 : 4)); // 去掉 .tsv 或 .tsv.gz
             String tableName = JOptionPane.showInputDialog(this, "请输入导入后的表名：", defaultTableName);
 
             if (tableName == null || tableName.trim().isEmpty()) {
@@ -388,11 +428,35 @@ public class MainView extends JFrame {
 
             ImportProgressDialog progressDialog = new ImportProgressDialog(this, "导入中...", "正在导入数据，请稍候...");
 
-            ImportProgressCallback callback = (total, processed) -> {
-                SwingUtilities.invokeLater(() -> progressDialog.updateProgress(processed, total));
+            ImportProgressCallback callback = new ImportProgressCallback() {
+                @Override
+                public void onProgress(int total, int processed) {
+                    SwingUtilities.invokeLater(() -> progressDialog.updateProgress(processed, total));
+                }
+
+                @Override
+                public void onByteProgress(long totalBytes, long bytesRead, int estimatedTotal, int processed) {
+                    SwingUtilities.invokeLater(() -> progressDialog.updateByteProgress(bytesRead, totalBytes, processed, estimatedTotal));
+                }
             };
 
-            TSVImporter importer = new TSVImporter(operater, hasHeader(), callback);
+            // 目标表有同一文件未完成导入的检查点时，询问是否从中断处继续
+            boolean resume = false;
+            try {
+                ImportCheckpoint checkpoint = operater.getImportCheckpoint(tableName);
+                if (checkpoint != null && checkpoint.matches(tsvFile)) {
+                    int choice = JOptionPane.showConfirmDialog(this,
+                            "表 " + tableName + " 上次从该文件导入了 " + checkpoint.getRows() + " 行后中断，是否从中断处继续导入？\n选择“否”将重新导入。",
+                            "继续导入", JOptionPane.YES_NO_OPTION);
+                    resume = choice == JOptionPane.YES_OPTION;
+                }
+            } catch (IOException | SQLException e) {
+                System.err.println("读取导入检查点失败: " + e.getMessage());
+            }
+
+            TSVImporter importer = new TSVImporter(operater, hasHeader(), callback)
+                    .setCheckpointing(true)
+                    .setResume(resume);
 
             String finalTableName = tableName;
             SwingWorker<Void, Void> worker = new SwingWorker<>() {
@@ -417,9 +481,9 @@ public class MainView extends JFrame {
                         loadTables();
                         if (finalTableName.equals(currentTable)) {
                             currentPage = 1;
-                            totalRecords = operater.getTotalRecords(currentTable);
-                            totalPages = (int) Math.ceil((double) totalRecords / pageSize);
-                            if (totalPages == 0) totalPages = 1;
+                            prefetcher.cancel();
+                            pager = null;
+                            refreshTotalRecords();
                             updateTable();
                             updatePageLabel();
                         }
@@ -488,6 +552,57 @@ public class MainView extends JFrame {
         }
     }
 
+    /**
+     * 为当前表的一列创建全文索引，之后对该列的查找先用索引找出候选行。
+     */
+    private void createSearchIndex() {
+        if (currentTable == null) {
+            JOptionPane.showMessageDialog(this, "请先选择一个数据表！", "操作错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Vector<String> columnNames = operater.getTableColumnNames(currentTable);
+        if (columnNames.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "当前表没有列可供索引！", "信息", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        Object column = JOptionPane.showInputDialog(this, "选择要建全文索引的列：", "全文索引",
+                JOptionPane.PLAIN_MESSAGE, null, columnNames.toArray(), columnNames.get(0));
+        if (column == null) {
+            return;
+        }
+        // 三字符组索引回答查找数据和标准搜索的子串查找（例如登录号、序列），按词索引只回答高阶查找中的关键字搜索，但更小
+        String[] typeNames = {"三字符组（子串查找）", "按词（关键字搜索）"};
+        int choice = JOptionPane.showOptionDialog(this, "选择全文索引的类型：", "全文索引",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, typeNames, typeNames[0]);
+        if (choice < 0) {
+            return;
+        }
+        SearchIndex.Type type = choice == 0 ? SearchIndex.Type.TRIGRAM : SearchIndex.Type.TOKEN;
+
+        String tableName = currentTable;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                operater.createSearchIndex(tableName, column.toString(), type);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(MainView.this, "列 '" + column + "' 的全文索引已创建。");
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainView.this, "创建全文索引失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
+    }
+
     /**
      * 执行搜索操作，根据选定字段和关键字进行模糊匹配。
      *
@@ -508,16 +623,16 @@ public class MainView extends JFrame {
         // 更新表格显示搜索结果
         updateTableWithDatabaseData(searchResult.getColumnNames(), searchResult.getDataRows());
 
-        // 更新分页信息
-        currentPage = 1;
-        totalRecords = operater.getTotalRecordsWithSearch(currentTable, fieldNames, searchValues); // 确保 DOperator 中已实现此方法
-        totalPages = (int) Math.ceil((double) totalRecords / pageSize);
-        if (totalPages == 0) totalPages = 1;
-        updatePageLabel();
-
         // 设置当前搜索参数
         currentSearchFields = fieldNames;
         currentSearchValues = searchValues;
+        prefetcher.cancel();
+        pager = null;
+
+        // 更新分页信息
+        currentPage = 1;
+        refreshTotalRecords();
+        updatePageLabel();
     }
 
     // 注册Ctrl+C和Ctrl+F事件
@@ -603,18 +718,18 @@ public class MainView extends JFrame {
         currentTable = tableName;
         currentPage = 1; // 重置为第一页
 
+        // 重置搜索参数
+        currentSearchFields = null;
+        currentSearchValues = null;
+        prefetcher.cancel();
+        pager = null;
+
         // 获取总记录数
-        totalRecords = operater.getTotalRecords(currentTable);
-        totalPages = (int) Math.ceil((double) totalRecords / pageSize);
-        if (totalPages == 0) totalPages = 1;
+        refreshTotalRecords();
 
         // 加载第一页的数据
         updateTable();
         updatePageLabel();
-
-        // 重置搜索参数
-        currentSearchFields = null;
-        currentSearchValues = null;
     }
 
     /**
@@ -623,22 +738,16 @@ public class MainView extends JFrame {
     private void updateTable() {
         if (currentTable == null) return;
 
-        Vector<String> columnNames;
-        Vector<Vector<Object>> dataRows;
-
         try {
-            if (currentSearchFields != null && currentSearchValues != null) {
-                // 在搜索模式下，从搜索结果中获取数据
-                SelectResult searchResult = operater.select(currentTable, currentSearchFields, currentSearchValues, currentPage, pageSize);
-                columnNames = searchResult.getColumnNames();
-                dataRows = searchResult.getDataRows();
-            } else {
-                // 普通模式，从数据库操作对象中获取数据
-                columnNames = operater.getTableColumnNames(currentTable);
-                dataRows = operater.getTablePageData(currentTable, pageSize, currentPage);
+            if (pager == null) {
+                // 搜索模式下显示 id 列（与 SELECT * 相同），普通模式不显示
+                boolean searching = currentSearchFields != null && currentSearchValues != null;
+                pager = operater.pager(currentTable, currentSearchFields, currentSearchValues, null, pageSize)
+                        .setIncludeId(searching);
             }
-
-            updateTableWithDatabaseData(columnNames, dataRows);
+            SelectResult page = pager.page(currentPage);
+            updateTableWithDatabaseData(page.getColumnNames(), page.getDataRows());
+            prefetcher.prefetch(pager, 1, lastPage());
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "加载数据失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
             e.printStackTrace();
@@ -646,10 +755,64 @@ public class MainView extends JFrame {
     }
 
     /**
-     * 更新分页标签和按钮状态。
+     * 更新当前表（或搜索结果）的总记录数和总页数。先在限定时间内计数，
+     * 未完成时按已确定的下限显示“≥ N”页，并在后台完成精确计数后更新。
+     */
+    private void refreshTotalRecords() {
+        if (pendingCount != null) {
+            pendingCount.cancel(false);
+            pendingCount = null;
+        }
+        int request = ++countRequest;
+        RowCounter counter = operater.getRowCounter();
+        try {
+            RowCounter.Estimate estimate = counter.estimate(currentTable, currentSearchFields, currentSearchValues,
+                    COUNT_BUDGET_MILLIS);
+            setTotalRecords(estimate.getCount(), estimate.isExact());
+        } catch (SQLException e) {
+            System.err.println("计算总记录数时出错: " + e.getMessage());
+            setTotalRecords(0, true);
+            return;
+        }
+        if (totalExact) {
+            return;
+        }
+
+        String table = currentTable;
+        pendingCount = counter.countAsync(table, currentSearchFields, currentSearchValues);
+        pendingCount.whenComplete((total, error) -> SwingUtilities.invokeLater(() -> {
+            if (request != countRequest) {
+                return; // 表或搜索条件已改变
+            }
+            pendingCount = null;
+            if (error != null) {
+                System.err.println("计算总记录数时出错: " + error.getMessage());
+                return;
+            }
+            setTotalRecords(total, true);
+            updatePageLabel();
+        }));
+    }
+
+    /**
+     * 预读时不超过的页码：总记录数不精确时不限制，由读到空页结束。
+     */
+    private int lastPage() {
+        return totalExact ? totalPages : Integer.MAX_VALUE;
+    }
+
+    private void setTotalRecords(long count, boolean exact) {
+        totalRecords = (int) Math.min(count, Integer.MAX_VALUE);
+        totalExact = exact;
+        totalPages = (int) Math.ceil((double) totalRecords / pageSize);
+        if (totalPages == 0) totalPages = 1;
+    }
+
+    /**
+     * 更新分页标签和按钮状态。总页数未精确计数时显示为“≥ N”。
      */
     private void updatePageLabel() {
-        pageLabel.setText(currentPage + " / " + totalPages);
+        pageLabel.setText(currentPage + " / " + (totalExact ? "" : "≥") + totalPages);
         prevButton.setEnabled(currentPage > 1);
         nextButton.setEnabled(currentPage < totalPages);
     }
@@ -756,6 +919,20 @@ public class MainView extends JFrame {
                 progressBar.setString(processed + " / " + total);
             }
         }
+
+        /**
+         * 按已读取的字节数更新进度条，记录数仅作为估算显示。
+         */
+        public void updateByteProgress(long bytesRead, long totalBytes, int processed, int estimatedTotal) {
+            if (totalBytes <= 0) {
+                updateProgress(processed, estimatedTotal);
+                return;
+            }
+            int percent = (int) ((double) bytesRead / totalBytes * 100);
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(percent);
+            progressBar.setString(estimatedTotal == 0 ? percent + "%" : processed + " / ~" + estimatedTotal);
+        }
     }
 
     /**
@@ -943,10 +1120,13 @@ public class MainView extends JFrame {
                 try {
                     Vector<String> columnNames = operater.getTableColumnNames(currentTable);
                     Vector<Vector<Object>> allData = new Vector<>();
+                    // 导出使用单独的分页器：定位到起始页后逐页按键向后读取；不含 id 列，与列名一致
+                    KeysetPager exportPager = operater.pager(currentTable, currentSearchFields, currentSearchValues, null, pageSize)
+                            .setIncludeId(false);
 
                     switch (selectedOption) {
                         case CURRENT_PAGE:
-                            SelectResult currentPageResult = operater.select(currentTable, currentSearchFields, currentSearchValues, currentPage, pageSize);
+                            SelectResult currentPageResult = exportPager.page(currentPage);
                             allData.addAll(currentPageResult.getDataRows());
                             progressDialog.updateProgress(1, 1);
                             break;
@@ -956,20 +1136,21 @@ public class MainView extends JFrame {
                             }
                             int totalExportPages = endPage - startPage + 1;
                             for (int page = startPage; page <= endPage; page++) {
-                                SelectResult pageResult = operater.select(currentTable, currentSearchFields, currentSearchValues, page, pageSize);
+                                SelectResult pageResult = page == startPage ? exportPager.page(page) : exportPager.next();
                                 allData.addAll(pageResult.getDataRows());
                                 progressDialog.updateProgress(page - startPage + 1, totalExportPages);
                             }
                             break;
                         case ALL_DATA:
-                            // 计算总页数
-                            int totalExportAllPages = totalPages;
-                            for (int page = 1; page <= totalExportAllPages; page++) {
-                                SelectResult pageResult = operater.select(currentTable, currentSearchFields, currentSearchValues, page, pageSize);
-                                allData.addAll(pageResult.getDataRows());
-                                progressDialog.updateProgress(page, totalExportAllPages);
-                            }
-                            break;
+                            // 逐行从游标写入文件，不把所有数据读入内存；总记录数可能还是下限（后台计数未完成）
+                            int totalExportRecords = Math.max(1, totalRecords);
+                            RowCursor cursor = operater.openCursor(currentTable, currentSearchFields, currentSearchValues, false, 0);
+                            exporter.exportToCSV(finalExportPath, cursor, written -> {
+                                if (written % 10000 == 0) {
+                                    progressDialog.updateProgress((int) Math.min(written, totalExportRecords), totalExportRecords);
+                                }
+                            });
+                            return null;
                     }
 
                     // 导出到 CSV
@@ -1033,6 +1214,68 @@ public class MainView extends JFrame {
         }
     }
 
+    /**
+     * 进度对话框类，用于显示耗时查找的进度，可以取消查找。
+     */
+    private static class SearchProgressDialog extends JDialog {
+        private JProgressBar progressBar;
+        private JLabel statusLabel;
+        private Runnable cancelAction;
+
+        public SearchProgressDialog(Frame owner, String title, String message) {
+            super(owner, title, true);
+            initialize(message);
+        }
+
+        private void initialize(String message) {
+            setLayout(new BorderLayout());
+
+            statusLabel = new JLabel(message);
+            statusLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+            add(statusLabel, BorderLayout.NORTH);
+
+            progressBar = new JProgressBar();
+            progressBar.setIndeterminate(true);
+            progressBar.setStringPainted(true);
+            progressBar.setString("");
+            progressBar.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+            add(progressBar, BorderLayout.CENTER);
+
+            JButton cancelButton = new JButton("取消");
+            cancelButton.addActionListener(e -> cancel());
+            JPanel buttonPanel = new JPanel();
+            buttonPanel.add(cancelButton);
+            add(buttonPanel, BorderLayout.SOUTH);
+
+            // 关闭窗口与点击取消相同
+            setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    cancel();
+                }
+            });
+
+            setSize(400, 140);
+            setLocationRelativeTo(getOwner());
+        }
+
+        public void setCancelAction(Runnable cancelAction) {
+            this.cancelAction = cancelAction;
+        }
+
+        private void cancel() {
+            statusLabel.setText("正在取消...");
+            if (cancelAction != null) {
+                cancelAction.run();
+            }
+        }
+
+        public void updateProgress(int processed) {
+            progressBar.setString("已比对 " + processed + " 行");
+        }
+    }
+
     /**
      * 高阶搜索对话框类，用于获取用户的搜索字段、关键字和搜索模式。
      */
@@ -1062,7 +1305,7 @@ public class MainView extends JFrame {
             inputPanel.add(keywordField);
 
             inputPanel.add(new JLabel("搜索模式:"));
-            searchModeComboBox = new JComboBox<>(new String[]{"标准搜索", "高阶搜索"});
+            searchModeComboBox = new JComboBox<>(new String[]{"标准搜索", "关键字搜索", "高阶搜索", "编辑距离", "序列比对"});
             inputPanel.add(searchModeComboBox);
 
             add(inputPanel, BorderLayout.CENTER);
@@ -1140,6 +1383,15 @@ public class MainView extends JFrame {
                 if (isAdvancedSearch) {
                     // 执行高阶搜索
                     executeAdvancedSearch(fields, values);
+                } else if ("关键字搜索".equals(searchMode)) {
+                    // 关键字中的每个词必须是列中某个词的开头，该列有按词索引时由索引回答
+                    performSearch(fields, new String[]{SearchIndex.keyword(keyword.trim())});
+                } else if ("编辑距离".equals(searchMode)) {
+                    // 用该列的编辑距离索引查找编辑距离最小的记录，只计算一小部分不同值的距离
+                    executeEditDistanceSearch(fields, new String[]{keyword.trim()});
+                } else if ("序列比对".equals(searchMode)) {
+                    // 关键字是查询序列，与该列的每个序列做局部比对
+                    executeSequenceSearch(fields, new String[]{keyword.trim()});
                 } else {
                     // 执行标准搜索
                     performSearch(fields, values);
@@ -1154,120 +1406,158 @@ public class MainView extends JFrame {
      * 执行高阶搜索，计算相似度并筛选Top 100
      */
     private void executeAdvancedSearch(String[] fieldNames, String[] searchValues) {
-        try {
-            // 执行标准搜索获取初步结果，限制为1000条
-            SelectResult searchResult = operater.selectTopN(currentTable, fieldNames, searchValues, 1000);
-
-            Vector<String> columnNames = searchResult.getColumnNames();
-            Vector<Vector<Object>> dataRows = searchResult.getDataRows();
-
-            if (columnNames.isEmpty() || dataRows.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "没有找到符合条件的记录！", "信息", JOptionPane.INFORMATION_MESSAGE);
-                return;
+        String tableName = currentTable;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        // 第一次查找一列时要先建立三字符组索引，在后台线程中查找，不阻塞界面
+        SwingWorker<FuzzySearch.Result, Void> worker = new SwingWorker<>() {
+            @Override
+            protected FuzzySearch.Result doInBackground() throws Exception {
+                // 假设只搜索第一个字段；第一次查找一列时先为它建立三字符组索引，之后在整张表中查找
+                return operater.fuzzySearch(tableName, fieldNames[0], searchValues[0], 100);
             }
 
-            // 假设只搜索第一个字段
-            String searchField = fieldNames[0];
-            int searchFieldIndex = columnNames.indexOf(searchField);
-            if (searchFieldIndex == -1) {
-                JOptionPane.showMessageDialog(this, "搜索字段不存在！", "错误", JOptionPane.ERROR_MESSAGE);
-                return;
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    FuzzySearch.Result result = get();
+                    if (!result.isIndexed()) {
+                        System.out.println("高阶搜索没有使用三字符组索引，只比较了 LIKE 的前 " + result.getCandidateCount() + " 条结果");
+                    }
+                    showRankedResult(result, "匹配度", "%.2f", fieldNames, searchValues); // 保留两位小数
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainView.this, "高阶查找失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
             }
+        };
+        worker.execute();
+    }
 
-            String searchKeyword = searchValues[0].replace("%", "").toLowerCase();
-
-            // 计算相似度并创建 SimilarRecord 列表
-            List<SimilarRecord> similarRecords = dataRows.parallelStream()
-                    .map(row -> {
-                        String fieldValue = row.get(searchFieldIndex).toString();
-                        double similarity = calculateSimilarity(searchKeyword, fieldValue);
-                        return new SimilarRecord(similarity, row);
-                    })
-                    .collect(Collectors.toList());
-
-            // 对记录按相似度降序排序
-            similarRecords.sort(Comparator.comparingDouble(SimilarRecord::getSimilarity).reversed());
-
-            // 取Top 100
-            List<SimilarRecord> topSimilarRecords = similarRecords.stream().limit(100).collect(Collectors.toList());
-
-            // 准备结果数据，添加相似度分数
-            Vector<Vector<Object>> topDataRows = new Vector<>();
-            for (SimilarRecord record : topSimilarRecords) {
-                Vector<Object> newRow = new Vector<>();
-                newRow.add(String.format("%.2f", record.getSimilarity())); // 保留两位小数
-                newRow.addAll(record.getRow());
-                topDataRows.add(newRow);
+    /**
+     * 执行编辑距离查找，用编辑距离索引找出与关键字编辑距离最小的 Top 100
+     */
+    private void executeEditDistanceSearch(String[] fieldNames, String[] searchValues) {
+        String tableName = currentTable;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        // 第一次查找一列时要先建立编辑距离索引（正在导入时还要等导入完成），在后台线程中查找，不阻塞界面
+        SwingWorker<FuzzySearch.Result, Void> worker = new SwingWorker<>() {
+            @Override
+            protected FuzzySearch.Result doInBackground() throws Exception {
+                long start = System.currentTimeMillis();
+                FuzzySearch.Result result = operater.editDistanceSearch(tableName, fieldNames[0], searchValues[0], 100);
+                System.out.println("编辑距离查找计算了 " + result.getCandidateCount() + " 个不同值的距离，耗时 "
+                        + (System.currentTimeMillis() - start) + " ms");
+                return result;
             }
 
-            // 更新表格显示，添加“匹配度”列
-            updateTableWithDatabaseData(columnNames, topDataRows, true);
-
-            // 更新分页信息
-            currentPage = 1;
-            totalRecords = topDataRows.size();
-            totalPages = 1;
-            updatePageLabel();
-
-            // 设置当前搜索参数
-            currentSearchFields = fieldNames;
-            currentSearchValues = searchValues;
-
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "高阶查找失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-        }
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    showRankedResult(get(), "编辑距离", "%.0f", fieldNames, searchValues);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainView.this, "编辑距离查找失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
+            }
+        };
+        worker.execute();
     }
 
     /**
-     * 内部类用于存储记录及其相似度
+     * 执行序列比对，在整张表中找出与查询序列局部比对得分最高的 Top 100
      */
-    private static class SimilarRecord {
-        private double similarity;
-        private Vector<Object> row;
-
-        public SimilarRecord(double similarity, Vector<Object> row) {
-            this.similarity = similarity;
-            this.row = row;
-        }
+    private void executeSequenceSearch(String[] fieldNames, String[] searchValues) {
+        String tableName = currentTable;
+        SearchProgressDialog progressDialog = new SearchProgressDialog(this, "序列比对", "正在与每一行序列比对，请稍候...");
+        // 比对整张表可能需要较长时间，在后台线程中查找，可以随时取消
+        SwingWorker<FuzzySearch.Result, Integer> worker = new SwingWorker<>() {
+            @Override
+            protected FuzzySearch.Result doInBackground() throws Exception {
+                long start = System.currentTimeMillis();
+                FuzzySearch.Result result = operater.sequenceSearch(tableName, fieldNames[0], searchValues[0], 100,
+                        this::publish);
+                System.out.println("序列比对了 " + result.getCandidateCount() + " 行，耗时 "
+                        + (System.currentTimeMillis() - start) + " ms"
+                        + (SmithWaterman.isVectorized() ? "（向量化）" : "（标量）"));
+                return result;
+            }
 
-        public double getSimilarity() {
-            return similarity;
-        }
+            @Override
+            protected void process(List<Integer> chunks) {
+                progressDialog.updateProgress(chunks.get(chunks.size() - 1));
+            }
 
-        public Vector<Object> getRow() {
-            return row;
-        }
+            @Override
+            protected void done() {
+                progressDialog.dispose();
+                if (isCancelled()) {
+                    System.out.println("序列比对已取消");
+                    return;
+                }
+                try {
+                    showRankedResult(get(), "比对得分", "%.0f", fieldNames, searchValues);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainView.this, "序列比对失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
+            }
+        };
+        progressDialog.setCancelAction(() -> worker.cancel(true)); // 中断后台线程，比对在下一批之前停止
+        worker.execute();
+        progressDialog.setVisible(true);
     }
 
     /**
-     * 计算两个字符串的相似度
+     * 显示按分数排列的查找结果，第一列为分数
      *
-     * @param query  用户输入的搜索关键词
-     * @param target 数据库中的字段值
-     * @return 相似度分数（0.0 - 1.0）
+     * @param result      查找结果
+     * @param scoreColumn 分数列的列名
+     * @param scoreFormat 分数的格式
      */
-    private double calculateSimilarity(String query, String target) {
-        if (query == null || target == null) {
-            return 0.0;
-        }
+    private void showRankedResult(FuzzySearch.Result result, String scoreColumn, String scoreFormat,
+                                  String[] fieldNames, String[] searchValues) {
+        Vector<String> columnNames = result.getColumnNames();
 
-        // 统一小写，去除前后空白
-        query = query.toLowerCase().trim();
-        target = target.toLowerCase().trim();
+        if (columnNames.isEmpty() || result.size() == 0) {
+            JOptionPane.showMessageDialog(this, "没有找到符合条件的记录！", "信息", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
 
-        // 计算Levenshtein距离
-        int levDistance = levenshteinDistance.apply(query, target);
-        int maxLength = Math.max(query.length(), target.length());
-        double levSimilarity = maxLength == 0 ? 1.0 : 1.0 - ((double) levDistance / maxLength);
+        // 准备结果数据，第一列为分数，其余列直接从结果中取值
+        Vector<Vector<Object>> topDataRows = new Vector<>(result.size());
+        for (int i = 0; i < result.size(); i++) {
+            Vector<Object> newRow = new Vector<>(result.getColumnCount() + 1);
+            newRow.add(String.format(scoreFormat, result.getSimilarity(i)));
+            for (int c = 0; c < result.getColumnCount(); c++) {
+                newRow.add(result.getValueAt(i, c));
+            }
+            topDataRows.add(newRow);
+        }
 
-        // 计算Jaro-Winkler相似度
-        double jaroSimilarity = jaroWinklerDistance.apply(query, target);
+        // 更新表格显示，添加分数列
+        updateTableWithDatabaseData(columnNames, topDataRows, scoreColumn);
 
-        // 综合相似度（权重可根据需要调整）
-        double combinedSimilarity = (levSimilarity * 0.5) + (jaroSimilarity * 0.5);
+        // 更新分页信息
+        currentPage = 1;
+        if (pendingCount != null) {
+            pendingCount.cancel(false); // 停止后台进行中的计数
+            pendingCount = null;
+        }
+        countRequest++;
+        setTotalRecords(topDataRows.size(), true);
+        totalPages = 1;
+        updatePageLabel();
 
-        return combinedSimilarity;
+        // 设置当前搜索参数
+        currentSearchFields = fieldNames;
+        currentSearchValues = searchValues;
+        prefetcher.cancel();
+        pager = null;
     }
 
     /**
@@ -1275,16 +1565,16 @@ public class MainView extends JFrame {
      *
      * @param columnNames      列名
      * @param dataRows         数据行
-     * @param isAdvancedSearch 是否为高阶搜索
+     * @param scoreColumn      分数列的列名（高阶搜索、序列比对），为 null 时没有分数列
      */
-    private void updateTableWithDatabaseData(Vector<String> columnNames, Vector<Vector<Object>> dataRows, boolean isAdvancedSearch) {
+    private void updateTableWithDatabaseData(Vector<String> columnNames, Vector<Vector<Object>> dataRows, String scoreColumn) {
         // 清空现有表格
         tableModel.setRowCount(0);
         tableModel.setColumnCount(0);
 
-        // 如果是高阶搜索，添加“匹配度”列
-        if (isAdvancedSearch) {
-            tableModel.addColumn("匹配度");
+        // 如果是高阶搜索或序列比对，添加分数列
+        if (scoreColumn != null) {
+            tableModel.addColumn(scoreColumn);
         }
 
         // 添加数据库表的列名
@@ -1299,6 +1589,6 @@ public class MainView extends JFrame {
     }
 
     private void updateTableWithDatabaseData(Vector<String> columnNames, Vector<Vector<Object>> dataRows) {
-        updateTableWithDatabaseData(columnNames, dataRows, false);  // 默认值为false
+        updateTableWithDatabaseData(columnNames, dataRows, null);  // 默认没有分数列
     }
 }
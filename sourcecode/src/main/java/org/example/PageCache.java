@@ -0,0 +1,176 @@
+package org.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PageCache 类缓存分页查询和前 N 条查询的结果，由 {@link DOperator#getPageCache()} 获取。
+ * <p>
+ * 键由查询（表、查找条件、排序、每页记录数、是否包含 id 列）和页码组成。缓存按估计的内存占用限制大小，
+ * 超出上限时丢弃最近最少使用的页。每一页都记录读取前写连接的归还次数，写连接归还后（插入、批量插入、导入等）
+ * 缓存的页全部失效。
+ * <p>
+ * 缓存的页按列保存（{@link ColumnarResult}），不会被调用方修改：取出时重新建立数据行（表格模型会直接使用并修改传入的行）。
+ */
+public class PageCache {
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024; // 默认的内存占用上限
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // 按访问顺序排列
+    private long maxBytes;
+    private long bytes = 0;
+    private long generation = -1; // 缓存中的页对应的写连接归还次数
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 缓存的一页：数据及其首末行的键（用于从这一页继续按键翻页）。
+     */
+    static final class Entry {
+        private final ColumnarResult result; // 按列保存，比按行保存的 SelectResult 占用的内存少
+        private final KeysetPager.Key firstKey;
+        private final KeysetPager.Key lastKey;
+        private final long bytes;
+
+        Entry(SelectResult result, KeysetPager.Key firstKey, KeysetPager.Key lastKey) {
+            this.result = ColumnarResult.of(result);
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.bytes = this.result.estimateBytes();
+        }
+
+        /**
+         * 页的数据（副本）。
+         */
+        SelectResult getResult() {
+            return result.toSelectResult();
+        }
+
+        KeysetPager.Key getFirstKey() {
+            return firstKey;
+        }
+
+        KeysetPager.Key getLastKey() {
+            return lastKey;
+        }
+    }
+
+    PageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 设置内存占用上限，超出时立即丢弃最近最少使用的页；为 0 时不缓存。
+     *
+     * @param maxBytes 上限（字节）。
+     * @return 当前对象。
+     */
+    public synchronized PageCache setMaxBytes(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        evict();
+        return this;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 缓存页的估计内存占用（字节）。
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 命中率；尚未查找过时为 0。
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * 丢弃所有缓存的页，计数器不变。
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * 查找缓存的页。
+     *
+     * @param key        查询和页码组成的键。
+     * @param generation 当前写连接的归还次数。
+     * @return 缓存的页；没有或已失效时返回 null。
+     */
+    synchronized Entry get(String key, long generation) {
+        if (generation != this.generation) {
+            invalidate(generation);
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 放入一页。
+     *
+     * @param key        查询和页码组成的键。
+     * @param generation 开始读取这一页之前写连接的归还次数；读取期间有写入时不会放入。
+     * @param entry      页。
+     */
+    synchronized void put(String key, long generation, Entry entry) {
+        if (generation != this.generation) {
+            if (generation < this.generation) {
+                return; // 读取期间数据已改变
+            }
+            invalidate(generation);
+        }
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        bytes += entry.bytes;
+        evict();
+    }
+
+    private void invalidate(long generation) {
+        entries.clear();
+        bytes = 0;
+        this.generation = generation;
+    }
+
+    /**
+     * 丢弃最近最少使用的页，直到内存占用不超过上限。
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+}
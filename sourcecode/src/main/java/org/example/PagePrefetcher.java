@@ -0,0 +1,104 @@
+package org.example;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PagePrefetcher 类在显示一页之后，在后台按翻页方向预先读取相邻的几页，放入 {@link DOperator#getPageCache()}。
+ * 之后翻到这些页时分页器直接从页缓存取得数据，不再查询数据库。
+ * <p>
+ * 预读使用分页器的副本，不改变界面使用的分页器。每次预读或 {@link #cancel()} 都会使之前未完成的预读作废，
+ * 表或查找条件改变时应调用 {@link #cancel()}。
+ */
+public class PagePrefetcher {
+    static final int DEFAULT_DEPTH = 2; // 默认沿翻页方向预读的页数
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "page-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger request = new AtomicInteger(); // 预读请求的序号，用于停止过时的预读
+    private volatile int depth = DEFAULT_DEPTH;
+    private Future<?> pending = null; // 未完成的预读
+
+    /**
+     * 设置沿翻页方向预读的页数；为 0 时不预读。反方向始终只预读一页。
+     *
+     * @param depth 页数。
+     * @return 当前对象。
+     */
+    public PagePrefetcher setDepth(int depth) {
+        this.depth = Math.max(0, depth);
+        return this;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 从分页器的当前页开始预读相邻的页。
+     *
+     * @param pager     刚读取过一页的分页器；预读使用它的副本。
+     * @param direction 翻页方向：大于等于 0 为向后（下一页），小于 0 为向前。
+     * @param lastPage  最后一页的页码，不预读之后的页；不确定时可以传入 Integer.MAX_VALUE。
+     */
+    public synchronized void prefetch(KeysetPager pager, int direction, int lastPage) {
+        cancel();
+        if (pager.getPageNumber() < 1) {
+            return;
+        }
+        int id = request.get();
+        KeysetPager forward = pager.copy();
+        KeysetPager backward = pager.copy();
+        int ahead = depth;
+        pending = executor.submit(() -> {
+            try {
+                if (direction >= 0) {
+                    walk(id, forward, ahead, 1, lastPage);
+                    walk(id, backward, Math.min(ahead, 1), -1, lastPage);
+                } else {
+                    walk(id, backward, ahead, -1, lastPage);
+                    walk(id, forward, Math.min(ahead, 1), 1, lastPage);
+                }
+            } catch (SQLException e) {
+                System.err.println("预读相邻页失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 停止未完成的预读，已读取的页仍留在页缓存中。
+     */
+    public synchronized void cancel() {
+        request.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * 用分页器沿一个方向读取若干页，每读一页前检查预读是否已作废。
+     */
+    private void walk(int id, KeysetPager pager, int pages, int step, int lastPage) throws SQLException {
+        for (int i = 0; i < pages; i++) {
+            int page = pager.getPageNumber();
+            if (request.get() != id || page + step < 1 || page + step > lastPage) {
+                return;
+            }
+            if (step > 0) {
+                pager.next();
+            } else {
+                pager.previous();
+            }
+            if (pager.getPageNumber() == page) {
+                return; // 已到第一页或最后一页
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * RowCounter 类提供表和模糊查找结果的记录数，由 {@link DOperator#getRowCounter()} 获取。
+ * <p>
+ * 表的精确记录数保存在 {@value #TABLE} 表中：程序自己的插入在同一个事务中累加，
+ * 其他程序的删除由每张表上的 AFTER DELETE 触发器扣减；同时记录最大 id，读取时如果表中的最大 id 更大，
+ * 说明有其他程序插入了数据，记录数作废并重新计数。记录从写入时开始：{@link DOperator#createTable} 新建的表
+ * 和批量导入（{@link BulkLoader}）创建的表在创建的事务中开始记录。读取记录数只使用只读连接，不会写数据库。
+ * <p>
+ * 没有记录的表（例如其他程序创建的表）和查找结果的记录数计数后按 (表, 字段, 查找内容) 缓存在内存中，有写入之后失效。
+ * <p>
+ * 计数按 id 分段进行（每段 {@value #SLICE_IDS} 个 id），每段都是按主键的范围扫描，
+ * 因此可以在限定的时间内先给出“至少 N 条”和按已扫描比例推算的近似值（{@link #estimate}），
+ * 精确计数在后台完成（{@link #countAsync}），也可以随时取消。
+ */
+public class RowCounter {
+    static final String TABLE = "__row_counts"; // 保存表记录数的表
+    private static final String TRIGGER_PREFIX = "__row_counts_delete_"; // 删除触发器名的前缀
+    static final long SLICE_IDS = 65536; // 分段计数时每段的 id 数
+    private static final int MAX_CACHED_COUNTS = 64; // 内存中缓存的记录数上限
+
+    private final DOperator operator;
+    private final Map<String, CachedCount> cachedCounts = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedCount>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+                    return size() > MAX_CACHED_COUNTS;
+                }
+            });
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "row-counter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 记录数的估计值。
+     */
+    public static final class Estimate {
+        private final long count;
+        private final long approximate;
+        private final boolean exact;
+
+        Estimate(long count, long approximate, boolean exact) {
+            this.count = count;
+            this.approximate = approximate;
+            this.exact = exact;
+        }
+
+        /**
+         * 精确的记录数，或者未完成计数时已确定的下限（“至少 N 条”）。
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 按已扫描的 id 范围比例推算的近似记录数；精确时与 {@link #getCount()} 相同。
+         */
+        public long getApproximate() {
+            return approximate;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+    }
+
+    private static final class CachedCount {
+        final long generation;
+        final long count;
+
+        CachedCount(long generation, long count) {
+            this.generation = generation;
+            this.count = count;
+        }
+    }
+
+    RowCounter(DOperator operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * 获取表的精确记录数。
+     *
+     * @param tableName 表名。
+     * @return 记录数。
+     * @throws SQLException 如果查询失败。
+     */
+    public long count(String tableName) throws SQLException {
+        return count(tableName, null, null);
+    }
+
+    /**
+     * 获取模糊查找结果的精确记录数；没有查找条件时返回表的记录数。
+     *
+     * @param tableName    表名。
+     * @param fieldNames   要匹配的字段名数组。
+     * @param searchValues 与字段名对应的查找内容数组（LIKE 模式或按词查找）。
+     * @return 记录数。
+     * @throws SQLException 如果查询失败。
+     */
+    public long count(String tableName, String[] fieldNames, String[] searchValues) throws SQLException {
+        return estimate(tableName, fieldNames, searchValues, () -> false).getCount();
+    }
+
+    /**
+     * 在限定的时间内估计记录数。已知精确值（记录的表记录数或内存中缓存的记录数）时直接返回，
+     * 否则按 id 分段计数，到时间后返回已确定的下限和推算的近似值。
+     *
+     * @param tableName    表名。
+     * @param fieldNames   要匹配的字段名数组。
+     * @param searchValues 与字段名对应的查找内容数组（LIKE 模式或按词查找）。
+     * @param budgetMillis 最长计数时间（毫秒），至少计数一段。
+     * @return 估计值。
+     * @throws SQLException 如果查询失败。
+     */
+    public Estimate estimate(String tableName, String[] fieldNames, String[] searchValues, long budgetMillis)
+            throws SQLException {
+        long deadline = System.nanoTime() + Math.min(budgetMillis, Long.MAX_VALUE / 2_000_000L) * 1_000_000L;
+        return estimate(tableName, fieldNames, searchValues, () -> System.nanoTime() > deadline);
+    }
+
+    /**
+     * 在后台线程中计算精确记录数。取消返回的 future 会在当前分段结束后停止计数。
+     *
+     * @param tableName    表名。
+     * @param fieldNames   要匹配的字段名数组。
+     * @param searchValues 与字段名对应的查找内容数组（LIKE 模式或按词查找）。
+     * @return 记录数的 future；被取消时不会完成。
+     */
+    public CompletableFuture<Long> countAsync(String tableName, String[] fieldNames, String[] searchValues) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                Estimate result = estimate(tableName, fieldNames, searchValues, future::isDone);
+                if (result.isExact()) {
+                    future.complete(result.getCount());
+                }
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private Estimate estimate(String tableName, String[] fieldNames, String[] searchValues,
+                              BooleanSupplier stop) throws SQLException {
+        boolean hasSearch = fieldNames != null && searchValues != null &&
+                fieldNames.length > 0 && searchValues.length > 0 &&
+                fieldNames.length == searchValues.length;
+        long generation = operator.getConnectionManager().getWriteGeneration();
+
+        // 表的记录数以表名为键，查找结果再加上字段和查找内容
+        StringBuilder sb = new StringBuilder(tableName);
+        if (hasSearch) {
+            for (int i = 0; i < fieldNames.length; i++) {
+                sb.append('\0').append(fieldNames[i]).append('\0').append(searchValues[i]);
+            }
+        }
+        String key = sb.toString();
+        CachedCount cached = cachedCounts.get(key);
+        if (cached != null && cached.generation == generation) {
+            return new Estimate(cached.count, cached.count, true);
+        }
+        if (!hasSearch) {
+            try (ConnectionManager.Lease lease = operator.readLease()) {
+                Long tracked = readTracked(lease.connection(), tableName);
+                if (tracked != null) {
+                    return new Estimate(tracked, tracked, true);
+                }
+            }
+        }
+
+        Estimate result = countSlices(tableName, hasSearch ? fieldNames : null, searchValues, stop);
+        if (result.isExact()) {
+            cachedCounts.put(key, new CachedCount(generation, result.getCount()));
+        }
+        return result;
+    }
+
+    /**
+     * 按 id 分段计数，直到完成或 stop 返回 true。
+     */
+    private Estimate countSlices(String tableName, String[] fieldNames, String[] searchValues,
+                                 BooleanSupplier stop) throws SQLException {
+        String table = operator.escapeColumnName(tableName);
+        try (ConnectionManager.Lease lease = operator.readLease()) {
+            Connection conn = lease.connection();
+            // 查找条件（有全文索引时使用索引）的参数在 id 范围之后
+            StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM ").append(table).append(" WHERE id >= ? AND id < ?");
+            List<Object> params = new ArrayList<>();
+            long sliceIds = SLICE_IDS;
+            if (fieldNames != null) {
+                for (int i = 0; i < fieldNames.length; i++) {
+                    sql.append(" AND ").append(operator.searchCondition(conn, tableName, fieldNames[i], searchValues[i], params));
+                    if (operator.searchIndexFor(conn, tableName, fieldNames[i], searchValues[i]) != null) {
+                        sliceIds = Long.MAX_VALUE / 2; // 使用全文索引时每段都要重新查索引，一次计数完成
+                    }
+                }
+            }
+            long minId;
+            long maxId;
+            try (PreparedStatement pstmt = conn.prepareStatement( // 分开查询才能各自直接读取主键的两端
+                    "SELECT (SELECT MIN(id) FROM " + table + "), (SELECT MAX(id) FROM " + table + ");");
+                 ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getObject(1) == null) {
+                    return new Estimate(0, 0, true); // 空表
+                }
+                minId = rs.getLong(1);
+                maxId = rs.getLong(2);
+            }
+
+            long count = 0;
+            long next = minId;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                while (next <= maxId) {
+                    long end = Math.min(maxId + 1, next + sliceIds);
+                    pstmt.setLong(1, next);
+                    pstmt.setLong(2, end);
+                    for (int i = 0; i < params.size(); i++) {
+                        pstmt.setObject(i + 3, params.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        count += rs.next() ? rs.getLong(1) : 0;
+                    }
+                    next = end;
+                    if (next <= maxId && stop.getAsBoolean()) {
+                        double scanned = (double) (next - minId) / (maxId - minId + 1);
+                        return new Estimate(count, Math.round(count / scanned), false);
+                    }
+                }
+            }
+            return new Estimate(count, count, true);
+        }
+    }
+
+    /**
+     * 读取表记录数表中有效的记录数。
+     *
+     * @return 记录数；没有记录、删除触发器不存在或有其他程序插入过数据时返回 null。
+     */
+    Long readTracked(Connection conn, String tableName) throws SQLException {
+        if (!tableExists(conn, TABLE) || !triggerExists(conn, tableName)) {
+            return null;
+        }
+        long count;
+        long trackedMaxId;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT row_count, max_id FROM " + TABLE + " WHERE table_name = ?;")) {
+            pstmt.setString(1, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                count = rs.getLong(1);
+                trackedMaxId = rs.getLong(2);
+            }
+        }
+        return maxId(conn, tableName) <= trackedMaxId ? count : null;
+    }
+
+    /**
+     * 在事务中写入表的记录数并创建删除触发器，不负责提交。用于新建的表或已计数的表。
+     *
+     * @param conn      写连接。
+     * @param tableName 表名。
+     * @param count     表的记录数。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    void track(Connection conn, String tableName, long count) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("CREATE TABLE IF NOT EXISTS " + TABLE
+                + " (table_name TEXT PRIMARY KEY, row_count INTEGER NOT NULL, max_id INTEGER NOT NULL);")) {
+            pstmt.execute();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT OR REPLACE INTO " + TABLE + " (table_name, row_count, max_id) VALUES (?, ?, ?);")) {
+            pstmt.setString(1, tableName);
+            pstmt.setLong(2, count);
+            pstmt.setLong(3, maxId(conn, tableName));
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("CREATE TRIGGER IF NOT EXISTS " + triggerName(tableName)
+                + " AFTER DELETE ON " + operator.escapeColumnName(tableName) + " BEGIN UPDATE " + TABLE
+                + " SET row_count = row_count - 1 WHERE table_name = " + quote(tableName) + "; END;")) {
+            pstmt.execute();
+        }
+    }
+
+    /**
+     * 在插入数据的事务中累加表的记录数并更新最大 id，不负责提交。表的记录数尚未开始记录时不做任何事。
+     *
+     * @param conn      写连接。
+     * @param tableName 表名。
+     * @param rows      插入的行数。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    void added(Connection conn, String tableName, long rows) throws SQLException {
+        if (rows == 0 || !tableExists(conn, TABLE)) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE " + TABLE
+                + " SET row_count = row_count + ?, max_id = MAX(max_id, (SELECT COALESCE(MAX(id), 0) FROM "
+                + operator.escapeColumnName(tableName) + ")) WHERE table_name = ?;")) {
+            pstmt.setLong(1, rows);
+            pstmt.setString(2, tableName);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 判断表的记录数是否已开始记录。
+     */
+    boolean isTracked(Connection conn, String tableName) throws SQLException {
+        return readTracked(conn, tableName) != null;
+    }
+
+    /**
+     * 丢弃内存中缓存的记录数。
+     */
+    void clear() {
+        cachedCounts.clear();
+    }
+
+    private long maxId(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT COALESCE(MAX(id), 0) FROM " + operator.escapeColumnName(tableName) + ";");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static boolean triggerExists(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'trigger' AND name = ? AND tbl_name = ?;")) {
+            pstmt.setString(1, TRIGGER_PREFIX + tableName);
+            pstmt.setString(2, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    static boolean tableExists(Connection conn, String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?;")) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static String triggerName(String tableName) {
+        return "\"" + (TRIGGER_PREFIX + tableName).replace("\"", "\"\"") + "\"";
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
@@ -0,0 +1,149 @@
+package org.example;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * RowCursor 类逐行读取一次查询的结果，由 {@link DOperator#openCursor} 创建。
+ * <p>
+ * 结果集保持打开，每次只保留当前行，适合导出、相似度计算等需要处理大量行的场合，内存占用与结果行数无关。
+ * 游标占用一个只读连接，直到关闭为止；应在 try-with-resources 中使用并尽快关闭。
+ * <pre>
+ * try (RowCursor cursor = operator.openCursor(table, fields, values, false, 0)) {
+ *     while (cursor.next()) {
+ *         Object[] row = cursor.getRow();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 游标不是线程安全的。
+ */
+public class RowCursor implements AutoCloseable {
+    static final int DEFAULT_FETCH_SIZE = 1000; // 每次从数据库取出的行数
+
+    private final ConnectionManager.Lease lease;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final Vector<String> columnNames = new Vector<>();
+    private final int[] columns; // 输出的列在结果集中的序号
+    private Object[] row = null; // 当前行
+    private long rowCount = 0; // 已读取的行数
+    private boolean closed = false;
+
+    /**
+     * 构造方法。执行语句并接管租约、语句和结果集，构造失败时全部关闭。
+     *
+     * @param lease     只读连接租约。
+     * @param statement 已绑定参数的查询语句。
+     * @param includeId 是否输出 id 列。
+     * @throws SQLException 如果查询失败。
+     */
+    RowCursor(ConnectionManager.Lease lease, PreparedStatement statement, boolean includeId) throws SQLException {
+        this.lease = lease;
+        this.statement = statement;
+        try {
+            statement.setFetchSize(DEFAULT_FETCH_SIZE);
+            this.resultSet = statement.executeQuery();
+            ResultSetMetaData meta = resultSet.getMetaData();
+            int columnCount = meta.getColumnCount();
+            int[] output = new int[columnCount];
+            int n = 0;
+            for (int i = 1; i <= columnCount; i++) {
+                String name = meta.getColumnName(i);
+                if (includeId || !name.equalsIgnoreCase("id")) {
+                    output[n++] = i;
+                    columnNames.add(name);
+                }
+            }
+            this.columns = Arrays.copyOf(output, n);
+        } catch (SQLException e) {
+            statement.close();
+            lease.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 结果的列名。
+     */
+    public Vector<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * 移到下一行。没有更多行时自动关闭游标。
+     *
+     * @return 是否还有行。
+     * @throws SQLException 如果读取失败。
+     */
+    public boolean next() throws SQLException {
+        if (closed) {
+            return false;
+        }
+        if (!resultSet.next()) {
+            close();
+            return false;
+        }
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = resultSet.getObject(columns[i]);
+        }
+        row = values;
+        rowCount++;
+        return true;
+    }
+
+    /**
+     * 当前行，按 {@link #getColumnNames()} 的顺序排列。每一行都是新数组，调用方可以保留。
+     */
+    public Object[] getRow() {
+        return row;
+    }
+
+    /**
+     * 已读取的行数。
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 把剩余的行全部读入 {@link SelectResult}。
+     *
+     * @return 列名和数据行。
+     * @throws SQLException 如果读取失败。
+     */
+    public SelectResult toSelectResult() throws SQLException {
+        Vector<Vector<Object>> dataRows = new Vector<>();
+        while (next()) {
+            Vector<Object> values = new Vector<>(row.length);
+            for (Object value : row) {
+                values.add(value);
+            }
+            dataRows.add(values);
+        }
+        return new SelectResult(columnNames, dataRows);
+    }
+
+    /**
+     * 关闭结果集并归还连接。可以重复调用。
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        row = null;
+        try {
+            resultSet.close();
+            statement.close();
+        } finally {
+            lease.close();
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * SearchIndex 类表示表中一列的全文索引，由 {@link DOperator#createSearchIndex} 创建。
+ * <p>
+ * 索引是 SQLite FTS5 的外部内容表（content=表名, content_rowid=id）：只保存索引，不重复保存数据，
+ * 由表上的触发器在插入、删除和更新时同步。索引登记在 {@value #REGISTRY} 表中。
+ * <p>
+ * 两种索引回答不同的查找，查找结果不会因为建立了索引而改变：
+ * <ul>
+ * <li>{@link Type#TRIGRAM} 索引按三字符组匹配，回答 LIKE 模式的子串查找（例如“4331_MAI”），结果与 LIKE 完全相同，
+ * 但模式中至少要有一段连续三个字符不含通配符。{@link #condition} 用索引找出候选行，候选行再用原来的 LIKE 核对。</li>
+ * <li>{@link Type#TOKEN} 索引按词匹配，只回答由 {@link #keyword} 生成的按词查找：关键字中的每个词必须是列中某个词的开头，
+ * 例如“kinase”可以找到“Serine/threonine-kinase”，但“inase”找不到。LIKE 模式从不使用按词索引。</li>
+ * </ul>
+ */
+public class SearchIndex {
+    static final String REGISTRY = "__search_indexes"; // 登记全文索引的表
+    static final String PREFIX = "__fts_"; // 索引表（及 FTS5 的影子表）和触发器名的前缀
+    private static final double MAX_CANDIDATE_FRACTION = 0.1; // 候选行超过表的这一比例时扫描表更快
+    private static final int MAX_CACHED_ESTIMATES = 64; // 每个索引缓存的候选行估计数上限
+    private static final char KEYWORD_MARKER = '\u0001'; // 按词查找的查找内容以此字符开头，与 LIKE 模式区分
+
+    /**
+     * 全文索引的类型。
+     */
+    public enum Type {
+        /**
+         * 按词索引（unicode61 分词，不区分大小写），回答关键字查找。
+         */
+        TOKEN("unicode61", "full"),
+        /**
+         * 三字符组索引（不区分大小写），回答子串查找。不保存位置信息（detail=none），索引约小一半，
+         * 由 FTS5 读取数据核对候选行。
+         */
+        TRIGRAM("trigram", "none");
+
+        private final String tokenizer;
+        private final String detail;
+
+        Type(String tokenizer, String detail) {
+            this.tokenizer = tokenizer;
+            this.detail = detail;
+        }
+    }
+
+    private final String indexName;
+    private final String tableName;
+    private final String columnName;
+    private final Type type;
+    private final Map<String, Boolean> selective = new ConcurrentHashMap<>(); // 按模式缓存的候选行估计结果
+
+    private SearchIndex(String indexName, String tableName, String columnName, Type type) {
+        this.indexName = indexName;
+        this.tableName = tableName;
+        this.columnName = columnName;
+        this.type = type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * 生成按词查找的查找内容，可以与 LIKE 模式一样传给 {@link DOperator#select}、{@link DOperator#pager} 等方法。
+     * 关键字中的每个词必须是列中某个词的开头（不区分大小写）。列有按词索引时由索引回答；
+     * 否则退回到每个词的子串匹配（LIKE '%词%'），结果可能多于按词匹配。
+     *
+     * @param words 关键字，可以包含多个词。
+     * @return 查找内容。
+     */
+    public static String keyword(String words) {
+        return KEYWORD_MARKER + words;
+    }
+
+    /**
+     * 判断查找内容是否是 {@link #keyword} 生成的按词查找（否则是 LIKE 模式）。
+     */
+    static boolean isKeyword(String value) {
+        return !value.isEmpty() && value.charAt(0) == KEYWORD_MARKER;
+    }
+
+    /**
+     * 取出按词查找中的各个词：连续的字母和数字组成一个词，其余字符都是分隔符（与 unicode61 分词一致）。
+     *
+     * @param value {@link #keyword} 生成的查找内容。
+     * @return 各个词；没有任何词时为空列表。
+     */
+    static List<String> keywordWords(String value) {
+        List<String> words = new ArrayList<>();
+        int i = 1; // 跳过标记字符
+        while (i < value.length()) {
+            int cp = value.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            int j = i;
+            while (j < value.length() && Character.isLetterOrDigit(value.codePointAt(j))) {
+                j += Character.charCount(value.codePointAt(j));
+            }
+            words.add(value.substring(i, j));
+            i = j;
+        }
+        return words;
+    }
+
+    /**
+     * 判断查找内容能否由索引回答：三字符组索引只回答 LIKE 模式，按词索引只回答按词查找。
+     */
+    boolean canAnswer(String value) {
+        if (isKeyword(value)) {
+            return type == Type.TOKEN && !keywordWords(value).isEmpty();
+        }
+        return type == Type.TRIGRAM && longestLiteral(value) >= 3;
+    }
+
+    /**
+     * 判断三字符组索引对 LIKE 模式是否足够有选择性：模式中至少有一个三字符组所在的行数不超过表的
+     * {@value #MAX_CANDIDATE_FRACTION}，否则核对大量候选行比直接扫描表更慢。行数从索引的词表读取。
+     * 结果按模式缓存，索引对象在写连接归还后重新创建。
+     *
+     * @param operator 数据库操作对象，用于转义名称。
+     * @param conn     执行查询的连接。
+     * @param pattern  LIKE 模式，必须能由索引回答（{@link #canAnswer}）。
+     * @return 使用索引更快时返回 true。
+     * @throws SQLException 如果查询失败。
+     */
+    boolean isSelective(DOperator operator, Connection conn, String pattern) throws SQLException {
+        if (type != Type.TRIGRAM) {
+            return true;
+        }
+        Boolean cached = selective.get(pattern);
+        if (cached != null) {
+            return cached;
+        }
+
+        long maxCandidates;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT COALESCE(MAX(id), 0) FROM " + operator.escapeColumnName(tableName) + ";");
+             ResultSet rs = pstmt.executeQuery()) {
+            maxCandidates = (long) ((rs.next() ? rs.getLong(1) : 0) * MAX_CANDIDATE_FRACTION);
+        }
+        boolean result = false;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT doc FROM " + quote(indexName + "_vocab") + " WHERE term = ?;")) {
+            for (String trigram : trigrams(pattern)) {
+                pstmt.setString(1, trigram);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next() || rs.getLong(1) <= maxCandidates) {
+                        result = true; // 没有这个三字符组（没有候选行）或候选行足够少
+                        break;
+                    }
+                }
+            }
+        }
+        if (selective.size() >= MAX_CACHED_ESTIMATES) {
+            selective.clear();
+        }
+        selective.put(pattern, result);
+        return result;
+    }
+
+    /**
+     * 取出 LIKE 模式中不含通配符的各段文字的所有三字符组（转为小写，与不区分大小写的 trigram 分词一致）。
+     */
+    static Set<String> trigrams(String pattern) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String literal : pattern.split("[%_]")) {
+            int[] cps = literal.toLowerCase(Locale.ROOT).codePoints().toArray();
+            for (int i = 0; i + 3 <= cps.length; i++) {
+                result.add(new String(cps, i, 3));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 三字符组索引中含有一个三字符组的行数，从索引的词表读取。
+     *
+     * @param conn    执行查询的连接。
+     * @param trigram 三字符组（小写）。
+     * @return 行数；没有这个三字符组时为 0。
+     * @throws SQLException 如果查询失败。
+     */
+    long documentFrequency(Connection conn, String trigram) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT doc FROM " + quote(indexName + "_vocab") + " WHERE term = ?;")) {
+            pstmt.setString(1, trigram);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * 逐个读取三字符组索引中含有一个三字符组的行的 id（即倒排表）。
+     *
+     * @param conn    执行查询的连接。
+     * @param trigram 三字符组（小写）。
+     * @param action  对每个 id 执行的操作。
+     * @throws SQLException 如果查询失败。
+     */
+    void forEachRow(Connection conn, String trigram, LongConsumer action) throws SQLException {
+        String index = quote(indexName);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT rowid FROM " + index + " WHERE " + index + " MATCH ?;")) {
+            pstmt.setString(1, "\"" + trigram.replace("\"", "\"\"") + "\"");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(rs.getLong(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成使用索引的条件，并把参数追加到参数列表。
+     * 对 LIKE 模式，条件只选出候选行，调用方仍需用 LIKE 核对；对按词查找，条件就是查找结果。
+     *
+     * @param value 查找内容，必须能由索引回答（{@link #canAnswer}）。
+     * @param params 参数列表。
+     * @return 形如 "id IN (...)" 的条件。
+     */
+    String condition(String value, List<Object> params) {
+        String index = quote(indexName);
+        if (type == Type.TRIGRAM) {
+            // 三字符组索引直接回答 LIKE：取模式中各段文字的三字符组求交集，再核对
+            params.add(value);
+            return "id IN (SELECT rowid FROM " + index + " WHERE " + index + "." + quote(columnName) + " LIKE ?)";
+        }
+        params.add(matchQuery(keywordWords(value)));
+        return "id IN (SELECT rowid FROM " + index + " WHERE " + index + " MATCH ?)";
+    }
+
+    /**
+     * 计算 LIKE 模式中不含通配符（% 和 _）的最长一段的字符数。
+     */
+    private static int longestLiteral(String pattern) {
+        int longest = 0;
+        int run = 0;
+        for (int i = 0; i < pattern.length(); ) {
+            int cp = pattern.codePointAt(i);
+            run = cp == '%' || cp == '_' ? 0 : run + 1;
+            longest = Math.max(longest, run);
+            i += Character.charCount(cp);
+        }
+        return longest;
+    }
+
+    /**
+     * 把按词查找的各个词转换为 FTS5 的 MATCH 查询：每个词作为词前缀查询，各词之间为 AND。
+     */
+    private static String matchQuery(List<String> words) {
+        StringBuilder query = new StringBuilder();
+        for (String word : words) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append('"').append(word).append("\"*");
+        }
+        return query.toString();
+    }
+
+    /**
+     * 在事务中为表的一列创建全文索引（已存在时不做任何事），为已有数据建立索引并创建同步触发器，不负责提交。
+     *
+     * @param operator   数据库操作对象，用于转义名称。
+     * @param conn       写连接。
+     * @param tableName  表名。
+     * @param columnName 列名。
+     * @param type       索引类型。
+     * @return 索引。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    static SearchIndex create(DOperator operator, Connection conn, String tableName, String columnName, Type type)
+            throws SQLException {
+        for (SearchIndex index : read(conn, tableName)) {
+            if (index.columnName.equalsIgnoreCase(columnName) && index.type == type) {
+                return index;
+            }
+        }
+        // 登记了但触发器已不存在（例如表被其他程序删除后重建）的旧索引先删除
+        drop(conn, tableName, columnName, type);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + REGISTRY + " (index_name TEXT PRIMARY KEY,"
+                    + " table_name TEXT NOT NULL, column_name TEXT NOT NULL, type TEXT NOT NULL);");
+        }
+        String indexName;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(rowid), 0) + 1 FROM " + REGISTRY + ";")) {
+            rs.next();
+            indexName = PREFIX + rs.getLong(1);
+        }
+        SearchIndex index = new SearchIndex(indexName, tableName, columnName, type);
+
+        long start = System.nanoTime();
+        String idx = quote(indexName);
+        String table = operator.escapeColumnName(tableName);
+        String column = quote(columnName);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE VIRTUAL TABLE " + idx + " USING fts5(" + column + ", content=" + quoteLiteral(tableName)
+                    + ", content_rowid='id', tokenize=" + quoteLiteral(type.tokenizer)
+                    + ", detail=" + quoteLiteral(type.detail) + ");");
+            stmt.execute("INSERT INTO " + idx + " (" + idx + ") VALUES ('rebuild');"); // 一次性为已有数据建立索引
+            if (type == Type.TRIGRAM) { // 词表，用于估计候选行数
+                stmt.execute("CREATE VIRTUAL TABLE " + quote(indexName + "_vocab") + " USING fts5vocab("
+                        + quoteLiteral(indexName) + ", 'row');");
+            }
+            stmt.execute("CREATE TRIGGER " + quote(indexName + "_ai") + " AFTER INSERT ON " + table + " BEGIN"
+                    + " INSERT INTO " + idx + " (rowid, " + column + ") VALUES (new.id, new." + column + "); END;");
+            stmt.execute("CREATE TRIGGER " + quote(indexName + "_ad") + " AFTER DELETE ON " + table + " BEGIN"
+                    + " INSERT INTO " + idx + " (" + idx + ", rowid, " + column + ")"
+                    + " VALUES ('delete', old.id, old." + column + "); END;");
+            stmt.execute("CREATE TRIGGER " + quote(indexName + "_au") + " AFTER UPDATE OF id, " + column
+                    + " ON " + table + " BEGIN"
+                    + " INSERT INTO " + idx + " (" + idx + ", rowid, " + column + ")"
+                    + " VALUES ('delete', old.id, old." + column + ");"
+                    + " INSERT INTO " + idx + " (rowid, " + column + ") VALUES (new.id, new." + column + "); END;");
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO " + REGISTRY
+                + " (index_name, table_name, column_name, type) VALUES (?, ?, ?, ?);")) {
+            pstmt.setString(1, indexName);
+            pstmt.setString(2, tableName);
+            pstmt.setString(3, columnName);
+            pstmt.setString(4, type.name());
+            pstmt.executeUpdate();
+        }
+        System.out.println(String.format("为表 '%s' 的列 '%s' 创建 %s 全文索引，用时 %.2f 秒。",
+                tableName, columnName, type, (System.nanoTime() - start) / 1e9));
+        return index;
+    }
+
+    /**
+     * 在事务中删除表中一列的全文索引及其触发器，不负责提交。索引不存在时不做任何事。
+     *
+     * @param conn       写连接。
+     * @param tableName  表名。
+     * @param columnName 列名。
+     * @param type       索引类型。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    static void drop(Connection conn, String tableName, String columnName, Type type) throws SQLException {
+        if (!registryExists(conn)) {
+            return;
+        }
+        List<String> indexNames = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT index_name FROM " + REGISTRY
+                + " WHERE table_name = ? AND column_name = ? COLLATE NOCASE AND type = ?;")) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, columnName);
+            pstmt.setString(3, type.name());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    indexNames.add(rs.getString(1));
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String indexName : indexNames) {
+                for (String suffix : new String[]{"_ai", "_ad", "_au"}) {
+                    stmt.execute("DROP TRIGGER IF EXISTS " + quote(indexName + suffix) + ";");
+                }
+                stmt.execute("DROP TABLE IF EXISTS " + quote(indexName + "_vocab") + ";");
+                stmt.execute("DROP TABLE IF EXISTS " + quote(indexName) + ";");
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + REGISTRY + " WHERE index_name = ?;")) {
+            for (String indexName : indexNames) {
+                pstmt.setString(1, indexName);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * 读取表上有效的全文索引（同步触发器仍然存在）。
+     *
+     * @param conn      数据库连接。
+     * @param tableName 表名。
+     * @return 索引列表。
+     * @throws SQLException 如果查询失败。
+     */
+    static List<SearchIndex> read(Connection conn, String tableName) throws SQLException {
+        List<SearchIndex> indexes = new ArrayList<>();
+        if (!registryExists(conn)) {
+            return indexes;
+        }
+        String sql = "SELECT r.index_name, r.column_name, r.type FROM " + REGISTRY + " r"
+                + " WHERE r.table_name = ? AND EXISTS (SELECT 1 FROM sqlite_master m WHERE m.type = 'trigger'"
+                + " AND m.name = r.index_name || '_ai' AND m.tbl_name = r.table_name) ORDER BY r.rowid;";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Type type;
+                    try {
+                        type = Type.valueOf(rs.getString(3));
+                    } catch (IllegalArgumentException e) {
+                        continue; // 不认识的索引类型
+                    }
+                    indexes.add(new SearchIndex(rs.getString(1), tableName, rs.getString(2), type));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static boolean registryExists(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?;")) {
+            pstmt.setString(1, REGISTRY);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String quoteLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
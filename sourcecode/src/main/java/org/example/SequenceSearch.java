@@ -0,0 +1,118 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * SequenceSearch 类实现蛋白质序列比对查找，由 {@link DOperator#sequenceSearch} 调用。
+ * <p>
+ * 逐行读取整张表的 id 和序列列，每读满 {@value #BATCH_SIZE} 行就在所有 CPU 核上并行计算这一批与查询序列的
+ * Smith-Waterman 局部比对得分（{@link SmithWaterman}，JVM 启用了 jdk.incubator.vector 模块时使用向量化的实现），
+ * 由 {@link TopK} 保留得分最高的若干个 id，最后只按 id 读取入选行的所有列。内存占用只与批大小和结果数有关。
+ * 每算完一批报告一次已比对的行数；线程被中断时在下一批之前停止。
+ * <p>
+ * 结果使用 {@link FuzzySearch.Result}，其中的相似度是比对得分。
+ */
+public class SequenceSearch {
+    static final int BATCH_SIZE = 4096; // 每批并行计算的行数
+
+    private final DOperator operator;
+
+    /**
+     * 一个线程的计算状态：比对对象保存了计算用的数组，不能跨线程共享。
+     */
+    private static final class Partial {
+        final SmithWaterman aligner;
+        final TopK top;
+
+        Partial(String query, int gapOpen, int gapExtend, int limit) {
+            this.aligner = SmithWaterman.forQuery(query, gapOpen, gapExtend);
+            this.top = new TopK(limit);
+        }
+
+        Partial merge(Partial other) {
+            top.merge(other.top);
+            return this;
+        }
+    }
+
+    SequenceSearch(DOperator operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * 查找与查询序列局部比对得分最高的记录。
+     *
+     * @param tableName  表名。
+     * @param columnName 序列所在的列名。
+     * @param query      查询序列（单字母氨基酸代码，空白被忽略）。
+     * @param gapOpen    空位开启罚分。
+     * @param gapExtend  空位延伸罚分。
+     * @param limit      返回的记录数上限。
+     * @param progress   每算完一批时接收已比对的行数，可以为 null。
+     * @return 按比对得分从高到低排列的结果；得分为 0（没有任何相似片段）的行不出现在结果中。
+     * @throws SQLException          如果查询失败。
+     * @throws CancellationException 如果调用线程在查找期间被中断（中断状态保留）。
+     */
+    FuzzySearch.Result search(String tableName, String columnName, String query, int gapOpen, int gapExtend,
+                              int limit, IntConsumer progress) throws SQLException {
+        TopK top = new TopK(limit);
+        int scanned = 0;
+        if (SmithWaterman.encode(query).length > 0) {
+            long[] ids = new long[BATCH_SIZE];
+            String[] sequences = new String[BATCH_SIZE];
+            try (ConnectionManager.Lease lease = operator.readLease()) {
+                Connection conn = lease.connection();
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT id, "
+                        + operator.escapeColumnName(columnName) + " FROM "
+                        + operator.escapeColumnName(tableName) + ";");
+                     ResultSet rs = pstmt.executeQuery()) {
+                    int n = 0;
+                    while (rs.next()) {
+                        ids[n] = rs.getLong(1);
+                        sequences[n] = rs.getString(2);
+                        if (++n == BATCH_SIZE) {
+                            scoreBatch(top, ids, sequences, n, query, gapOpen, gapExtend, limit);
+                            scanned += n;
+                            n = 0;
+                            if (Thread.currentThread().isInterrupted()) {
+                                throw new CancellationException("序列比对已取消");
+                            }
+                            if (progress != null) {
+                                progress.accept(scanned);
+                            }
+                        }
+                    }
+                    scoreBatch(top, ids, sequences, n, query, gapOpen, gapExtend, limit);
+                    scanned += n;
+                }
+            }
+        }
+        return FuzzySearch.materialize(operator, tableName, top, scanned, false);
+    }
+
+    /**
+     * 并行计算一批行的得分，每个线程使用自己的比对对象和 {@link TopK}，合并后送入 top。
+     */
+    private static void scoreBatch(TopK top, long[] ids, String[] sequences, int n, String query,
+                                   int gapOpen, int gapExtend, int limit) {
+        if (n == 0) {
+            return;
+        }
+        Partial partial = IntStream.range(0, n).parallel().collect(
+                () -> new Partial(query, gapOpen, gapExtend, limit),
+                (p, i) -> {
+                    int score = p.aligner.score(sequences[i]);
+                    if (score > 0) {
+                        p.top.offer(score, ids[i]);
+                    }
+                },
+                Partial::merge);
+        top.merge(partial.top);
+    }
+}
@@ -0,0 +1,218 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * SimilarityScorer 类计算一个关键字与许多值的相似度，是 {@link FuzzySearch#similarity} 的快速实现，结果与之相同：
+ * 统一写法（见 {@link Levenshtein#normalize}）后，Levenshtein 相似度和 Jaro-Winkler 相似度各占一半。
+ * <p>
+ * 关键字只统一写法和编译一次，编辑距离用 {@link Levenshtein.Pattern} 的位并行算法计算，
+ * Jaro-Winkler 相似度使用每个线程自己的缓冲区，逐个比较时不创建对象。
+ * {@link #score(CharSequence, double)} 在相似度不可能达到下限时不再计算 Jaro-Winkler 相似度，
+ * 编辑距离也在超过相应的上限时提前停止。
+ * <p>
+ * 对象可以在多个线程中同时使用。
+ */
+public final class SimilarityScorer {
+    private static final double PREFIX_SCALE = 0.1; // Jaro-Winkler 的前缀加权系数
+    private static final double PREFIX_THRESHOLD = 0.7; // Jaro 相似度达到该值时才按前缀加权
+
+    private final Levenshtein.Pattern pattern;
+    private final String query;
+    private final char[] queryChars;
+
+    /**
+     * 构造方法。
+     *
+     * @param query 关键字。
+     */
+    public SimilarityScorer(String query) {
+        this.pattern = Levenshtein.Pattern.compile(query);
+        this.query = pattern.getText();
+        this.queryChars = this.query.toCharArray();
+    }
+
+    /**
+     * 统一写法后的关键字。
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * 计算与一个值的相似度。
+     *
+     * @param target 值，为 null 时相似度为 0。
+     * @return 相似度（0.0 - 1.0）。
+     */
+    public double score(CharSequence target) {
+        return score(target, 0.0);
+    }
+
+    /**
+     * 计算与一个值的相似度，确定达不到下限时提前停止。
+     * <p>
+     * Jaro-Winkler 相似度不超过 1，相似度要达到 cutoff，Levenshtein 相似度至少要有 2 * cutoff - 1，
+     * 即编辑距离不超过 2 * (1 - cutoff) * 较长的长度。
+     *
+     * @param target 值，为 null 时相似度为 0。
+     * @param cutoff 相似度的下限。
+     * @return 相似度（0.0 - 1.0）；确定低于 cutoff 时返回 -1。
+     */
+    public double score(CharSequence target, double cutoff) {
+        if (target == null) {
+            return cutoff > 0.0 ? -1.0 : 0.0;
+        }
+        Levenshtein.Scratch scratch = Levenshtein.scratch();
+        int n = scratch.load(target);
+        int m = queryChars.length;
+        int maxLength = Math.max(m, n);
+        if (maxLength == 0) {
+            return 1.0;
+        }
+        int maxDistance = cutoff <= 0.5 ? maxLength : (int) Math.floor(2.0 * (1.0 - cutoff) * maxLength + 1e-9);
+        int distance = pattern.distance(scratch, n, maxDistance);
+        if (distance > maxDistance) {
+            return -1.0;
+        }
+        double levenshtein = 1.0 - (double) distance / maxLength;
+        if (levenshtein * 0.5 + 0.5 < cutoff) {
+            return -1.0;
+        }
+        double score = levenshtein * 0.5 + jaroWinkler(scratch, n) * 0.5;
+        return score < cutoff ? -1.0 : score;
+    }
+
+    /**
+     * 计算关键字与缓冲区中的值的 Jaro-Winkler 相似度，与 commons-text 的 JaroWinklerSimilarity 相同。
+     */
+    private double jaroWinkler(Levenshtein.Scratch scratch, int n) {
+        char[] target = scratch.text;
+        int m = queryChars.length;
+        if (m == n && Arrays.equals(queryChars, 0, m, target, 0, n)) {
+            return 1.0;
+        }
+        boolean queryLonger = m > n;
+        char[] shorter = queryLonger ? target : queryChars;
+        char[] longer = queryLonger ? queryChars : target;
+        int shortLength = queryLonger ? n : m;
+        int longLength = queryLonger ? m : n;
+        if (scratch.matched.length < shortLength) {
+            scratch.matched = new int[Math.max(shortLength, scratch.matched.length * 2)];
+        }
+        if (scratch.flags.length < longLength) {
+            scratch.flags = new boolean[Math.max(longLength, scratch.flags.length * 2)];
+            scratch.nextSame = new int[scratch.flags.length];
+        }
+        Arrays.fill(scratch.flags, 0, longLength, false);
+        int matches = isAscii(longer, longLength)
+                ? matchAscii(scratch, shorter, shortLength, longer, longLength)
+                : matchScan(scratch, shorter, shortLength, longer, longLength);
+        if (matches == 0) {
+            return 0.0;
+        }
+        // 按顺序排列的配对字符中位置不同的个数
+        int[] matched = scratch.matched;
+        boolean[] flags = scratch.flags;
+        int halfTranspositions = 0;
+        int k = 0;
+        for (int i = 0; i < shortLength; i++) {
+            if (matched[i] < 0) {
+                continue;
+            }
+            while (!flags[k]) {
+                k++;
+            }
+            if (shorter[i] != longer[k]) {
+                halfTranspositions++;
+            }
+            k++;
+        }
+        int prefix = 0;
+        for (int i = 0; i < Math.min(4, shortLength); i++) {
+            if (queryChars[i] != target[i]) {
+                break;
+            }
+            prefix++;
+        }
+        double mm = matches;
+        double jaro = (mm / m + mm / n + (mm - halfTranspositions / 2.0) / mm) / 3.0;
+        return jaro < PREFIX_THRESHOLD ? jaro : jaro + PREFIX_SCALE * prefix * (1.0 - jaro);
+    }
+
+    private static boolean isAscii(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 配对字符：较短的值中的每个字符与较长的值中窗口 [i - range, i + range] 内第一个相同且未配对的字符配对。
+     * 较长的值只有 ASCII 字符时，把每个字符的位置串成链表；窗口只会向右移动，
+     * 每个字符的链表从头依次取用即可，总的时间与两个值的长度之和成正比。
+     *
+     * @return 配对的字符数。
+     */
+    private static int matchAscii(Levenshtein.Scratch scratch, char[] shorter, int shortLength,
+                                  char[] longer, int longLength) {
+        int range = Math.max(longLength / 2 - 1, 0);
+        int[] first = scratch.firstSame;
+        int[] next = scratch.nextSame;
+        int[] matched = scratch.matched;
+        boolean[] flags = scratch.flags;
+        Arrays.fill(first, -1);
+        for (int k = longLength - 1; k >= 0; k--) {
+            next[k] = first[longer[k]];
+            first[longer[k]] = k;
+        }
+        int matches = 0;
+        for (int i = 0; i < shortLength; i++) {
+            matched[i] = -1;
+            char c = shorter[i];
+            if (c >= first.length) {
+                continue;
+            }
+            int k = first[c];
+            while (k >= 0 && k < i - range) {
+                k = next[k];
+            }
+            if (k >= 0 && k <= i + range) {
+                matched[i] = k;
+                flags[k] = true;
+                matches++;
+                k = next[k];
+            }
+            first[c] = k;
+        }
+        return matches;
+    }
+
+    /**
+     * 配对字符：逐个检查窗口中的字符（较长的值含有非 ASCII 字符时使用）。
+     *
+     * @return 配对的字符数。
+     */
+    private static int matchScan(Levenshtein.Scratch scratch, char[] shorter, int shortLength,
+                                 char[] longer, int longLength) {
+        int range = Math.max(longLength / 2 - 1, 0);
+        int[] matched = scratch.matched;
+        boolean[] flags = scratch.flags;
+        int matches = 0;
+        for (int i = 0; i < shortLength; i++) {
+            char c = shorter[i];
+            matched[i] = -1;
+            for (int k = Math.max(i - range, 0), end = Math.min(i + range + 1, longLength); k < end; k++) {
+                if (!flags[k] && c == longer[k]) {
+                    matched[i] = k;
+                    flags[k] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,217 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * SmithWaterman 类计算查询蛋白质序列与目标序列的 Smith-Waterman 局部比对得分（BLOSUM62 打分矩阵，仿射空位罚分），
+ * 由 {@link SequenceSearch} 使用。
+ * <p>
+ * 本类是逐格计算的标量实现（Gotoh 算法，按目标序列逐列计算，只保留一列），也是 {@link StripedSmithWaterman}
+ * 的参照实现。通过 {@link #forQuery} 获取比对对象时，JVM 启用了 jdk.incubator.vector 模块
+ * （启动参数 --add-modules jdk.incubator.vector）则使用向量化的实现，否则使用本类。
+ * <p>
+ * 长度为 k 的空位罚分为 gapOpen + k * gapExtend（与 NCBI BLAST 相同），默认 11 和 1。
+ * 序列中的字母不区分大小写，不在打分矩阵中的字母按 X 处理，空白被忽略。
+ * <p>
+ * 对象保存了编码后的查询序列和计算用的数组，不是线程安全的，每个线程应使用自己的对象。
+ */
+public class SmithWaterman {
+    public static final int DEFAULT_GAP_OPEN = 11;
+    public static final int DEFAULT_GAP_EXTEND = 1;
+
+    /**
+     * 打分矩阵中的字母顺序。
+     */
+    static final String ALPHABET = "ARNDCQEGHILKMFPSTWYVBZX*";
+    static final int SIZE = ALPHABET.length();
+    private static final int UNKNOWN = ALPHABET.indexOf('X');
+
+    /**
+     * BLOSUM62 打分矩阵，行列按 {@link #ALPHABET} 排列。
+     */
+    static final int[][] BLOSUM62 = {
+            {4, -1, -2, -2, 0, -1, -1, 0, -2, -1, -1, -1, -1, -2, -1, 1, 0, -3, -2, 0, -2, -1, 0, -4},
+            {-1, 5, 0, -2, -3, 1, 0, -2, 0, -3, -2, 2, -1, -3, -2, -1, -1, -3, -2, -3, -1, 0, -1, -4},
+            {-2, 0, 6, 1, -3, 0, 0, 0, 1, -3, -3, 0, -2, -3, -2, 1, 0, -4, -2, -3, 3, 0, -1, -4},
+            {-2, -2, 1, 6, -3, 0, 2, -1, -1, -3, -4, -1, -3, -3, -1, 0, -1, -4, -3, -3, 4, 1, -1, -4},
+            {0, -3, -3, -3, 9, -3, -4, -3, -3, -1, -1, -3, -1, -2, -3, -1, -1, -2, -2, -1, -3, -3, -2, -4},
+            {-1, 1, 0, 0, -3, 5, 2, -2, 0, -3, -2, 1, 0, -3, -1, 0, -1, -2, -1, -2, 0, 3, -1, -4},
+            {-1, 0, 0, 2, -4, 2, 5, -2, 0, -3, -3, 1, -2, -3, -1, 0, -1, -3, -2, -2, 1, 4, -1, -4},
+            {0, -2, 0, -1, -3, -2, -2, 6, -2, -4, -4, -2, -3, -3, -2, 0, -2, -2, -3, -3, -1, -2, -1, -4},
+            {-2, 0, 1, -1, -3, 0, 0, -2, 8, -3, -3, -1, -2, -1, -2, -1, -2, -2, 2, -3, 0, 0, -1, -4},
+            {-1, -3, -3, -3, -1, -3, -3, -4, -3, 4, 2, -3, 1, 0, -3, -2, -1, -3, -1, 3, -3, -3, -1, -4},
+            {-1, -2, -3, -4, -1, -2, -3, -4, -3, 2, 4, -2, 2, 0, -3, -2, -1, -2, -1, 1, -4, -3, -1, -4},
+            {-1, 2, 0, -1, -3, 1, 1, -2, -1, -3, -2, 5, -1, -3, -1, 0, -1, -3, -2, -2, 0, 1, -1, -4},
+            {-1, -1, -2, -3, -1, 0, -2, -3, -2, 1, 2, -1, 5, 0, -2, -1, -1, -1, -1, 1, -3, -1, -1, -4},
+            {-2, -3, -3, -3, -2, -3, -3, -3, -1, 0, 0, -3, 0, 6, -4, -2, -2, 1, 3, -1, -3, -3, -1, -4},
+            {-1, -2, -2, -1, -3, -1, -1, -2, -2, -3, -3, -1, -2, -4, 7, -1, -1, -4, -3, -2, -2, -1, -2, -4},
+            {1, -1, 1, 0, -1, 0, 0, 0, -1, -2, -2, 0, -1, -2, -1, 4, 1, -3, -2, -2, 0, 0, 0, -4},
+            {0, -1, 0, -1, -1, -1, -1, -2, -2, -1, -1, -1, -1, -2, -1, 1, 5, -2, -2, 0, -1, -1, 0, -4},
+            {-3, -3, -4, -4, -2, -2, -3, -2, -2, -3, -2, -3, -1, 1, -4, -3, -2, 11, 2, -3, -4, -3, -2, -4},
+            {-2, -2, -2, -3, -2, -1, -2, -3, 2, -1, -1, -2, -1, 3, -3, -2, -2, 2, 7, -1, -3, -2, -1, -4},
+            {0, -3, -3, -3, -1, -2, -2, -3, -3, 3, 1, -2, 1, -1, -2, -2, 0, -3, -1, 4, -3, -2, -1, -4},
+            {-2, -1, 3, 4, -3, 0, 1, -1, 0, -3, -4, 0, -3, -3, -2, 0, -1, -4, -3, -3, 4, 1, -1, -4},
+            {-1, 0, 0, 1, -3, 3, 4, -2, 0, -3, -3, 1, -1, -3, -1, 0, -1, -3, -2, -2, 1, 4, -1, -4},
+            {0, -1, -1, -1, -2, -1, -1, -1, -1, -1, -1, -1, -1, -1, -2, 0, 0, -2, -1, -1, -1, -1, -1, -4},
+            {-4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, -4, 1}
+    };
+
+    private static final byte[] CODES = new byte[128]; // ASCII 字母在打分矩阵中的序号
+
+    static {
+        Arrays.fill(CODES, (byte) UNKNOWN);
+        for (int i = 0; i < SIZE; i++) {
+            char c = ALPHABET.charAt(i);
+            CODES[c] = (byte) i;
+            CODES[Character.toLowerCase(c)] = (byte) i;
+        }
+    }
+
+    final byte[] query; // 编码后的查询序列
+    final int gapOpen;
+    final int gapExtend;
+    private byte[] target = new byte[256]; // 编码后的目标序列
+    private int[] h = new int[0]; // 上一列的得分
+    private int[] e = new int[0]; // 上一列以水平空位结束的得分
+
+    /**
+     * 构造方法，使用标量实现。
+     *
+     * @param query     查询序列。
+     * @param gapOpen   空位开启罚分（正数）。
+     * @param gapExtend 空位每个字母的延伸罚分（正数）。
+     */
+    public SmithWaterman(CharSequence query, int gapOpen, int gapExtend) {
+        if (gapOpen < 0 || gapExtend < 0) {
+            throw new IllegalArgumentException("空位罚分不能为负数");
+        }
+        this.query = encode(query);
+        this.gapOpen = gapOpen;
+        this.gapExtend = gapExtend;
+    }
+
+    /**
+     * 获取查询序列的比对对象：jdk.incubator.vector 模块可用时使用向量化的实现，否则使用标量实现。
+     *
+     * @param query     查询序列。
+     * @param gapOpen   空位开启罚分。
+     * @param gapExtend 空位延伸罚分。
+     * @return 比对对象。
+     */
+    public static SmithWaterman forQuery(CharSequence query, int gapOpen, int gapExtend) {
+        if (isVectorized()) {
+            try {
+                return new StripedSmithWaterman(query, gapOpen, gapExtend);
+            } catch (LinkageError e) {
+                System.err.println("向量化的序列比对不可用，使用标量实现: " + e);
+            }
+        }
+        return new SmithWaterman(query, gapOpen, gapExtend);
+    }
+
+    public static SmithWaterman forQuery(CharSequence query) {
+        return forQuery(query, DEFAULT_GAP_OPEN, DEFAULT_GAP_EXTEND);
+    }
+
+    /**
+     * JVM 是否启用了 jdk.incubator.vector 模块。
+     */
+    public static boolean isVectorized() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * 把序列编码为打分矩阵中的序号，忽略空白。
+     */
+    static byte[] encode(CharSequence sequence) {
+        byte[] codes = new byte[sequence.length()];
+        int n = 0;
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            if (c > ' ') {
+                codes[n++] = c < 128 ? CODES[c] : (byte) UNKNOWN;
+            }
+        }
+        return n == codes.length ? codes : Arrays.copyOf(codes, n);
+    }
+
+    /**
+     * 把目标序列编码到可重用的数组中。
+     *
+     * @return 编码后的长度。
+     */
+    final int encodeTarget(CharSequence sequence) {
+        if (target.length < sequence.length()) {
+            target = new byte[Math.max(sequence.length(), target.length * 2)];
+        }
+        int n = 0;
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            if (c > ' ') {
+                target[n++] = c < 128 ? CODES[c] : (byte) UNKNOWN;
+            }
+        }
+        return n;
+    }
+
+    final byte[] target() {
+        return target;
+    }
+
+    /**
+     * 查询序列的长度（不含空白）。
+     */
+    public int getQueryLength() {
+        return query.length;
+    }
+
+    /**
+     * 计算与目标序列的局部比对得分。
+     *
+     * @param sequence 目标序列，为 null 时得分为 0。
+     * @return 最高的局部比对得分（不小于 0）。
+     */
+    public int score(CharSequence sequence) {
+        if (sequence == null) {
+            return 0;
+        }
+        return scalarScore(encodeTarget(sequence));
+    }
+
+    /**
+     * 标量实现：按目标序列逐列计算，h 和 e 保存上一列，f 在列内向下传递。
+     *
+     * @param n 已编码到 {@link #target()} 中的目标序列长度。
+     */
+    final int scalarScore(int n) {
+        int m = query.length;
+        if (h.length < m) {
+            h = new int[m];
+            e = new int[m];
+        }
+        Arrays.fill(h, 0, m, 0);
+        Arrays.fill(e, 0, m, Integer.MIN_VALUE / 2);
+        int first = gapOpen + gapExtend; // 长度为 1 的空位
+        int best = 0;
+        for (int j = 0; j < n; j++) {
+            int[] column = BLOSUM62[target[j]];
+            int diagonal = 0; // H[i-1][j-1]
+            int f = Integer.MIN_VALUE / 2; // 以垂直空位结束的得分
+            int up = 0; // H[i-1][j]
+            for (int i = 0; i < m; i++) {
+                int left = h[i]; // H[i][j-1]
+                int ei = Math.max(e[i] - gapExtend, left - first);
+                f = Math.max(f - gapExtend, up - first);
+                int score = Math.max(Math.max(diagonal + column[query[i]], 0), Math.max(ei, f));
+                e[i] = ei;
+                h[i] = score;
+                diagonal = left;
+                up = score;
+                if (score > best) {
+                    best = score;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,122 @@
+package org.example;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * StripedSmithWaterman 类用 JDK Vector API（jdk.incubator.vector）计算 Smith-Waterman 局部比对得分，
+ * 结果与 {@link SmithWaterman} 的标量实现相同。只应通过 {@link SmithWaterman#forQuery} 获取。
+ * <p>
+ * 使用 Farrar 的条带（striped）排列：查询序列按向量的通道数 p 分成 p 段，第 k 个通道依次处理第 k 段，
+ * 一个向量同时计算一列中相隔一段的 p 个格子，它们之间没有依赖。每处理目标序列的一个字母，
+ * 对每段位置做一次向量加法和几次取大；垂直空位跨段的传递在列末由“惰性 F”循环补上，通常一两轮就停止。
+ * 查询序列每个位置对每种字母的得分预先排成同样的条带（查询轮廓），计算时直接按目标字母取出。
+ * <p>
+ * 得分用 16 位整数计算，一个向量的通道数是 32 位的两倍。得分接近 16 位整数的上限时改用标量实现重新计算。
+ * 惰性 F 循环的停止条件要求空位开启罚分大于 0，开启罚分为 0（线性空位罚分）时也使用标量实现。
+ */
+final class StripedSmithWaterman extends SmithWaterman {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final short NEGATIVE = Short.MIN_VALUE / 2; // 代替负无穷，减去空位罚分也不会溢出
+    private static final int MAX_GAP = 1000; // 空位罚分超过该值时只用标量实现
+    private static final int OVERFLOW = Short.MAX_VALUE - 11; // 得分达到该值时可能溢出（11 是打分矩阵的最大值）
+
+    private final int lanes = SPECIES.length();
+    private final int segments; // 每个通道处理的查询位置数
+    private final short[] profile; // 查询轮廓：字母 a 的第 s 段在 [(a * segments + s) * lanes]
+    private short[] hStore; // 当前列的得分
+    private short[] hLoad; // 上一列的得分
+    private final short[] e; // 以水平空位结束的得分
+
+    StripedSmithWaterman(CharSequence query, int gapOpen, int gapExtend) {
+        super(query, gapOpen, gapExtend);
+        int m = this.query.length;
+        this.segments = Math.max(1, (m + lanes - 1) / lanes);
+        this.profile = new short[SIZE * segments * lanes];
+        for (int a = 0; a < SIZE; a++) {
+            int[] row = BLOSUM62[a];
+            for (int s = 0; s < segments; s++) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    int i = lane * segments + s;
+                    // 查询序列之后的填充位置得分为 0：只会把上一行的得分原样传下去，不会超过真实的最高分
+                    profile[(a * segments + s) * lanes + lane] = i < m ? (short) row[this.query[i]] : 0;
+                }
+            }
+        }
+        this.hStore = new short[segments * lanes];
+        this.hLoad = new short[segments * lanes];
+        this.e = new short[segments * lanes];
+    }
+
+    @Override
+    public int score(CharSequence sequence) {
+        if (sequence == null) {
+            return 0;
+        }
+        int n = encodeTarget(sequence);
+        if (query.length == 0 || n == 0) {
+            return 0;
+        }
+        if (gapOpen == 0 || gapOpen + gapExtend > MAX_GAP) {
+            return scalarScore(n);
+        }
+        int best = stripedScore(target(), n);
+        return best >= OVERFLOW ? scalarScore(n) : best;
+    }
+
+    private int stripedScore(byte[] target, int n) {
+        int width = segments * lanes;
+        Arrays.fill(hStore, 0, width, (short) 0);
+        Arrays.fill(e, 0, width, NEGATIVE);
+        ShortVector zero = ShortVector.zero(SPECIES);
+        ShortVector negative = ShortVector.broadcast(SPECIES, NEGATIVE);
+        ShortVector gapFirst = ShortVector.broadcast(SPECIES, (short) (gapOpen + gapExtend)); // 长度为 1 的空位
+        ShortVector gapNext = ShortVector.broadcast(SPECIES, (short) gapExtend);
+        ShortVector max = zero;
+
+        for (int j = 0; j < n; j++) {
+            int base = target[j] * segments * lanes;
+            ShortVector f = negative;
+            // 上一列最后一段的得分移到下一个通道，作为本列第 0 段的对角线得分
+            ShortVector h = ShortVector.fromArray(SPECIES, hStore, (segments - 1) * lanes).unslice(1);
+            short[] swap = hLoad;
+            hLoad = hStore;
+            hStore = swap;
+
+            for (int s = 0; s < segments; s++) {
+                int offset = s * lanes;
+                h = h.add(ShortVector.fromArray(SPECIES, profile, base + offset));
+                ShortVector ev = ShortVector.fromArray(SPECIES, e, offset);
+                h = h.max(ev).max(f).max(zero);
+                max = max.max(h);
+                h.intoArray(hStore, offset);
+                h = h.sub(gapFirst);
+                ev.sub(gapNext).max(h).intoArray(e, offset);
+                f = f.sub(gapNext).max(h);
+                h = ShortVector.fromArray(SPECIES, hLoad, offset);
+            }
+
+            // 惰性 F：把垂直空位传到下一个通道，直到不再能提高任何得分
+            lazy:
+            for (int k = 0; k < lanes; k++) {
+                f = f.unslice(1, negative, 0);
+                for (int s = 0; s < segments; s++) {
+                    int offset = s * lanes;
+                    h = ShortVector.fromArray(SPECIES, hStore, offset).max(f);
+                    h.intoArray(hStore, offset);
+                    max = max.max(h);
+                    h = h.sub(gapFirst);
+                    ShortVector.fromArray(SPECIES, e, offset).max(h).intoArray(e, offset);
+                    f = f.sub(gapNext);
+                    if (!f.compare(VectorOperators.GT, h).anyTrue()) {
+                        break lazy;
+                    }
+                }
+            }
+        }
+        return max.reduceLanes(VectorOperators.MAX);
+    }
+}
@@ -1,18 +1,23 @@
 package org.example;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.StringReader;
-import java.sql.SQLException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 /**
  * TSVImporter 类负责将 TSV 文件导入到指定的数据库表中，并自动检测数据类型。
@@ -21,8 +26,20 @@ public class TSVImporter {
     private final DOperator operator;
     private final boolean hasHeader;
     private final ImportProgressCallback callback;
-    private static final int BATCH_SIZE = 1000; // 批量插入大小
     private static final int SAMPLE_SIZE = 1000; // 用于类型推断的样本行数
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024; // 解压时每次从文件读取的字节数
+    private int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 2); // 读取和写入各占一个核心
+    private boolean preserveOrder = true;
+    private ImportStats lastImportStats;
+    private boolean bulkLoad = true;
+    private int commitRows = BulkLoader.DEFAULT_COMMIT_ROWS;
+    private long commitMillis = BulkLoader.DEFAULT_COMMIT_MILLIS;
+    private boolean checkpointing = false;
+    private boolean resume = false;
+    private final Set<String> indexedColumns = new LinkedHashSet<>();
+    private final Set<String> unindexedColumns = new LinkedHashSet<>();
+    private final Map<SearchIndex.Type, Set<String>> searchIndexedColumns = new EnumMap<>(SearchIndex.Type.class);
+    private static final ThreadLocal<Utf8TSVScanner> SCANNERS = ThreadLocal.withInitial(Utf8TSVScanner::new); // 每个解析线程复用一个扫描器
 
     /**
      * 构造方法。
@@ -37,132 +54,463 @@ public class TSVImporter {
         this.callback = callback;
     }
 
+    /**
+     * 设置解析线程数。
+     *
+     * @param parserThreads 解析线程数（至少为 1）。
+     * @return 当前对象。
+     */
+    public TSVImporter setParserThreads(int parserThreads) {
+        this.parserThreads = Math.max(1, parserThreads);
+        return this;
+    }
+
+    /**
+     * 设置是否按文件中的顺序写入。保序时行顺序和自增 id 与文件一致；
+     * 不保序时写入者不必等待较慢的解析线程，吞吐量略高。
+     *
+     * @param preserveOrder 是否保序。
+     * @return 当前对象。
+     */
+    public TSVImporter setPreserveOrder(boolean preserveOrder) {
+        this.preserveOrder = preserveOrder;
+        return this;
+    }
+
+    /**
+     * 设置是否使用批量导入模式（见 {@link BulkLoader}）。批量导入模式下整个导入使用一个写连接和导入专用的
+     * PRAGMA 设置，按提交间隔提交，导入失败时不会留下目标表；关闭时每个批次单独提交到目标表。
+     *
+     * @param bulkLoad 是否使用批量导入模式。
+     * @return 当前对象。
+     */
+    public TSVImporter setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+        return this;
+    }
+
+    /**
+     * 设置批量导入模式的提交间隔，写入的行数或经过的时间先达到时提交。
+     *
+     * @param rows   每提交一次的最大行数。
+     * @param millis 两次提交之间的最长时间（毫秒）。
+     * @return 当前对象。
+     */
+    public TSVImporter setCommitInterval(int rows, long millis) {
+        this.commitRows = Math.max(1, rows);
+        this.commitMillis = Math.max(0, millis);
+        return this;
+    }
+
+    /**
+     * 设置批量导入模式下是否在每次提交时记录检查点（见 {@link ImportCheckpoint}）。
+     * 启用后总是按文件中的顺序写入；导入中断时保留已提交的数据，可以通过 {@link #setResume(boolean)} 继续。
+     *
+     * @param checkpointing 是否记录检查点。
+     * @return 当前对象。
+     */
+    public TSVImporter setCheckpointing(boolean checkpointing) {
+        this.checkpointing = checkpointing;
+        return this;
+    }
+
+    /**
+     * 设置是否从检查点继续导入。目标表有同一文件的检查点时，从检查点记录的位置继续读取并追加；
+     * 没有检查点或文件已改变时重新导入。继续导入的会话仍然记录检查点。
+     *
+     * @param resume 是否从检查点继续。
+     * @return 当前对象。
+     */
+    public TSVImporter setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * 设置导入后要建索引的列。索引在所有数据写入之后才创建，随后运行 ANALYZE。
+     *
+     * @param columns 列名（不区分大小写）。
+     * @return 当前对象。
+     */
+    public TSVImporter setIndexedColumns(String... columns) {
+        indexedColumns.clear();
+        indexedColumns.addAll(Arrays.asList(columns));
+        return this;
+    }
+
+    /**
+     * 设置不建索引的列。没有指定要建索引的列时，为除这些列以外的所有列建索引；
+     * 同时出现在两个设置中的列不建索引。
+     *
+     * @param columns 列名（不区分大小写）。
+     * @return 当前对象。
+     */
+    public TSVImporter setUnindexedColumns(String... columns) {
+        unindexedColumns.clear();
+        unindexedColumns.addAll(Arrays.asList(columns));
+        return this;
+    }
+
+    /**
+     * 设置导入后要建指定类型全文索引的列。全文索引在所有数据写入之后一次性建立，之后由触发器随插入同步。
+     *
+     * @param type    索引类型。
+     * @param columns 列名（不区分大小写）。
+     * @return 当前对象。
+     */
+    public TSVImporter setSearchIndexedColumns(SearchIndex.Type type, String... columns) {
+        searchIndexedColumns.put(type, new LinkedHashSet<>(Arrays.asList(columns)));
+        return this;
+    }
+
+    /**
+     * 获取最近一次导入的统计信息。
+     *
+     * @return 统计信息；如果尚未导入，返回 null。
+     */
+    public ImportStats getLastImportStats() {
+        return lastImportStats;
+    }
+
     /**
      * 导入 TSV 文件到指定表。
+     * 先读取文件开头的表头和样本行推断列类型并建表，然后通过 {@link ImportPipeline}
+     * 并行解析整个文件，由当前线程按顺序写入数据库。设置了要建索引的列时，在数据全部写入后建索引并运行 ANALYZE。
+     * 设置了从检查点继续（{@link #setResume(boolean)}）且目标表有同一文件的检查点时，跳过已提交的部分继续导入。
      *
      * @param tableName 目标数据库表名。
-     * @param tsvFile   要导入的 TSV 文件。
+     * @param tsvFile   要导入的 TSV 文件，也可以是 gzip 压缩的文件（如 .tsv.gz），导入时边读边解压。
      * @throws IOException  如果读取文件时发生错误。
      * @throws SQLException 如果执行数据库操作时发生错误。
      */
     public void importTSV(String tableName, File tsvFile) throws IOException, SQLException {
-        List<String[]> batch = new ArrayList<>();
-        int processedRecords = 0;
-        int totalRecords = countTotalRecords(tsvFile) - (hasHeader ? 1 : 0);
+        long totalBytes = tsvFile.length();
+        boolean compressed = isGzip(tsvFile);
+        double compressionRatio = 1; // 解压后字节数与压缩字节数之比
+        String[] headers = null;
+        List<String[]> samples = new ArrayList<>();
+        long headerBytes = 0;
+        long sampleBytes = 0;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(tsvFile, StandardCharsets.UTF_8))) {
-            String line;
+        // 只读取表头和用于类型推断的样本行（多读一行，用于在没有表头时确定列数）
+        // 文件不是有效的 gzip 时 GZIPInputStream 的构造方法就会抛出异常，因此所有流都在 try 中打开
+        try (CountingInputStream rawIn = new CountingInputStream(new FileInputStream(tsvFile));
+             CountingInputStream textIn = compressed ? new CountingInputStream(new GZIPInputStream(rawIn)) : rawIn;
+             TSVTokenizer tokenizer = new TSVTokenizer(new InputStreamReader(textIn, StandardCharsets.UTF_8))) {
             boolean isFirstLine = true;
-            String[] headers = null;
-
-            // 用于类型推断的样本数据
-            List<String[]> samples = new ArrayList<>();
-            boolean tableCreated = false;
+            while (samples.size() <= SAMPLE_SIZE) {
+                try {
+                    if (!tokenizer.nextRecord()) {
+                        break;
+                    }
+                } catch (TSVTokenizer.MalformedRecordException e) {
+                    if (isFirstLine && hasHeader) {
+                        throw e; // 表头无法解析时无法继续导入
+                    }
+                    isFirstLine = false;
+                    continue; // 有问题的行由导入阶段报告并跳过
+                }
 
-            while ((line = br.readLine()) != null) {
                 if (isFirstLine && hasHeader) {
-                    headers = parseLine(line);
-                    headers = processHeaders(headers); // 处理并转义保留字
+                    headerBytes = tokenizer.getRecordUtf8Length();
+                    headers = processHeaders(tokenizer.toArray(Integer.MAX_VALUE)); // 处理并转义保留字
                     isFirstLine = false;
                     continue;
                 }
                 isFirstLine = false;
 
-                String[] fields;
-                try {
-                    fields = parseLine(line);
-                } catch (IOException e) {
-                    System.err.println("解析行失败: " + e.getMessage());
-                    continue; // 跳过有问题的行
-                }
-
+                String[] fields = tokenizer.toArray(headers == null ? Integer.MAX_VALUE : headers.length);
                 if (samples.size() < SAMPLE_SIZE) {
-                    samples.add(fields);
-                    continue;
+                    sampleBytes += tokenizer.getRecordUtf8Length();
                 }
+                samples.add(fields);
+            }
+            if (compressed && rawIn.getCount() > 0) {
+                compressionRatio = (double) textIn.getCount() / rawIn.getCount();
+            }
+        }
 
-                if (!tableCreated) {
-                    if (headers == null) {
-                        headers = generateDefaultHeaders(fields.length);
-                    }
-                    headers = processHeaders(headers); // 处理并转义保留字
-                    String[] inferredTypes = inferColumnTypes(samples, headers.length);
-                    boolean created = operator.createTable(tableName, headers, inferredTypes);
-                    if (!created) {
-                        throw new SQLException("Failed to create table: " + tableName);
-                    }
-                    tableCreated = true;
+        if (samples.isEmpty()) {
+            return; // 没有数据行，不创建表
+        }
+        String[] firstRowAfterSamples = samples.size() > SAMPLE_SIZE ? samples.remove(SAMPLE_SIZE) : null;
 
-                    // 插入样本数据
-                    operator.batchInsert(tableName, samples);
-                    processedRecords += samples.size();
-                    callback.onProgress(totalRecords, processedRecords);
-                    samples.clear();
-                }
+        if (headers == null) {
+            // 没有表头时，以样本之后的第一行（文件较短时以第一行）的列数生成默认列名
+            headers = generateDefaultHeaders(firstRowAfterSamples != null ? firstRowAfterSamples.length : samples.get(0).length);
+        }
+        headers = processHeaders(headers); // 处理并转义保留字
+        String[] inferredTypes = inferColumnTypes(samples, headers.length);
 
-                batch.add(fields);
-                processedRecords++;
+        // 根据样本的平均行宽估算总记录数，压缩文件按开头部分的压缩比估算解压后的大小
+        long dataBytes = Math.round(totalBytes * compressionRatio) - headerBytes;
+        int estimatedTotal = estimateTotalRecords(dataBytes, sampleBytes, samples.size());
+
+        int processed;
+        if (bulkLoad) {
+            ImportCheckpoint resumeFrom = resume ? findCheckpoint(tableName, tsvFile) : null;
+            // 整个导入在一个写连接上完成，成功后目标表才出现
+            try (BulkLoader loader = resumeFrom != null
+                    ? operator.resumeBulkLoad(resumeFrom, commitRows, commitMillis)
+                    : operator.beginBulkLoad(tableName, headers, inferredTypes, commitRows, commitMillis)) {
+                if (resumeFrom != null) {
+                    System.out.println("从检查点继续导入表 '" + tableName + "'：已有 " + resumeFrom.getRows()
+                            + " 行，从文件位置 " + resumeFrom.getOffset() + " 开始读取。");
+                } else if (checkpointing) {
+                    loader.enableCheckpoints(ImportCheckpoint.forFile(tableName, tsvFile, loader.getColumns()));
+                }
+                processed = runPipeline(tsvFile, compressed, loader.getColumns(), totalBytes, estimatedTotal,
+                        loader.getCheckpoint(), loader::insert);
+                loader.commit(resolveIndexColumns(loader.getColumns()), resolveSearchIndexColumns(loader.getColumns()));
+            }
+        } else {
+            boolean created = operator.createTable(tableName, headers, inferredTypes);
+            if (!created) {
+                throw new SQLException("Failed to create table: " + tableName);
+            }
 
-                if (batch.size() >= BATCH_SIZE) {
-                    operator.batchInsert(tableName, batch);
-                    callback.onProgress(totalRecords, processedRecords);
-                    batch.clear();
+            // 获取表的列信息，已排除自动增量的id列
+            List<DOperator.ColumnInfo> columns = operator.getTableColumnsWithTypesEscaped(tableName);
+            if (columns.isEmpty()) {
+                throw new SQLException("表 " + tableName + " 不存在或没有列信息。");
+            }
+            processed = runPipeline(tsvFile, compressed, columns, totalBytes, estimatedTotal, null,
+                    batch -> operator.batchInsertConverted(tableName, columns, batch.getRows()));
+            operator.createIndexes(tableName, resolveIndexColumns(columns));
+            for (Map.Entry<SearchIndex.Type, List<String>> entry : resolveSearchIndexColumns(columns).entrySet()) {
+                for (String column : entry.getValue()) {
+                    operator.createSearchIndex(tableName, column, entry.getKey());
                 }
             }
+        }
 
-            // 文件读取完成后，如果表尚未创建（样本不足 SAMPLE_SIZE）
-            if (!tableCreated && !samples.isEmpty()) {
-                if (headers == null && !samples.isEmpty()) {
-                    headers = generateDefaultHeaders(samples.get(0).length);
+        // 读取完成后总记录数已确定
+        callback.onByteProgress(totalBytes, totalBytes, processed, processed);
+    }
+
+    /**
+     * 查找目标表属于指定文件的检查点。
+     *
+     * @return 检查点；没有检查点或文件已改变时返回 null。
+     */
+    private ImportCheckpoint findCheckpoint(String tableName, File tsvFile) throws IOException, SQLException {
+        ImportCheckpoint saved = operator.getImportCheckpoint(tableName);
+        if (saved == null) {
+            return null;
+        }
+        if (!saved.matches(tsvFile)) {
+            System.out.println("表 '" + tableName + "' 的检查点对应的文件 " + saved.getFilePath() + " 已改变，重新导入。");
+            return null;
+        }
+        return saved;
+    }
+
+    /**
+     * 根据建索引和不建索引的设置，确定要建索引的列。
+     *
+     * @param columns 表的列信息。
+     * @return 要建索引的列名。
+     */
+    private List<String> resolveIndexColumns(List<DOperator.ColumnInfo> columns) {
+        List<String> result = new ArrayList<>();
+        if (indexedColumns.isEmpty() && unindexedColumns.isEmpty()) {
+            return result;
+        }
+        for (DOperator.ColumnInfo column : columns) {
+            String name = column.getName();
+            boolean wanted = indexedColumns.isEmpty() || containsIgnoreCase(indexedColumns, name);
+            if (wanted && !containsIgnoreCase(unindexedColumns, name)) {
+                result.add(name);
+            }
+        }
+        for (String name : indexedColumns) {
+            if (!containsIgnoreCase(result, name) && !containsIgnoreCase(unindexedColumns, name)) {
+                System.err.println("要建索引的列不存在: " + name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 确定每种类型的全文索引要建在哪些列上，列名换成表中的实际列名。
+     *
+     * @param columns 表的列信息。
+     * @return 按索引类型给出的列名。
+     */
+    private Map<SearchIndex.Type, List<String>> resolveSearchIndexColumns(List<DOperator.ColumnInfo> columns) {
+        Map<SearchIndex.Type, List<String>> result = new EnumMap<>(SearchIndex.Type.class);
+        for (Map.Entry<SearchIndex.Type, Set<String>> entry : searchIndexedColumns.entrySet()) {
+            List<String> names = new ArrayList<>();
+            for (String name : entry.getValue()) {
+                String actual = null;
+                for (DOperator.ColumnInfo column : columns) {
+                    if (column.getName().equalsIgnoreCase(name.trim())) {
+                        actual = column.getName();
+                        break;
+                    }
                 }
-                headers = processHeaders(headers); // 处理并转义保留字
-                String[] inferredTypes = inferColumnTypes(samples, headers.length);
-                boolean created = operator.createTable(tableName, headers, inferredTypes);
-                if (!created) {
-                    throw new SQLException("Failed to create table: " + tableName);
+                if (actual == null) {
+                    System.err.println("要建全文索引的列不存在: " + name);
+                } else if (!names.contains(actual)) {
+                    names.add(actual);
                 }
-                tableCreated = true;
+            }
+            if (!names.isEmpty()) {
+                result.put(entry.getKey(), names);
+            }
+        }
+        return result;
+    }
 
-                // 插入样本数据
-                operator.batchInsert(tableName, samples);
-                processedRecords += samples.size();
-                callback.onProgress(totalRecords, processedRecords);
-                samples.clear();
+    private static boolean containsIgnoreCase(Collection<String> names, String name) {
+        for (String n : names) {
+            if (n.trim().equalsIgnoreCase(name.trim())) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            // 插入剩余的数据
-            if (!batch.isEmpty()) {
-                operator.batchInsert(tableName, batch);
-                callback.onProgress(totalRecords, processedRecords);
+    /**
+     * 通过 {@link ImportPipeline} 并行解析整个文件，由当前线程写入并报告进度。
+     *
+     * @param tsvFile        要导入的 TSV 文件。
+     * @param compressed     文件是否为 gzip 压缩格式。
+     * @param columns        表的列信息（不含自动增量的id列）。
+     * @param totalBytes     文件大小。
+     * @param estimatedTotal 估算的总记录数。
+     * @param checkpoint     记录检查点时的起始检查点，不为 null 时按文件中的顺序写入，并从检查点的位置开始读取。
+     * @param writer         写入阶段。
+     * @return 写入的记录数（包含检查点中已有的行）。
+     * @throws IOException  如果读取文件时发生错误。
+     * @throws SQLException 如果执行数据库操作时发生错误。
+     */
+    private int runPipeline(File tsvFile, boolean compressed, List<DOperator.ColumnInfo> columns, long totalBytes,
+                            int estimatedTotal, ImportCheckpoint checkpoint,
+                            ImportPipeline.BatchWriter writer) throws IOException, SQLException {
+        long startOffset = checkpoint == null ? 0 : checkpoint.getOffset();
+        AtomicInteger processedRecords = new AtomicInteger(checkpoint == null ? 0 : (int) checkpoint.getRows());
+
+        // 每列的值类型只解析一次，解析线程按字节直接转换
+        ColumnKind[] kinds = new ColumnKind[columns.size()];
+        String[] names = new String[columns.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = ColumnKind.of(columns.get(i));
+            names[i] = columns.get(i).getName();
+        }
+
+        // 检查点记录的位置之前的数据必须都已写入，因此记录检查点时总是保序
+        ImportPipeline pipeline = new ImportPipeline(parserThreads, ImportPipeline.DEFAULT_CHUNK_SIZE,
+                preserveOrder || checkpoint != null);
+        ImportPipeline.ChunkParser parser = (chunk, data) -> parseChunk(chunk, data, kinds, names);
+        ImportPipeline.BatchWriter progressWriter = batch -> {
+            writer.write(batch);
+            int processed = processedRecords.addAndGet(batch.getRows().size());
+            reportProgress(totalBytes, batch.getSourcePosition(), estimatedTotal, processed);
+        };
+
+        if (compressed) {
+            // 在读取线程中边读边解压（支持多成员 gzip 和 bgzip），进度按已读取的压缩字节数计算；
+            // 从检查点继续时解压并跳过检查点之前的数据
+            try (CountingInputStream rawIn = new CountingInputStream(new FileInputStream(tsvFile));
+                 InputStream in = new GZIPInputStream(rawIn, GZIP_BUFFER_SIZE)) {
+                lastImportStats = pipeline.run(
+                        new ImportPipeline.StreamChunkSource(in, ImportPipeline.DEFAULT_CHUNK_SIZE, startOffset, rawIn::getCount),
+                        parser, progressWriter);
+            }
+        } else {
+            try (FileChannelChunkSource source = new FileChannelChunkSource(tsvFile.toPath(), ImportPipeline.DEFAULT_CHUNK_SIZE, startOffset)) {
+                lastImportStats = pipeline.run(source, parser, progressWriter);
             }
         }
+        System.out.println(lastImportStats);
+        return processedRecords.get();
     }
 
     /**
-     * 使用 Apache Commons CSV 解析一行 TSV 数据。
+     * 解析一个按行对齐的字节块，并把字段转换为列类型对应的值。在解析线程中调用。
      *
-     * @param line 要解析的行。
-     * @return 字段数组。
-     * @throws IOException 如果解析过程中发生错误。
+     * @param chunk 字节块。
+     * @param data  字节块的内容。
+     * @param kinds 各列的值类型。
+     * @param names 各列的列名。
+     * @return 解析后的批次。
      */
-    private String[] parseLine(String line) throws IOException {
-        CSVFormat format = CSVFormat.TDF.builder()
-                .setDelimiter('\t')
-                .setQuote('"')
-                .setEscape('\\')
-                .setIgnoreSurroundingSpaces(true)
-                .build();
-
-        try (CSVParser parser = CSVParser.parse(line, format)) {
-            for (CSVRecord record : parser) {
-                String[] fields = new String[record.size()];
-                for (int i = 0; i < record.size(); i++) {
-                    fields[i] = record.get(i);
+    private ImportPipeline.Batch parseChunk(ImportPipeline.Chunk chunk, ByteBuffer data, ColumnKind[] kinds, String[] names) {
+        byte[] bytes;
+        int offset;
+        if (data.hasArray()) {
+            bytes = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            offset = 0;
+        }
+        Utf8TSVScanner scanner = SCANNERS.get();
+        scanner.reset(bytes, offset, data.remaining());
+
+        List<Object[]> rows = new ArrayList<>();
+        boolean skipHeader = hasHeader && chunk.getStartOffset() == 0; // 从检查点继续时不含表头
+        while (true) {
+            try {
+                if (!scanner.nextRecord()) {
+                    break;
                 }
-                return fields;
+            } catch (TSVTokenizer.MalformedRecordException e) {
+                System.err.println("解析行失败: " + e.getMessage());
+                continue; // 跳过有问题的行
+            }
+            if (skipHeader) {
+                skipHeader = false;
+                continue;
             }
+            Object[] row = new Object[kinds.length];
+            for (int i = 0; i < kinds.length; i++) {
+                row[i] = scanner.convert(i, kinds[i], names[i]);
+            }
+            rows.add(row);
+        }
+        return new ImportPipeline.Batch(chunk, rows);
+    }
+
+    /**
+     * 根据文件开头的魔数判断文件是否为 gzip 压缩格式（与扩展名无关）。
+     *
+     * @param file 文件。
+     * @return 是否为 gzip 文件。
+     * @throws IOException 如果读取文件失败。
+     */
+    static boolean isGzip(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            int b1 = in.read();
+            int b2 = in.read();
+            return b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b2 == (GZIPInputStream.GZIP_MAGIC >> 8);
+        }
+    }
+
+    /**
+     * 报告导入进度。估算的总记录数不会小于已处理的记录数。
+     */
+    private void reportProgress(long totalBytes, long bytesRead, int estimatedTotal, int processedRecords) {
+        callback.onByteProgress(totalBytes, Math.min(bytesRead, totalBytes),
+                Math.max(estimatedTotal, processedRecords), processedRecords);
+    }
+
+    /**
+     * 根据样本的平均行宽估算总记录数。
+     *
+     * @param dataBytes   数据部分（不含表头）的字节数。
+     * @param sampleBytes 样本行的总字节数。
+     * @param sampleRows  样本行数。
+     * @return 估算的总记录数；无法估算时返回 0。
+     */
+    private int estimateTotalRecords(long dataBytes, long sampleBytes, int sampleRows) {
+        if (sampleRows == 0 || sampleBytes == 0) {
+            return 0;
         }
-        return new String[0];
+        double averageRowBytes = (double) sampleBytes / sampleRows;
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(dataBytes / averageRowBytes));
     }
 
     /**
@@ -269,21 +617,4 @@ public class TSVImporter {
             return "TEXT";
         }
     }
-
-    /**
-     * 计算 TSV 文件的总记录数。
-     *
-     * @param tsvFile TSV 文件。
-     * @return 总记录数。
-     * @throws IOException 如果读取文件时发生错误。
-     */
-    private int countTotalRecords(File tsvFile) throws IOException {
-        int lines = 0;
-        try (BufferedReader br = new BufferedReader(new FileReader(tsvFile, StandardCharsets.UTF_8))) {
-            while (br.readLine() != null) {
-                lines++;
-            }
-        }
-        return lines;
-    }
 }
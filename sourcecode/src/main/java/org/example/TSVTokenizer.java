@@ -0,0 +1,360 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * TSVTokenizer 类是一个流式的 TSV 分词器，用于替代逐行创建 CSVParser 的解析方式。
+ * <p>
+ * 解析规则与导入原先使用的 CSVFormat 保持一致：制表符分隔、双引号包围、反斜杠转义、
+ * 忽略字段前后的空白（引号内的内容不做处理）。每条记录对应一个物理行（\n、\r\n 或 \r 结尾），
+ * 空行解析为 0 个字段。
+ * <p>
+ * 读取缓冲区、字段内容缓冲区和字段偏移数组在各行之间复用，只有调用 {@link #getField(int)}
+ * 或 {@link #toArray(int)} 时才会创建 String 对象。
+ */
+public class TSVTokenizer implements Closeable {
+    private static final char DELIMITER = '\t';
+    private static final char QUOTE = '"';
+    private static final char ESCAPE = '\\';
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private char[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private boolean skipLF = false; // 上一行以 \r 结尾，需要跳过紧随的 \n
+
+    // 当前行在 buf 中的范围
+    private int lineStart = 0;
+    private int lineEnd = 0;
+
+    // 当前记录的字段内容及偏移（复用）
+    private char[] out = new char[1024];
+    private int outLength = 0;
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount = 0;
+
+    /**
+     * 构造方法。
+     *
+     * @param reader 输入字符流。
+     */
+    public TSVTokenizer(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 构造方法。
+     *
+     * @param reader     输入字符流。
+     * @param bufferSize 读取缓冲区的初始大小（超长行会自动扩容）。
+     */
+    public TSVTokenizer(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buf = new char[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * 读取并解析下一条记录。
+     * 如果该行格式错误（例如引号未闭合），整行已被消费并抛出 MalformedRecordException，调用方可以继续读取下一行。
+     *
+     * @return 如果读到了记录返回 true；到达文件末尾返回 false。
+     * @throws MalformedRecordException 如果该行格式错误。
+     * @throws IOException              如果读取失败。
+     */
+    public boolean nextRecord() throws IOException {
+        fieldCount = 0;
+        outLength = 0;
+        if (!readLine()) {
+            return false;
+        }
+        tokenize();
+        return true;
+    }
+
+    /**
+     * 获取当前记录的字段数。
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * 获取当前记录中某个字段的长度。
+     */
+    public int getFieldLength(int index) {
+        return fieldEnds[index] - fieldStarts[index];
+    }
+
+    /**
+     * 生成当前记录中某个字段的字符串。
+     *
+     * @param index 字段索引。
+     * @return 字段内容。
+     */
+    public String getField(int index) {
+        int start = fieldStarts[index];
+        int length = fieldEnds[index] - start;
+        return length == 0 ? "" : new String(out, start, length);
+    }
+
+    /**
+     * 将当前记录的前 maxFields 个字段生成字符串数组，多余的字段不会创建 String。
+     *
+     * @param maxFields 最多需要的字段数。
+     * @return 字段数组，长度为 min(字段数, maxFields)。
+     */
+    public String[] toArray(int maxFields) {
+        String[] fields = new String[Math.min(fieldCount, maxFields)];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = getField(i);
+        }
+        return fields;
+    }
+
+    /**
+     * 计算当前行（含一个换行符）按 UTF-8 编码的字节数，用于估算总记录数。
+     */
+    public int getRecordUtf8Length() {
+        int length = 1;
+        for (int i = lineStart; i < lineEnd; i++) {
+            char c = buf[i];
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 在缓冲区中定位下一行，设置 lineStart 和 lineEnd。
+     *
+     * @return 如果还有行返回 true。
+     */
+    private boolean readLine() throws IOException {
+        if (skipLF) {
+            if (pos >= limit && !eof) {
+                fill();
+            }
+            if (pos < limit && buf[pos] == '\n') {
+                pos++;
+            }
+            skipLF = false;
+        }
+        int scan = pos;
+        while (true) {
+            for (; scan < limit; scan++) {
+                char c = buf[scan];
+                if (c == '\n' || c == '\r') {
+                    lineStart = pos;
+                    lineEnd = scan;
+                    pos = scan + 1;
+                    skipLF = c == '\r';
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos < limit) {
+                    // 最后一行没有换行符
+                    lineStart = pos;
+                    lineEnd = limit;
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            int scanned = scan - pos;
+            fill();
+            scan = pos + scanned;
+        }
+    }
+
+    /**
+     * 将未处理的内容移动到缓冲区开头并继续读取，必要时扩容。
+     */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            char[] grown = new char[buf.length * 2];
+            System.arraycopy(buf, 0, grown, 0, limit);
+            buf = grown;
+        }
+        int n = reader.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    /**
+     * 解析 buf[lineStart, lineEnd) 中的字段。
+     */
+    private void tokenize() throws IOException {
+        int end = lineEnd;
+        int p = lineStart;
+        if (p == end) {
+            return; // 空行
+        }
+        ensureOutCapacity(end - p);
+        while (true) {
+            // 跳过字段前的空白
+            while (p < end && buf[p] != DELIMITER && Character.isWhitespace(buf[p])) {
+                p++;
+            }
+            int fieldStart = outLength;
+            if (p < end && buf[p] == QUOTE) {
+                p = parseQuoted(p + 1, end);
+            } else {
+                while (p < end && buf[p] != DELIMITER) {
+                    char c = buf[p++];
+                    if (c == ESCAPE) {
+                        p = appendEscaped(p, end);
+                    } else {
+                        out[outLength++] = c;
+                    }
+                }
+                // 去除字段末尾的空白
+                while (outLength > fieldStart && Character.isWhitespace(out[outLength - 1])) {
+                    outLength--;
+                }
+            }
+            addField(fieldStart, outLength);
+            if (p >= end) {
+                return;
+            }
+            p++; // 跳过分隔符
+        }
+    }
+
+    /**
+     * 解析引号包围的字段，p 指向开引号之后的位置。
+     *
+     * @return 字段结束后的位置（分隔符或行尾）。
+     */
+    private int parseQuoted(int p, int end) throws IOException {
+        while (true) {
+            if (p >= end) {
+                throw new MalformedRecordException("EOF reached before encapsulated token finished");
+            }
+            char c = buf[p++];
+            if (c == ESCAPE) {
+                p = appendEscaped(p, end);
+            } else if (c == QUOTE) {
+                if (p < end && buf[p] == QUOTE) {
+                    out[outLength++] = QUOTE; // 两个连续的引号表示一个引号
+                    p++;
+                } else {
+                    // 闭引号之后到分隔符之间只允许出现空白
+                    while (p < end && buf[p] != DELIMITER) {
+                        if (!Character.isWhitespace(buf[p])) {
+                            throw new MalformedRecordException("invalid char between encapsulated token and delimiter");
+                        }
+                        p++;
+                    }
+                    return p;
+                }
+            } else {
+                out[outLength++] = c;
+            }
+        }
+    }
+
+    /**
+     * 处理转义字符，p 指向反斜杠之后的位置。
+     *
+     * @return 转义序列之后的位置。
+     */
+    private int appendEscaped(int p, int end) throws IOException {
+        if (p >= end) {
+            throw new MalformedRecordException("EOF whilst processing escape sequence");
+        }
+        char c = buf[p++];
+        switch (c) {
+            case 'r':
+                out[outLength++] = '\r';
+                break;
+            case 'n':
+                out[outLength++] = '\n';
+                break;
+            case 't':
+                out[outLength++] = '\t';
+                break;
+            case 'b':
+                out[outLength++] = '\b';
+                break;
+            case 'f':
+                out[outLength++] = '\f';
+                break;
+            case '\r':
+            case '\n':
+            case '\f':
+            case '\t':
+            case '\b':
+            case QUOTE:
+            case ESCAPE:
+                out[outLength++] = c;
+                break;
+            default:
+                // 不认识的转义序列原样保留
+                out[outLength++] = ESCAPE;
+                out[outLength++] = c;
+                break;
+        }
+        return p;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            int[] starts = new int[fieldCount * 2];
+            int[] ends = new int[fieldCount * 2];
+            System.arraycopy(fieldStarts, 0, starts, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, ends, 0, fieldCount);
+            fieldStarts = starts;
+            fieldEnds = ends;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * 字段内容不会比原始行更长（未知转义序列保留两个字符，与原文等长），因此按行长分配即可。
+     */
+    private void ensureOutCapacity(int lineLength) {
+        if (out.length < lineLength) {
+            out = new char[Math.max(lineLength, out.length * 2)];
+        }
+    }
+
+    /**
+     * 当前行格式错误时抛出的异常，该行已被完整跳过。
+     */
+    public static class MalformedRecordException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedRecordException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * TopK 类从逐个送入的（分数, id）中保留分数最高的 k 个，供 {@link FuzzySearch} 排序候选行。
+ * <p>
+ * 内部是大小为 k 的小根堆，堆顶是当前保留的最差的一个：新来的比它好时替换堆顶，否则丢弃。
+ * 内存占用只与 k 有关，与送入的个数无关。分数相同时 id 较小的排在前面，因此结果与送入的顺序无关；
+ * 并行计算时每个线程使用自己的对象，最后用 {@link #merge} 合并，结果与顺序计算相同：
+ * <pre>
+ * TopK top = IntStream.range(0, n).parallel().collect(() -&gt; new TopK(k),
+ *         (heap, i) -&gt; heap.offer(score(i), id(i)), TopK::merge);
+ * </pre>
+ * {@link #cutoff()} 是进入结果需要的最低分数，计算分数时可以据此提前放弃（见 {@link SimilarityScorer#score(CharSequence, double)}）。
+ * <p>
+ * 对象不是线程安全的。
+ */
+public final class TopK {
+    private final int k;
+    private final double[] scores;
+    private final long[] ids;
+    private int size = 0;
+
+    /**
+     * 构造方法。
+     *
+     * @param k 保留的个数，小于 0 时按 0 处理。
+     */
+    public TopK(int k) {
+        this.k = Math.max(0, k);
+        this.scores = new double[this.k];
+        this.ids = new long[this.k];
+    }
+
+    /**
+     * 保留的个数上限。
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * 当前保留的个数。
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 进入结果需要的最低分数：还没有保留满 k 个时为负无穷；已满时为最差的一个的分数
+     * （分数与之相同时还要比较 id）。
+     */
+    public double cutoff() {
+        if (size < k) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return k == 0 ? Double.POSITIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * 送入一个分数。
+     *
+     * @param score 分数。
+     * @param id    行的 id，同一个 id 只应送入一次。
+     * @return 是否被保留（之后仍可能被更好的挤出）。
+     */
+    public boolean offer(double score, long id) {
+        if (size < k) {
+            scores[size] = score;
+            ids[size] = id;
+            siftUp(size++);
+            return true;
+        }
+        if (k == 0 || !better(score, id, scores[0], ids[0])) {
+            return false;
+        }
+        scores[0] = score;
+        ids[0] = id;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * 把另一个对象保留的分数合并进来。
+     *
+     * @param other 另一个对象。
+     * @return 当前对象。
+     */
+    public TopK merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.scores[i], other.ids[i]);
+        }
+        return this;
+    }
+
+    /**
+     * 保留的 id，按分数从高到低排列（分数相同时 id 小的在前）。
+     */
+    public long[] ids() {
+        Integer[] order = order();
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = ids[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * 保留的分数，与 {@link #ids()} 的顺序相同。
+     */
+    public double[] scores() {
+        Integer[] order = order();
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = scores[order[i]];
+        }
+        return result;
+    }
+
+    private Integer[] order() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> better(scores[a], ids[a], scores[b], ids[b]) ? -1
+                : better(scores[b], ids[b], scores[a], ids[a]) ? 1 : 0);
+        return order;
+    }
+
+    /**
+     * (scoreA, idA) 是否排在 (scoreB, idB) 前面。
+     */
+    private static boolean better(double scoreA, long idA, double scoreB, long idB) {
+        int c = Double.compare(scoreA, scoreB);
+        return c > 0 || (c == 0 && idA < idB);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(scores[parent], ids[parent], scores[i], ids[i])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && better(scores[worst], ids[worst], scores[left], ids[left])) {
+                worst = left;
+            }
+            if (right < size && better(scores[worst], ids[worst], scores[right], ids[right])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+}
@@ -0,0 +1,420 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utf8TSVScanner 类直接在 UTF-8 字节上扫描 TSV 数据，解析规则与 {@link TSVTokenizer} 完全一致。
+ * <p>
+ * 制表符、换行符、引号和反斜杠都是 ASCII 字符，在 UTF-8 中不会出现在多字节字符内部，
+ * 因此可以不解码直接按字节切分。只有最终存为 TEXT 的字段才会解码成 String，
+ * INTEGER 和 REAL 字段直接从字节解析数值。
+ * <p>
+ * 该类不是线程安全的，每个解析线程应使用自己的实例，并通过 {@link #reset} 复用内部数组。
+ */
+public class Utf8TSVScanner {
+    private static final byte DELIMITER = '\t';
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean skipLF;
+
+    private byte[] out = new byte[1024];
+    private int outLength;
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+
+    /**
+     * 设置要扫描的字节区间，区间必须以完整的行结束。
+     *
+     * @param data   字节数组。
+     * @param offset 起始位置。
+     * @param length 字节数。
+     */
+    public void reset(byte[] data, int offset, int length) {
+        this.buf = data;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.skipLF = false;
+        this.fieldCount = 0;
+        this.outLength = 0;
+    }
+
+    /**
+     * 解析下一条记录。格式错误的行会被完整跳过并抛出异常，调用方可以继续读取下一行。
+     *
+     * @return 如果读到了记录返回 true；到达区间末尾返回 false。
+     * @throws TSVTokenizer.MalformedRecordException 如果该行格式错误。
+     */
+    public boolean nextRecord() throws TSVTokenizer.MalformedRecordException {
+        fieldCount = 0;
+        outLength = 0;
+        if (skipLF) {
+            if (pos < limit && buf[pos] == '\n') {
+                pos++;
+            }
+            skipLF = false;
+        }
+        if (pos >= limit) {
+            return false;
+        }
+        int lineStart = pos;
+        int lineEnd = lineStart;
+        while (lineEnd < limit && buf[lineEnd] != '\n' && buf[lineEnd] != '\r') {
+            lineEnd++;
+        }
+        if (lineEnd < limit) {
+            skipLF = buf[lineEnd] == '\r';
+            pos = lineEnd + 1;
+        } else {
+            pos = limit;
+        }
+        tokenize(lineStart, lineEnd);
+        return true;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * 将字段解码为字符串。
+     */
+    public String getString(int index) {
+        int start = fieldStarts[index];
+        int length = fieldEnds[index] - start;
+        return length == 0 ? "" : new String(out, start, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按列类型转换字段，语义与 {@link DOperator#convertRow} 相同：先去除首尾空白，
+     * 空值为 null，数值转换失败时记录错误并返回 null。
+     *
+     * @param index      字段索引；超出字段数时返回 null。
+     * @param kind       列的值类型。
+     * @param columnName 列名，用于错误信息。
+     * @return 转换后的值。
+     */
+    public Object convert(int index, ColumnKind kind, String columnName) {
+        if (index >= fieldCount) {
+            return null;
+        }
+        // 与 String.trim() 一致，去除首尾 <= ' ' 的字符
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        while (start < end && (out[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (out[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        try {
+            switch (kind) {
+                case INTEGER:
+                    return parseInt(start, end);
+                case REAL:
+                    return parseDouble(start, end);
+                case BOOLEAN:
+                    return isTrue(start, end);
+                case ANNOTATIONS:
+                    // 移除大括号和单引号
+                    return decode(start, end).replaceAll("[{}']", "");
+                case TEXT:
+                default:
+                    return decode(start, end);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("数据类型转换失败，字段: " + columnName + ", 值: " + decode(start, end));
+            return null;
+        }
+    }
+
+    private String decode(int start, int end) {
+        return new String(out, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按 Integer.parseInt 的规则解析整数，含非 ASCII 字符时交给 Integer.parseInt 处理。
+     */
+    private int parseInt(int start, int end) {
+        int p = start;
+        boolean negative = false;
+        if (out[p] == '-' || out[p] == '+') {
+            negative = out[p] == '-';
+            p++;
+            if (p == end) {
+                throw new NumberFormatException();
+            }
+        }
+        long value = 0;
+        for (; p < end; p++) {
+            int d = out[p] - '0';
+            if (d < 0 || d > 9) {
+                if (out[p] < 0) {
+                    return Integer.parseInt(decode(start, end)); // Unicode 数字
+                }
+                throw new NumberFormatException();
+            }
+            value = value * 10 + d;
+            if (value > 1L + Integer.MAX_VALUE) {
+                throw new NumberFormatException();
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException();
+        }
+        return (int) value;
+    }
+
+    /**
+     * 解析浮点数。尾数不超过 2^53、十进制指数绝对值不超过 22 的普通小数直接计算（一次乘除，结果精确舍入），
+     * 其余形式（超长尾数、NaN、十六进制、类型后缀等）交给 Double.parseDouble 处理。
+     */
+    private double parseDouble(int start, int end) {
+        int p = start;
+        boolean negative = false;
+        if (out[p] == '-' || out[p] == '+') {
+            negative = out[p] == '-';
+            p++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean sawDigit = false;
+        boolean sawDot = false;
+        for (; p < end; p++) {
+            byte c = out[p];
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (digits >= 18) {
+                    return Double.parseDouble(decode(start, end));
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (sawDot) {
+                    scale--;
+                }
+            } else if (c == '.' && !sawDot) {
+                sawDot = true;
+            } else {
+                break;
+            }
+        }
+        if (p < end && (out[p] == 'e' || out[p] == 'E') && sawDigit) {
+            p++;
+            boolean negativeExponent = false;
+            if (p < end && (out[p] == '-' || out[p] == '+')) {
+                negativeExponent = out[p] == '-';
+                p++;
+            }
+            int exponent = 0;
+            int exponentDigits = 0;
+            for (; p < end && out[p] >= '0' && out[p] <= '9'; p++) {
+                exponent = exponent * 10 + (out[p] - '0');
+                exponentDigits++;
+                if (exponent > 9999) {
+                    return Double.parseDouble(decode(start, end));
+                }
+            }
+            if (exponentDigits == 0) {
+                return Double.parseDouble(decode(start, end));
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (p != end || !sawDigit) {
+            return Double.parseDouble(decode(start, end));
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (mantissa > MAX_EXACT_MANTISSA || scale > 22 || scale < -22) {
+            return Double.parseDouble(decode(start, end));
+        }
+        double value = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * 与 Boolean.parseBoolean 一致：忽略大小写等于 "true" 时为 true，否则为 false。
+     */
+    private boolean isTrue(int start, int end) {
+        return end - start == 4
+                && (out[start] | 0x20) == 't'
+                && (out[start + 1] | 0x20) == 'r'
+                && (out[start + 2] | 0x20) == 'u'
+                && (out[start + 3] | 0x20) == 'e';
+    }
+
+    /**
+     * 解析 buf[lineStart, lineEnd) 中的字段，逻辑与 TSVTokenizer 相同。
+     */
+    private void tokenize(int lineStart, int lineEnd) throws TSVTokenizer.MalformedRecordException {
+        int end = lineEnd;
+        int p = lineStart;
+        if (p == end) {
+            return; // 空行
+        }
+        if (out.length < end - p) {
+            out = new byte[Math.max(end - p, out.length * 2)];
+        }
+        while (true) {
+            // 跳过字段前的空白
+            int w;
+            while (p < end && buf[p] != DELIMITER && (w = whitespaceLength(buf, p, end)) > 0) {
+                p += w;
+            }
+            int fieldStart = outLength;
+            if (p < end && buf[p] == QUOTE) {
+                p = parseQuoted(p + 1, end);
+            } else {
+                while (p < end && buf[p] != DELIMITER) {
+                    byte c = buf[p++];
+                    if (c == ESCAPE) {
+                        p = appendEscaped(p, end);
+                    } else {
+                        out[outLength++] = c;
+                    }
+                }
+                // 去除字段末尾的空白
+                while (outLength > fieldStart && (w = trailingWhitespaceLength(out, fieldStart, outLength)) > 0) {
+                    outLength -= w;
+                }
+            }
+            addField(fieldStart, outLength);
+            if (p >= end) {
+                return;
+            }
+            p++; // 跳过分隔符
+        }
+    }
+
+    private int parseQuoted(int p, int end) throws TSVTokenizer.MalformedRecordException {
+        while (true) {
+            if (p >= end) {
+                throw new TSVTokenizer.MalformedRecordException("EOF reached before encapsulated token finished");
+            }
+            byte c = buf[p++];
+            if (c == ESCAPE) {
+                p = appendEscaped(p, end);
+            } else if (c == QUOTE) {
+                if (p < end && buf[p] == QUOTE) {
+                    out[outLength++] = QUOTE; // 两个连续的引号表示一个引号
+                    p++;
+                } else {
+                    // 闭引号之后到分隔符之间只允许出现空白
+                    while (p < end && buf[p] != DELIMITER) {
+                        int w = whitespaceLength(buf, p, end);
+                        if (w == 0) {
+                            throw new TSVTokenizer.MalformedRecordException("invalid char between encapsulated token and delimiter");
+                        }
+                        p += w;
+                    }
+                    return p;
+                }
+            } else {
+                out[outLength++] = c;
+            }
+        }
+    }
+
+    private int appendEscaped(int p, int end) throws TSVTokenizer.MalformedRecordException {
+        if (p >= end) {
+            throw new TSVTokenizer.MalformedRecordException("EOF whilst processing escape sequence");
+        }
+        byte c = buf[p++];
+        switch (c) {
+            case 'r':
+                out[outLength++] = '\r';
+                break;
+            case 'n':
+                out[outLength++] = '\n';
+                break;
+            case 't':
+                out[outLength++] = '\t';
+                break;
+            case 'b':
+                out[outLength++] = '\b';
+                break;
+            case 'f':
+                out[outLength++] = '\f';
+                break;
+            case '\r':
+            case '\n':
+            case '\f':
+            case '\t':
+            case '\b':
+            case QUOTE:
+            case ESCAPE:
+                out[outLength++] = c;
+                break;
+            default:
+                // 不认识的转义序列原样保留（多字节字符的后续字节按普通字节复制）
+                out[outLength++] = ESCAPE;
+                out[outLength++] = c;
+                break;
+        }
+        return p;
+    }
+
+    /**
+     * 返回 p 处空白字符（按 Character.isWhitespace 判断）的 UTF-8 字节数，不是空白时返回 0。
+     * 非 ASCII 的空白字符都在 U+1680 到 U+3000 之间，编码为 3 个字节。
+     */
+    private static int whitespaceLength(byte[] b, int p, int end) {
+        int c = b[p] & 0xFF;
+        if (c < 0x80) {
+            return Character.isWhitespace(c) ? 1 : 0;
+        }
+        if (c >= 0xE1 && c <= 0xE3 && p + 2 < end
+                && (b[p + 1] & 0xC0) == 0x80 && (b[p + 2] & 0xC0) == 0x80) {
+            int codePoint = ((c & 0x0F) << 12) | ((b[p + 1] & 0x3F) << 6) | (b[p + 2] & 0x3F);
+            return Character.isWhitespace(codePoint) ? 3 : 0;
+        }
+        return 0;
+    }
+
+    /**
+     * 返回 [start, end) 末尾空白字符的 UTF-8 字节数，不是空白时返回 0。
+     */
+    private static int trailingWhitespaceLength(byte[] b, int start, int end) {
+        int c = b[end - 1] & 0xFF;
+        if (c < 0x80) {
+            return Character.isWhitespace(c) ? 1 : 0;
+        }
+        if (end - 3 >= start && whitespaceLength(b, end - 3, end) == 3) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            int[] starts = new int[fieldCount * 2];
+            int[] ends = new int[fieldCount * 2];
+            System.arraycopy(fieldStarts, 0, starts, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, ends, 0, fieldCount);
+            fieldStarts = starts;
+            fieldEnds = ends;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+}
@@ -0,0 +1,244 @@
+package org.example;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * WalCheckpointer 类管理 WAL 模式下的检查点，由 {@link ConnectionManager} 在写连接进入 WAL 模式后启动，
+ * 通过 {@link DOperator#getWalCheckpointer()} 获取。
+ * <p>
+ * WAL 模式下写入先追加到 “-wal” 文件，检查点再把其中的页写回数据库文件。检查点分三层：
+ * <ul>
+ *     <li>写连接每次提交后，WAL 超过 wal_autocheckpoint 页时由 SQLite 自动执行被动检查点；</li>
+ *     <li>后台每隔一段时间执行一次被动检查点（PASSIVE），不等待读写，正在读取旧数据的连接需要的页留到下一次；</li>
+ *     <li>一段时间没有写入后执行一次截断检查点（TRUNCATE），把 WAL 文件截断为 0。</li>
+ * </ul>
+ * 检查点使用单独的连接，不占用写连接，也不使缓存的查询结果失效。遇到正在进行的写入或读取时不等待，留到下一次。
+ */
+public class WalCheckpointer implements AutoCloseable {
+    static final long DEFAULT_INTERVAL_MILLIS = 5000; // 后台被动检查点的间隔
+    static final long DEFAULT_IDLE_MILLIS = 30000; // 多久没有写入后截断 WAL 文件
+    private static final String URL_PREFIX = "jdbc:sqlite:";
+
+    private final LongSupplier writeGeneration; // 写连接的写入次数，变化时说明有新的写入
+    private final String url;
+    private final File walFile; // 内存数据库等没有 WAL 文件时为 null
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+    private Connection conn; // 执行检查点的连接
+    private volatile long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+    private volatile long idleMillis = DEFAULT_IDLE_MILLIS;
+    private long lastGeneration = -1; // 上次检查时写连接的写入次数
+    private long lastWriteTime = System.nanoTime(); // 上次发现写入的时间
+    private boolean truncated = false; // 上次写入之后是否已经截断
+    private volatile Result lastResult = null;
+
+    /**
+     * 一次检查点的结果，对应 PRAGMA wal_checkpoint 返回的一行。
+     */
+    public static final class Result {
+        private final String mode;
+        private final boolean busy;
+        private final int walFrames;
+        private final int checkpointedFrames;
+
+        Result(String mode, boolean busy, int walFrames, int checkpointedFrames) {
+            this.mode = mode;
+            this.busy = busy;
+            this.walFrames = walFrames;
+            this.checkpointedFrames = checkpointedFrames;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        /**
+         * 是否因为有连接正在写入或读取而没有完成。
+         */
+        public boolean isBusy() {
+            return busy;
+        }
+
+        /**
+         * WAL 中的页数。
+         */
+        public int getWalFrames() {
+            return walFrames;
+        }
+
+        /**
+         * 已写回数据库文件的页数。
+         */
+        public int getCheckpointedFrames() {
+            return checkpointedFrames;
+        }
+
+        @Override
+        public String toString() {
+            return mode + (busy ? " (busy)" : "") + ": " + checkpointedFrames + "/" + walFrames;
+        }
+    }
+
+    /**
+     * 构造方法。
+     *
+     * @param writeGeneration 读取写连接的写入次数（{@link ConnectionManager#getWriteGeneration()}），用于判断是否有新的写入。
+     * @param url             JDBC 连接地址。
+     */
+    WalCheckpointer(LongSupplier writeGeneration, String url) {
+        this.writeGeneration = writeGeneration;
+        this.url = url;
+        String path = url.startsWith(URL_PREFIX) ? url.substring(URL_PREFIX.length()) : "";
+        this.walFile = path.isEmpty() || path.startsWith(":") || path.startsWith("file:") ? null : new File(path + "-wal");
+    }
+
+    /**
+     * 设置后台被动检查点的间隔，正在运行时立即按新间隔重新安排。
+     *
+     * @param intervalMillis 间隔（毫秒）。
+     * @return 当前对象。
+     */
+    public synchronized WalCheckpointer setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = Math.max(1, intervalMillis);
+        if (task != null) {
+            task.cancel(false);
+            schedule();
+        }
+        return this;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * 设置多久没有写入后截断 WAL 文件。
+     *
+     * @param idleMillis 时间（毫秒）。
+     * @return 当前对象。
+     */
+    public WalCheckpointer setIdleMillis(long idleMillis) {
+        this.idleMillis = Math.max(0, idleMillis);
+        return this;
+    }
+
+    public long getIdleMillis() {
+        return idleMillis;
+    }
+
+    /**
+     * WAL 文件的大小（字节）；没有 WAL 文件时为 0。截断之前文件不会变小，只会从头重用。
+     */
+    public long getWalBytes() {
+        return walFile == null ? 0 : walFile.length();
+    }
+
+    /**
+     * 最近一次由本对象执行的检查点的结果；还没有执行过时返回 null。
+     */
+    public Result getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * 启动后台检查点，已启动时不做任何事。
+     */
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wal-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        schedule();
+    }
+
+    private void schedule() {
+        task = executor.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 立即执行一次检查点。
+     *
+     * @param truncate 为 true 时执行截断检查点，否则执行被动检查点。
+     * @return 检查点的结果。
+     * @throws SQLException 如果执行失败。
+     */
+    public synchronized Result checkpoint(boolean truncate) throws SQLException {
+        if (conn == null || conn.isClosed()) {
+            conn = DriverManager.getConnection(url);
+            try (Statement stmt = conn.createStatement()) {
+                // sqlite-jdbc 默认 busy_timeout 为 3000 毫秒；设为 0，有写入或读取时立即返回 busy，不阻塞其他连接
+                stmt.execute("PRAGMA busy_timeout = 0;");
+            }
+        }
+        String mode = truncate ? "TRUNCATE" : "PASSIVE";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(" + mode + ");")) {
+            Result result = rs.next()
+                    ? new Result(mode, rs.getInt(1) != 0, rs.getInt(2), rs.getInt(3))
+                    : new Result(mode, true, -1, -1);
+            lastResult = result;
+            return result;
+        }
+    }
+
+    /**
+     * 后台定期执行：有新的写入时执行被动检查点，空闲足够长时间后截断一次。
+     */
+    private synchronized void tick() {
+        try {
+            long generation = writeGeneration.getAsLong();
+            long now = System.nanoTime();
+            if (generation != lastGeneration) {
+                lastGeneration = generation;
+                lastWriteTime = now;
+                truncated = false;
+            }
+            if (truncated || getWalBytes() == 0) {
+                return;
+            }
+            boolean idle = now - lastWriteTime >= TimeUnit.MILLISECONDS.toNanos(idleMillis);
+            Result result = checkpoint(idle);
+            if (idle && !result.isBusy()) {
+                truncated = true;
+            }
+        } catch (SQLException e) {
+            System.err.println("WAL 检查点出错: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("WAL 检查点出错: " + e);
+        }
+    }
+
+    /**
+     * 停止后台检查点并关闭检查点连接。
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+            task = null;
+        }
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("关闭数据库连接时出错: " + e.getMessage());
+            }
+            conn = null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.example.BKTree;
+import org.example.DOperator;
+import org.example.EditDistanceIndex;
+import org.example.Levenshtein;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * 将 EditDistanceIndex 的查找结果与逐行计算编辑距离（commons-text）的结果对比：
+ * 依次经过建立、插入、其他连接的更新和删除、关闭后重新打开、删除表后重新导入，每一步之后都对比一次。
+ */
+public class EditDistanceIndexTest {
+    private static final String TABLE = "names";
+    private static final String COLUMN = "name";
+    private static final char[] ALPHABET = {'a', 'b', 'c', 'd', 'A', 'B', ' '};
+    private static final LevenshteinDistance REFERENCE = LevenshteinDistance.getDefaultInstance();
+
+    private static int cases = 0;
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException, SQLException {
+        File file = File.createTempFile("edit-distance", ".db");
+        String url = "jdbc:sqlite:" + file.getPath();
+        Random random = new Random(42);
+        try {
+            try (DOperator operator = new DOperator(file.getPath())) {
+                operator.createTable(TABLE, new String[]{COLUMN}, new String[]{"TEXT"});
+                insertRandom(operator, random, 2000);
+                EditDistanceIndex index = operator.editDistanceIndex(TABLE, COLUMN);
+                check("建立", url, index, random);
+
+                insertRandom(operator, random, 200);
+                check("插入", url, index, random);
+
+                try (Connection conn = DriverManager.getConnection(url);
+                     Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("UPDATE " + TABLE + " SET " + COLUMN + " = 'ab' || " + COLUMN + " WHERE id % 7 = 0;");
+                    stmt.executeUpdate("UPDATE " + TABLE + " SET " + COLUMN + " = NULL WHERE id % 11 = 0;");
+                    stmt.executeUpdate("DELETE FROM " + TABLE + " WHERE id % 13 = 0;");
+                }
+                operator.insert(TABLE, new String[]{"dabba"}); // 使写入次数变化，其他连接的写入不会改变它
+                check("更新和删除", url, index, random);
+            }
+
+            // 关闭时保存；关闭期间其他程序修改的行在重新打开后补充
+            try (Connection conn = DriverManager.getConnection(url);
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE " + TABLE + " SET " + COLUMN + " = 'cc' || " + COLUMN + " WHERE id % 5 = 0;");
+                stmt.executeUpdate("DELETE FROM " + TABLE + " WHERE id % 17 = 0;");
+            }
+            try (DOperator operator = new DOperator(file.getPath())) {
+                EditDistanceIndex index = operator.editDistanceIndex(TABLE, COLUMN);
+                check("重新打开", url, index, random);
+
+                // 删除表后用同名表重新导入，id 从头开始，最大 id 也不比原来小
+                try (Connection conn = DriverManager.getConnection(url);
+                     Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DROP TABLE " + TABLE + ";");
+                }
+                operator.createTable(TABLE, new String[]{COLUMN}, new String[]{"TEXT"});
+                insertRandom(operator, random, 3000);
+                check("重新导入", url, index, random);
+
+                // 删除后重新打开的索引从表中的数据建立
+                operator.dropEditDistanceIndex(TABLE, COLUMN);
+                check("删除索引后重新打开", url, operator.editDistanceIndex(TABLE, COLUMN), random);
+            }
+        } finally {
+            for (String suffix : new String[]{"", "-wal", "-shm"}) {
+                new File(file.getPath() + suffix).delete();
+            }
+        }
+
+        System.out.println(cases + " 个用例，" + failures + " 个不一致");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void insertRandom(DOperator operator, Random random, int rows) throws SQLException {
+        List<String[]> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new String[]{random.nextInt(50) == 0 ? "" : randomName(random)});
+        }
+        operator.batchInsert(TABLE, batch);
+    }
+
+    private static String randomName(Random random) {
+        int length = 1 + random.nextInt(7);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 对若干随机关键字，对比半径查找和最近邻查找的结果与逐行计算的结果。
+     */
+    private static void check(String step, String url, EditDistanceIndex index, Random random) throws SQLException {
+        Map<Long, String> rows = new HashMap<>();
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT id, " + COLUMN + " FROM " + TABLE + " WHERE " + COLUMN + " IS NOT NULL;");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                rows.put(rs.getLong(1), Levenshtein.normalize(rs.getString(2)));
+            }
+        }
+        int stepFailures = failures;
+        for (int i = 0; i < 50; i++) {
+            String query = randomName(random);
+            int radius = random.nextInt(3);
+
+            // 半径查找：距离不超过 radius 的行应当一行不多、一行不少，距离也应相同
+            Map<Long, Integer> expected = new HashMap<>();
+            for (Map.Entry<Long, String> row : rows.entrySet()) {
+                int d = REFERENCE.apply(Levenshtein.normalize(query), row.getValue());
+                if (d <= radius) {
+                    expected.put(row.getKey(), d);
+                }
+            }
+            Map<Long, Integer> actual = new HashMap<>();
+            for (BKTree.Match match : index.within(query, radius)) {
+                for (long id : match.getIds()) {
+                    if (actual.put(id, match.getDistance()) != null) {
+                        actual.put(id, -1); // 同一行出现两次
+                    }
+                }
+            }
+            compare(step + " within(" + query + ", " + radius + ")", expected, actual);
+
+            // 最近邻查找：距离相同的值可能任取其一，只对比各个值的距离
+            int n = 1 + random.nextInt(10);
+            List<Integer> expectedDistances = new ArrayList<>();
+            for (String value : new TreeSet<>(rows.values())) {
+                expectedDistances.add(REFERENCE.apply(Levenshtein.normalize(query), value));
+            }
+            Collections.sort(expectedDistances);
+            expectedDistances = expectedDistances.subList(0, Math.min(n, expectedDistances.size()));
+            List<Integer> actualDistances = new ArrayList<>();
+            for (BKTree.Match match : index.nearest(query, n)) {
+                actualDistances.add(match.getDistance());
+                for (long id : match.getIds()) {
+                    String value = rows.get(id);
+                    if (value == null || !value.equals(match.getValue())) {
+                        actualDistances.add(-1); // 已删除的行或旧值
+                    }
+                }
+            }
+            compare(step + " nearest(" + query + ", " + n + ")", expectedDistances, actualDistances);
+        }
+        System.out.println(step + ": " + rows.size() + " 行，" + (failures - stepFailures) + " 个不一致");
+    }
+
+    private static void compare(String what, Object expected, Object actual) {
+        cases++;
+        if (!expected.equals(actual)) {
+            failures++;
+            if (failures <= 10) {
+                System.out.println(what + " 不一致: expected=" + expected + " actual=" + actual);
+            }
+        }
+    }
+}
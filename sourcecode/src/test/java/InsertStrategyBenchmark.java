@@ -0,0 +1,78 @@
+import org.example.DOperator;
+import org.example.InsertStrategy;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 比较逐行批处理（BATCH）和多行 VALUES（MULTI_ROW）两种插入方式在窄表和宽表上的写入速度，
+ * 并显示 AUTO 方式的选择结果。
+ * 用法：InsertStrategyBenchmark [行数]
+ */
+public class InsertStrategyBenchmark {
+    private static final int BATCH_ROWS = 10000; // 每次 batchInsertConverted 的行数，与导入时一个字节块的行数相当
+
+    public static void main(String[] args) throws SQLException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int[] widths = {4, 24};
+        InsertStrategy[] strategies = {InsertStrategy.BATCH, InsertStrategy.MULTI_ROW, InsertStrategy.AUTO};
+
+        for (int width : widths) {
+            for (InsertStrategy strategy : strategies) {
+                double rate = run(width, rows, strategy);
+                System.out.printf("列数 %2d  %-9s  %,10.0f 行/秒%n", width, strategy, rate);
+            }
+        }
+    }
+
+    /**
+     * 创建一个新数据库和指定列数的表（整数、浮点、文本列交替），按指定方式插入并返回每秒行数。
+     */
+    private static double run(int width, int rows, InsertStrategy strategy) throws SQLException {
+        File dbFile = new File("insert_benchmark.db");
+        dbFile.delete();
+
+        String[] keys = new String[width];
+        String[] types = new String[width];
+        for (int i = 0; i < width; i++) {
+            keys[i] = "c" + i;
+            types[i] = i % 3 == 0 ? "INTEGER" : i % 3 == 1 ? "REAL" : "TEXT";
+        }
+
+        PrintStream out = System.out;
+        try (DOperator operator = new DOperator(dbFile.getPath())) {
+            operator.setInsertStrategy(strategy);
+            // 屏蔽每批的插入日志，只显示 AUTO 方式的选择结果
+            System.setOut(new PrintStream(out) {
+                @Override
+                public void println(String line) {
+                    if (line.contains("插入方式")) {
+                        super.println(line);
+                    }
+                }
+            });
+            operator.createTable("bench", keys, types);
+            List<DOperator.ColumnInfo> columns = operator.getTableColumnsWithTypesEscaped("bench");
+
+            long start = System.nanoTime();
+            for (int base = 0; base < rows; base += BATCH_ROWS) {
+                List<Object[]> batch = new ArrayList<>();
+                for (int r = base; r < Math.min(rows, base + BATCH_ROWS); r++) {
+                    Object[] row = new Object[width];
+                    for (int i = 0; i < width; i++) {
+                        row[i] = i % 3 == 0 ? (Object) r : i % 3 == 1 ? (Object) (r * 0.5) : "text " + r;
+                    }
+                    batch.add(row);
+                }
+                operator.batchInsertConverted("bench", columns, batch);
+            }
+            return rows * 1e9 / (System.nanoTime() - start);
+        } finally {
+            System.setOut(out);
+            dbFile.delete();
+        }
+    }
+}
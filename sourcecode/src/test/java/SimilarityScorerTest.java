@@ -0,0 +1,165 @@
+import org.apache.commons.text.similarity.JaroWinklerSimilarity;
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.example.Levenshtein;
+import org.example.SimilarityScorer;
+
+import java.util.Random;
+
+/**
+ * 将 Levenshtein 的位并行编辑距离和 SimilarityScorer 的相似度与 commons-text 的 LevenshteinDistance、
+ * JaroWinklerSimilarity 逐对对比，包括有上限的编辑距离、有下限的相似度、非 ASCII 字符和超过 64 个字符（分块计算）的值。
+ */
+public class SimilarityScorerTest {
+    private static final LevenshteinDistance LEVENSHTEIN = LevenshteinDistance.getDefaultInstance();
+    private static final JaroWinklerSimilarity JARO_WINKLER = new JaroWinklerSimilarity();
+    private static final double EPSILON = 1e-12;
+
+    // 随机字符串使用的字符集：少量字符（距离小、配对多）、大小写和空白、非 ASCII（含代理对）
+    private static final String[] ALPHABETS = {
+            "ab",
+            "abcAB \t",
+            "abcdefghijklmnopqrstuvwxyz0123456789_",
+            "aéÉßжЖΣσς中文İı𝔸bc",
+    };
+
+    private static int cases = 0;
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        String[][] tricky = {
+                {"", ""},
+                {"", "a"},
+                {"   ", ""},
+                {"Kinase", "kinase"},
+                {"  kinase ", "KINASE"},
+                {"kitten", "sitting"},
+                {"14331_MAIZE", "14313_MAIZE"},
+                {"Serine/threonine-protein kinase", "serine threonine protein kinase"},
+                {"中文名字", "中文名称"},
+                {"ΣΟΦΙΑ", "σοφια"},
+                {"ΣΟΦΙΑΣ", "σοφιας"},
+                {"İstanbul", "istanbul"},
+                {"straße", "STRASSE"},
+                {"𝔸bc", "𝔹bc"},
+                {"a".repeat(64), "a".repeat(63) + "b"},
+                {"ab".repeat(32), "ba".repeat(32)},
+                {"a".repeat(65), "a".repeat(64)},
+                {"abc".repeat(43), "abc".repeat(42) + "abd"},
+                {"x".repeat(200), "y".repeat(200)},
+                {"中".repeat(70), "中".repeat(69) + "文"},
+        };
+        Random random = new Random(42);
+        for (String[] pair : tricky) {
+            compare(pair[0], pair[1], random);
+            compare(pair[1], pair[0], random);
+        }
+
+        // 随机字符串，其中一半由另一个做少量编辑得到
+        for (int i = 0; i < 200000; i++) {
+            String alphabet = ALPHABETS[random.nextInt(ALPHABETS.length)];
+            int maxLength = i % 10 == 0 ? 300 : i % 3 == 0 ? 80 : 20;
+            String a = randomString(random, alphabet, random.nextInt(maxLength + 1));
+            String b = random.nextBoolean()
+                    ? edit(random, alphabet, a)
+                    : randomString(random, alphabet, random.nextInt(maxLength + 1));
+            compare(a, b, random);
+        }
+
+        System.out.println(cases + " 个用例，" + failures + " 个不一致");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 对比一对字符串的编辑距离（无上限和随机上限）和相似度（无下限和随机下限）。
+     */
+    private static void compare(String query, String value, Random random) {
+        String a = normalize(query);
+        String b = normalize(value);
+        int expected = LEVENSHTEIN.apply(a, b);
+        check("distance", query, value, expected, Levenshtein.distance(query, value));
+
+        Levenshtein.Pattern pattern = Levenshtein.Pattern.compile(query);
+        int max = random.nextInt(Math.max(1, expected * 2 + 1));
+        int bounded = new LevenshteinDistance(max).apply(a, b);
+        check("distance(max=" + max + ")", query, value, bounded < 0 ? max + 1 : bounded, pattern.distance(value, max));
+
+        int length = Math.max(a.length(), b.length());
+        double similarity = (length == 0 ? 1.0 : 1.0 - (double) expected / length) * 0.5
+                + JARO_WINKLER.apply(a, b) * 0.5;
+        SimilarityScorer scorer = new SimilarityScorer(query);
+        double score = scorer.score(value);
+        cases++;
+        if (Math.abs(score - similarity) > EPSILON) {
+            fail("score", query, value, similarity, score);
+        }
+
+        // 达到下限时返回相似度；低于下限时返回 -1（或仍然算出的相似度）
+        double cutoff = random.nextDouble();
+        double cut = scorer.score(value, cutoff);
+        cases++;
+        boolean ok = similarity >= cutoff
+                ? Math.abs(cut - similarity) <= EPSILON
+                : cut == -1.0 || Math.abs(cut - similarity) <= EPSILON;
+        if (!ok) {
+            fail("score(cutoff=" + cutoff + ")", query, value, similarity, cut);
+        }
+    }
+
+    /**
+     * 与 Levenshtein.normalize 的约定相同：去除前后空白（与 String.trim 相同），每个字符单独转为小写。
+     * 不使用 String.toLowerCase，它会按上下文转换（例如词尾的 Σ）并可能改变长度（例如 İ）。
+     */
+    private static String normalize(String s) {
+        char[] chars = s.trim().toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static void check(String what, String query, String value, int expected, int actual) {
+        cases++;
+        if (expected != actual) {
+            fail(what, query, value, expected, actual);
+        }
+    }
+
+    private static void fail(String what, String query, String value, Object expected, Object actual) {
+        failures++;
+        if (failures <= 20) {
+            System.out.println(what + " 不一致: [" + query + "] [" + value + "] expected=" + expected + " actual=" + actual);
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 对字符串做若干次随机的删除、插入或替换。
+     */
+    private static String edit(Random random, String alphabet, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int e = random.nextInt(6); e > 0 && sb.length() > 0; e--) {
+            int at = random.nextInt(sb.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.deleteCharAt(at);
+                    break;
+                case 1:
+                    sb.insert(at, alphabet.charAt(random.nextInt(alphabet.length())));
+                    break;
+                default:
+                    sb.setCharAt(at, alphabet.charAt(random.nextInt(alphabet.length())));
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+import org.example.SmithWaterman;
+
+import java.util.Random;
+
+/**
+ * 比较 Smith-Waterman 标量实现和向量化实现（jdk.incubator.vector）的比对速度，并核对两者的得分是否相同。
+ * 向量化实现需要以 --add-modules jdk.incubator.vector 启动 JVM，否则两者都是标量实现。
+ * 用法：SmithWatermanBenchmark [查询序列长度] [目标序列个数]
+ */
+public class SmithWatermanBenchmark {
+    private static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+    private static final int ROUNDS = 5; // 第一轮用于预热，不计入结果
+
+    public static void main(String[] args) {
+        int queryLength = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Random random = new Random(42);
+        String query = randomSequence(random, queryLength);
+        String[] targets = new String[count];
+        long cells = 0;
+        for (int i = 0; i < count; i++) {
+            // 一半目标序列含有查询序列的片段，得分较高
+            targets[i] = randomSequence(random, 100 + random.nextInt(900));
+            if (i % 2 == 0) {
+                int from = random.nextInt(queryLength / 2);
+                int at = random.nextInt(targets[i].length());
+                targets[i] = targets[i].substring(0, at) + query.substring(from, from + queryLength / 2)
+                        + targets[i].substring(at);
+            }
+            cells += (long) queryLength * targets[i].length();
+        }
+
+        System.out.println("向量化: " + SmithWaterman.isVectorized());
+        SmithWaterman scalar = new SmithWaterman(query, SmithWaterman.DEFAULT_GAP_OPEN, SmithWaterman.DEFAULT_GAP_EXTEND);
+        SmithWaterman vectorized = SmithWaterman.forQuery(query);
+        int mismatches = 0;
+        for (String target : targets) {
+            if (scalar.score(target) != vectorized.score(target)) {
+                mismatches++;
+            }
+        }
+        System.out.println("得分不同的序列数: " + mismatches);
+
+        System.out.printf("标量    %6.2f 亿格/秒%n", run(scalar, targets, cells));
+        System.out.printf("向量化  %6.2f 亿格/秒%n", run(vectorized, targets, cells));
+    }
+
+    /**
+     * 对所有目标序列比对若干轮，返回每秒计算的格数（亿）。
+     */
+    private static double run(SmithWaterman aligner, String[] targets, long cells) {
+        long total = 0;
+        long elapsed = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String target : targets) {
+                total += aligner.score(target);
+            }
+            if (round > 0) {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+        if (total == 0) {
+            System.out.println("得分总和为 0");
+        }
+        return cells * (ROUNDS - 1) / (elapsed / 1e9) / 1e8;
+    }
+
+    private static String randomSequence(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+        }
+        return sb.toString();
+    }
+}
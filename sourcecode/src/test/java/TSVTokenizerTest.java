@@ -0,0 +1,247 @@
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.example.ColumnKind;
+import org.example.DOperator;
+import org.example.TSVTokenizer;
+import org.example.Utf8TSVScanner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 将 TSVTokenizer 和 Utf8TSVScanner 的解析结果与原先逐行使用 commons-csv 的解析结果逐行对比，
+ * 并将 Utf8TSVScanner 的类型转换结果与 DOperator.convertRow 对比。
+ */
+public class TSVTokenizerTest {
+    // 与 TSVImporter 原先使用的格式完全一致
+    private static final CSVFormat FORMAT = CSVFormat.TDF.builder()
+            .setDelimiter('\t')
+            .setQuote('"')
+            .setEscape('\\')
+            .setIgnoreSurroundingSpaces(true)
+            .build();
+
+    public static void main(String[] args) throws IOException {
+        String[] tricky = {
+                "",
+                "   ",
+                "a\tb\tc",
+                "a\t\tc",
+                "a\tb\t",
+                "\t",
+                "\t\t",
+                "  a  \t  b  ",
+                "\"quoted\"\tplain",
+                "\"  keep spaces  \"\tx",
+                "  \"lead ws then quote\"  \tx",
+                "\"with \"\"double\"\" quotes\"",
+                "\"tab\tinside\"\tb",
+                "\"unterminated\tb",
+                "\"closed\"junk\tb",
+                "mid\"quote\tb",
+                "esc\\tape\tb",
+                "esc\\\\slash",
+                "esc\\\"quote",
+                "unknown\\qescape",
+                "trailing\\",
+                "\"quoted\\\"escape\"",
+                "ends with escaped tab\\t",
+                "P12345\t14331_MAIZE\t{'a': 'b'}\t260\t0.5",
+                "中文\t\"名字 1\"\t  混合  ",
+                " nbsp \tx",
+                " em space \tx",
+        };
+
+        int failures = 0;
+        int cases = 0;
+        for (String line : tricky) {
+            failures += compare(line) ? 0 : 1;
+            cases++;
+        }
+
+        // 随机组合特殊字符
+        char[] alphabet = {'a', 'b', ' ', '\t', '"', '\\', 't', 'n', 'x', '中', ' '};
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int length = random.nextInt(16);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            failures += compare(sb.toString()) ? 0 : 1;
+            cases++;
+        }
+
+        // 多行输入：\n、\r\n、\r 混合，并使用很小的缓冲区触发扩容和跨缓冲区的换行
+        String multi = "h1\th2\r\n\"a\"\tb\rc\td\n\n  e \t\"f\"\r\nlast";
+        List<List<String>> expected = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new StringReader(multi))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                expected.add(parseWithCommons(line));
+            }
+        }
+        List<List<String>> actual = new ArrayList<>();
+        try (TSVTokenizer tokenizer = new TSVTokenizer(new StringReader(multi), 4)) {
+            while (tokenizer.nextRecord()) {
+                actual.add(Arrays.asList(tokenizer.toArray(Integer.MAX_VALUE)));
+            }
+        }
+        cases++;
+        if (!expected.equals(actual)) {
+            failures++;
+            System.out.println("多行输入不一致: expected=" + expected + " actual=" + actual);
+        }
+
+        byte[] multiBytes = multi.getBytes(StandardCharsets.UTF_8);
+        Utf8TSVScanner multiScanner = new Utf8TSVScanner();
+        multiScanner.reset(multiBytes, 0, multiBytes.length);
+        List<List<String>> scanned = new ArrayList<>();
+        while (multiScanner.nextRecord()) {
+            scanned.add(scannerFields(multiScanner));
+        }
+        cases++;
+        if (!expected.equals(scanned)) {
+            failures++;
+            System.out.println("多行输入不一致（字节扫描）: expected=" + expected + " actual=" + scanned);
+        }
+
+        // 类型转换
+        String[] values = {
+                "0", "-0", "+7", "42", " 42 ", "2147483647", "-2147483648", "2147483648", "-2147483649",
+                "99999999999", "1.5", "abc", "-", "+", "１２", "0.1", "-0.0", "1e10", "1E-5", "1.", ".5",
+                "123456789012345678", "1234567890123456789012", "0.30000000000000004", "1e400", "1e-400",
+                "NaN", "Infinity", "0x1p3", "1.5d", "3.14159265358979", "2.2250738585072014E-308",
+                "9007199254740993", "true", "TRUE", "True ", "yes", "{'a': 'b'}", "中文", "\u3000x",
+        };
+        List<DOperator.ColumnInfo> columns = Arrays.asList(
+                new DOperator.ColumnInfo("i", "INTEGER"),
+                new DOperator.ColumnInfo("r", "REAL"),
+                new DOperator.ColumnInfo("b", "BOOLEAN"),
+                new DOperator.ColumnInfo("t", "TEXT"),
+                new DOperator.ColumnInfo("annotations", "TEXT"));
+        try (DOperator operator = new DOperator("unused.db")) {
+            for (String value : values) {
+                failures += compareConversion(operator, columns, value) ? 0 : 1;
+                cases++;
+            }
+            for (int i = 0; i < 100000; i++) {
+                String value = random.nextBoolean()
+                        ? Long.toString(random.nextLong() >> random.nextInt(64))
+                        : Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+                failures += compareConversion(operator, columns, value) ? 0 : 1;
+                cases++;
+            }
+        }
+
+        System.out.println(cases + " 个用例，" + failures + " 个不一致");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 对比单行的解析结果，格式错误时两者都应报错（commons-csv 在迭代时以 UncheckedIOException 报错）。
+     */
+    private static boolean compare(String line) throws IOException {
+        List<String> expected;
+        try {
+            expected = parseWithCommons(line);
+        } catch (IOException | UncheckedIOException e) {
+            expected = null;
+        }
+
+        List<String> actual;
+        try (TSVTokenizer tokenizer = new TSVTokenizer(new StringReader(line))) {
+            if (tokenizer.nextRecord()) {
+                actual = Arrays.asList(tokenizer.toArray(Integer.MAX_VALUE));
+            } else {
+                actual = new ArrayList<>();
+            }
+        } catch (TSVTokenizer.MalformedRecordException e) {
+            actual = null;
+        }
+
+        List<String> scanned;
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        Utf8TSVScanner scanner = new Utf8TSVScanner();
+        scanner.reset(bytes, 0, bytes.length);
+        try {
+            scanned = scanner.nextRecord() ? scannerFields(scanner) : new ArrayList<>();
+        } catch (TSVTokenizer.MalformedRecordException e) {
+            scanned = null;
+        }
+
+        boolean same = expected == null ? actual == null && scanned == null
+                : expected.equals(actual) && expected.equals(scanned);
+        if (!same) {
+            System.out.println("不一致: [" + escape(line) + "] expected=" + expected + " actual=" + actual + " scanned=" + scanned);
+        }
+        return same;
+    }
+
+    /**
+     * 用同一个值填充每一列，对比两种转换方式的结果。
+     */
+    private static boolean compareConversion(DOperator operator, List<DOperator.ColumnInfo> columns, String value)
+            throws IOException {
+        String[] row = new String[columns.size()];
+        Arrays.fill(row, value);
+        String line = String.join("\t", row);
+        Object[] expected;
+        try (TSVTokenizer tokenizer = new TSVTokenizer(new StringReader(line))) {
+            tokenizer.nextRecord();
+            expected = operator.convertRow(columns, tokenizer.toArray(columns.size()));
+        }
+
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        Utf8TSVScanner scanner = new Utf8TSVScanner();
+        scanner.reset(bytes, 0, bytes.length);
+        scanner.nextRecord();
+        Object[] actual = new Object[columns.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = scanner.convert(i, ColumnKind.of(columns.get(i)), columns.get(i).getName());
+        }
+
+        // 用 equals 比较，Double.equals 可以区分 0.0 和 -0.0
+        boolean same = Arrays.equals(expected, actual);
+        if (!same) {
+            System.out.println("转换不一致: [" + value + "] expected=" + Arrays.toString(expected)
+                    + " actual=" + Arrays.toString(actual));
+        }
+        return same;
+    }
+
+    private static List<String> scannerFields(Utf8TSVScanner scanner) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < scanner.getFieldCount(); i++) {
+            fields.add(scanner.getString(i));
+        }
+        return fields;
+    }
+
+    private static List<String> parseWithCommons(String line) throws IOException {
+        List<String> fields = new ArrayList<>();
+        try (CSVParser parser = CSVParser.parse(line, FORMAT)) {
+            for (CSVRecord record : parser) {
+                for (String value : record) {
+                    fields.add(value);
+                }
+                break;
+            }
+        }
+        return fields;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\t", "<TAB>").replace("\r", "<CR>").replace("\n", "<LF>");
+    }
+}